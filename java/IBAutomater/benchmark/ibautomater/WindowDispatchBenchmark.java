@@ -0,0 +1,74 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares the per event dispatch latency of the indexed window handler registry
+ * with the original chain which offers every window to every handler in order.
+ *
+ * Requires a display (run under Xvfb on headless hosts):
+ * ant benchmark
+ *
+ * @author QuantConnect Corporation
+ */
+public final class WindowDispatchBenchmark {
+    private static final int WARMUP_ITERATIONS = 2000;
+    private static final int MEASURED_ITERATIONS = 10000;
+
+    private WindowDispatchBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Not used
+     */
+    public static void main(String[] args) throws Exception {
+        IBAutomater automater = new IBAutomater("user", "password", "paper", 4002, false);
+        WindowHandlerRegistry handlers = new WindowEventListener(automater).getHandlers();
+        List<WindowShapes.Shape> shapes = WindowShapes.getShapes();
+
+        System.out.println(String.format(Locale.ROOT, "%-32s %14s %14s %8s", "Window event", "chain ns/op", "indexed ns/op", "speedup"));
+
+        for (WindowShapes.Shape shape : shapes) {
+            String title = Common.getTitle(shape.window);
+
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                handlers.dispatchInOrder(shape.window, shape.eventId, new ComponentIndex(shape.window));
+                handlers.dispatch(shape.window, shape.eventId, title, new ComponentIndex(shape.window));
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                handlers.dispatchInOrder(shape.window, shape.eventId, new ComponentIndex(shape.window));
+            }
+            double chain = (double)(System.nanoTime() - start) / MEASURED_ITERATIONS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                handlers.dispatch(shape.window, shape.eventId, Common.getTitle(shape.window), new ComponentIndex(shape.window));
+            }
+            double indexed = (double)(System.nanoTime() - start) / MEASURED_ITERATIONS;
+
+            System.out.println(String.format(Locale.ROOT, "%-32s %14.0f %14.0f %7.1fx", shape.name, chain, indexed, chain / indexed));
+        }
+
+        System.exit(0);
+    }
+}
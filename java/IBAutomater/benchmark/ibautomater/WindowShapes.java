@@ -0,0 +1,325 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.awt.BorderLayout;
+import java.awt.Window;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JMenu;
+import javax.swing.JMenuBar;
+import javax.swing.JMenuItem;
+import javax.swing.JPanel;
+import javax.swing.JPasswordField;
+import javax.swing.JRadioButton;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.JTextPane;
+import javax.swing.JToggleButton;
+import javax.swing.JTree;
+import javax.swing.tree.DefaultMutableTreeNode;
+
+/**
+ * Builds Swing windows shaped like the IBGateway windows recorded from IBAutomater.log window dumps.
+ * The windows are never shown, they only provide component trees for the window handlers to inspect.
+ *
+ * Windows require a display, the window contents are also available as plain panels
+ * which can be built on headless hosts (e.g. for the component lookup benchmarks).
+ *
+ * @author QuantConnect Corporation
+ */
+final class WindowShapes {
+
+    private WindowShapes() {
+    }
+
+    /**
+     * A window together with the window event dispatched for it.
+     */
+    static final class Shape {
+        final String name;
+        final int eventId;
+        final Window window;
+
+        Shape(String name, int eventId, Window window) {
+            this.name = name;
+            this.eventId = eventId;
+            this.window = window;
+        }
+    }
+
+    /**
+     * Gets the recorded window shapes, in the order they are seen during a login.
+     *
+     * @return Returns the list of window shapes
+     */
+    static List<Shape> getShapes() {
+        List<Shape> shapes = new ArrayList<>();
+
+        JFrame loginFrame = createLoginFrame();
+        shapes.add(new Shape("Login frame opened", WindowEvent.WINDOW_OPENED, loginFrame));
+        shapes.add(new Shape("Login frame activated", WindowEvent.WINDOW_ACTIVATED, loginFrame));
+
+        JDialog progress = createDialog("Starting application...");
+        progress.getContentPane().add(new JLabel("Initializing managers..."));
+        shapes.add(new Shape("Progress dialog opened", WindowEvent.WINDOW_OPENED, progress));
+
+        JFrame mainFrame = createMainFrame();
+        shapes.add(new Shape("Main frame activated", WindowEvent.WINDOW_ACTIVATED, mainFrame));
+        shapes.add(new Shape("Main frame deactivated", WindowEvent.WINDOW_DEACTIVATED, mainFrame));
+        shapes.add(new Shape("Main frame opened", WindowEvent.WINDOW_OPENED, mainFrame));
+
+        shapes.add(new Shape("Login failed dialog opened", WindowEvent.WINDOW_OPENED,
+            createMessageDialog("Login failed", "<html>Invalid username or password.</html>", "OK")));
+        shapes.add(new Shape("Restart now dialog opened", WindowEvent.WINDOW_OPENED,
+            createMessageDialog("", "<html>Would you like to restart now?</html>", "Yes", "No")));
+        shapes.add(new Shape("Market data dialog opened", WindowEvent.WINDOW_OPENED,
+            createMessageDialog("", "<html><b>Bid, Ask and Last Size Display Update</b><br>Sizes are now displayed in shares.</html>",
+                "I understand - display market data")));
+        shapes.add(new Shape("Untitled notice opened", WindowEvent.WINDOW_OPENED,
+            createMessageDialog("", "<html>Your account has market data subscriptions pending.</html>", "OK")));
+
+        JDialog exitSession = createDialog("Exit Session Setting");
+        exitSession.getContentPane().add(new JLabel("<html>The session will exit at the scheduled time.</html>"), BorderLayout.CENTER);
+        exitSession.getContentPane().add(new JButton("OK"), BorderLayout.SOUTH);
+        shapes.add(new Shape("Exit session setting activated", WindowEvent.WINDOW_ACTIVATED, exitSession));
+
+        JDialog twoFactor = createDialog("Second Factor Authentication");
+        twoFactor.setContentPane(createTwoFactorContent());
+        shapes.add(new Shape("2FA dialog opened", WindowEvent.WINDOW_OPENED, twoFactor));
+
+        shapes.add(new Shape("Configuration dialog opened", WindowEvent.WINDOW_OPENED, createConfigurationDialog()));
+
+        return shapes;
+    }
+
+    /**
+     * Creates the login frame.
+     *
+     * @return Returns the login frame
+     */
+    static JFrame createLoginFrame() {
+        JFrame frame = new JFrame("IB Gateway");
+        frame.setContentPane(createLoginContent());
+        return frame;
+    }
+
+    /**
+     * Creates the contents of the login frame.
+     *
+     * @return Returns the login panel
+     */
+    static JPanel createLoginContent() {
+        JPanel content = new JPanel(new BorderLayout());
+
+        JPanel apiPanel = new JPanel();
+        apiPanel.add(new JToggleButton("FIX CTCI"));
+        apiPanel.add(new JToggleButton("IB API", true));
+        content.add(apiPanel, BorderLayout.NORTH);
+
+        JPanel modePanel = new JPanel();
+        modePanel.add(new JToggleButton("Live Trading"));
+        modePanel.add(new JToggleButton("Paper Trading", true));
+
+        JPanel credentialsPanel = new JPanel();
+        credentialsPanel.add(new JLabel("Username"));
+        credentialsPanel.add(new JTextField(16));
+        credentialsPanel.add(new JLabel("Password"));
+        credentialsPanel.add(new JPasswordField(16));
+        credentialsPanel.add(new JCheckBox("Use SSL", true));
+        credentialsPanel.add(modePanel);
+        content.add(credentialsPanel, BorderLayout.CENTER);
+
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.add(new JButton("Paper Log In"));
+        buttonPanel.add(new JLabel("<html><u>More Options</u></html>"));
+        content.add(buttonPanel, BorderLayout.SOUTH);
+
+        return content;
+    }
+
+    /**
+     * Creates the main frame with the Configure and File menus.
+     *
+     * @return Returns the main frame
+     */
+    static JFrame createMainFrame() {
+        JFrame frame = new JFrame("IB Gateway");
+
+        JMenuBar menuBar = new JMenuBar();
+        JMenu fileMenu = new JMenu("File");
+        fileMenu.add(new JMenuItem("Gateway Logs"));
+        fileMenu.add(new JMenuItem("Close"));
+        menuBar.add(fileMenu);
+        JMenu configureMenu = new JMenu("Configure");
+        configureMenu.add(new JMenuItem("Settings"));
+        menuBar.add(configureMenu);
+        frame.setJMenuBar(menuBar);
+
+        JPanel statusPanel = new JPanel();
+        for (int i = 0; i < 4; i++) {
+            JPanel row = new JPanel();
+            row.add(new JLabel("Connection " + i));
+            row.add(new JLabel("<html><font color=green>connected</font></html>"));
+            statusPanel.add(row);
+        }
+        JTextPane log = new JTextPane();
+        log.setText("API server listening on port 4002");
+        frame.getContentPane().add(statusPanel, BorderLayout.NORTH);
+        frame.getContentPane().add(new JScrollPane(log), BorderLayout.CENTER);
+
+        return frame;
+    }
+
+    /**
+     * Creates a message dialog with a text pane and buttons.
+     *
+     * @param title The dialog title
+     * @param html The message text
+     * @param buttons The button texts
+     *
+     * @return Returns the message dialog
+     */
+    static JDialog createMessageDialog(String title, String html, String... buttons) {
+        JDialog dialog = createDialog(title);
+        dialog.setContentPane(createMessageContent(html, buttons));
+        return dialog;
+    }
+
+    /**
+     * Creates the contents of a message dialog.
+     *
+     * @param html The message text
+     * @param buttons The button texts
+     *
+     * @return Returns the message panel
+     */
+    static JPanel createMessageContent(String html, String... buttons) {
+        JPanel content = new JPanel(new BorderLayout());
+
+        JTextPane textPane = new JTextPane();
+        textPane.setContentType("text/html");
+        textPane.setText(html);
+        content.add(new JScrollPane(textPane), BorderLayout.CENTER);
+
+        JPanel labelPanel = new JPanel();
+        labelPanel.add(new JLabel("<html><b>Notice</b></html>"));
+        labelPanel.add(new JLabel("Please review the message below."));
+        content.add(labelPanel, BorderLayout.NORTH);
+
+        JPanel buttonPanel = new JPanel();
+        for (String button : buttons) {
+            buttonPanel.add(new JButton(button));
+        }
+        content.add(buttonPanel, BorderLayout.SOUTH);
+
+        return content;
+    }
+
+    /**
+     * Creates the contents of the second factor authentication dialog.
+     *
+     * @return Returns the second factor authentication panel
+     */
+    static JPanel createTwoFactorContent() {
+        JPanel content = new JPanel(new BorderLayout());
+        content.add(new JLabel("<html>Please check your mobile device for a notification<br>and confirm the login.</html>"), BorderLayout.NORTH);
+        content.add(new JScrollPane(new JList<>(new String[]{ "IB Key", "Security Code Card", "SMS" })), BorderLayout.CENTER);
+
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.add(new JButton("OK"));
+        buttonPanel.add(new JButton("Cancel"));
+        content.add(buttonPanel, BorderLayout.SOUTH);
+
+        return content;
+    }
+
+    /**
+     * Creates the Configuration dialog with the settings tree and the API Settings panel.
+     *
+     * @return Returns the Configuration dialog
+     */
+    static JDialog createConfigurationDialog() {
+        JDialog dialog = createDialog("IB Gateway Configuration");
+        dialog.setContentPane(createConfigurationContent());
+        return dialog;
+    }
+
+    /**
+     * Creates the contents of the Configuration dialog.
+     *
+     * @return Returns the Configuration panel
+     */
+    static JPanel createConfigurationContent() {
+        JPanel content = new JPanel(new BorderLayout());
+
+        DefaultMutableTreeNode root = new DefaultMutableTreeNode("Configuration");
+        DefaultMutableTreeNode api = new DefaultMutableTreeNode("API");
+        api.add(new DefaultMutableTreeNode("Settings"));
+        api.add(new DefaultMutableTreeNode("Precautions"));
+        root.add(api);
+        root.add(new DefaultMutableTreeNode("Lock and Exit"));
+        content.add(new JScrollPane(new JTree(root)), BorderLayout.WEST);
+
+        // all panels are present at once, IBGateway swaps them when a tree node is selected
+        JPanel panels = new JPanel();
+        JPanel settings = new JPanel();
+        settings.add(new JCheckBox("Read-Only API"));
+        settings.add(new JLabel("Socket port"));
+        settings.add(new JTextField("4002"));
+        settings.add(new JCheckBox("Create API message log file"));
+        settings.add(new JCheckBox("Use Account Groups with Allocation Methods"));
+        panels.add(settings);
+        JPanel precautions = new JPanel();
+        precautions.add(new JCheckBox("Bypass Order Precautions for API Orders"));
+        panels.add(precautions);
+        JPanel lockAndExit = new JPanel();
+        lockAndExit.add(new JRadioButton("Auto logoff"));
+        lockAndExit.add(new JRadioButton("Auto restart", true));
+        lockAndExit.add(new JRadioButton("AM"));
+        lockAndExit.add(new JRadioButton("PM", true));
+        panels.add(lockAndExit);
+        content.add(panels, BorderLayout.CENTER);
+
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.add(new JButton("OK"));
+        buttonPanel.add(new JButton("Apply"));
+        buttonPanel.add(new JButton("Cancel"));
+        content.add(buttonPanel, BorderLayout.SOUTH);
+
+        return content;
+    }
+
+    /**
+     * Creates an empty dialog with the specified title.
+     *
+     * @param title The dialog title
+     *
+     * @return Returns the dialog
+     */
+    static JDialog createDialog(String title) {
+        JDialog dialog = new JDialog((JFrame)null, title);
+        dialog.getContentPane().setLayout(new BorderLayout());
+        return dialog;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JPanel;
+import javax.swing.JTree;
+import javax.swing.tree.TreePath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the component lookups performed by the window handlers on synthetic component trees
+ * shaped like the IBGateway login, configuration, 2FA and message windows.
+ *
+ * The trees are plain panels, so this benchmark runs on headless hosts:
+ * ant -Djmh.lib.dir=/path/to/jmh/jars jmh
+ *
+ * @author QuantConnect Corporation
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ComponentLookupBenchmark {
+    private static final TreePath API_SETTINGS_PATH = new TreePath(new String[]{"Configuration", "API", "Settings"});
+    private static final TreePath LOCK_AND_EXIT_PATH = new TreePath(new String[]{"Configuration", "Lock and Exit"});
+
+    private JPanel login;
+    private JPanel configuration;
+    private JPanel twoFactor;
+    private JPanel message;
+    private JTree tree;
+    private WindowEventListener listener;
+
+    /**
+     * Builds the component trees.
+     */
+    @Setup
+    public void setup() {
+        this.login = WindowShapes.createLoginContent();
+        this.configuration = WindowShapes.createConfigurationContent();
+        this.twoFactor = WindowShapes.createTwoFactorContent();
+        this.message = WindowShapes.createMessageContent(
+            "<html><b>Bid, Ask and Last Size Display Update</b><br>Sizes are now displayed in shares.</html>",
+            "I understand - display market data");
+        this.tree = new ComponentIndex(this.configuration).getTree();
+        this.listener = new WindowEventListener(new IBAutomater("user", "password", "paper", 4002, false));
+    }
+
+    @Benchmark
+    public JButton getButtonLogin() {
+        return Common.getButton(this.login, "Paper Log In");
+    }
+
+    @Benchmark
+    public JButton getButtonMissing() {
+        return Common.getButton(this.message, "Cancel");
+    }
+
+    @Benchmark
+    public JCheckBox getCheckBoxConfiguration() {
+        return Common.getCheckBox(this.configuration, "Create API message log file");
+    }
+
+    @Benchmark
+    public List<String> getLabelTextLinesMessage() {
+        return Common.getLabelTextLines(this.message);
+    }
+
+    @Benchmark
+    public List<String> getLabelTextLinesTwoFactor() {
+        return Common.getLabelTextLines(this.twoFactor);
+    }
+
+    @Benchmark
+    public boolean selectTreeNode() {
+        Common.selectTreeNode(this.tree, API_SETTINGS_PATH);
+        return Common.selectTreeNode(this.tree, LOCK_AND_EXIT_PATH);
+    }
+
+    @Benchmark
+    public String getWindowTextMessage() {
+        return this.listener.GetWindowText(new ComponentIndex(this.message));
+    }
+
+    @Benchmark
+    public String getWindowTextTwoFactor() {
+        return this.listener.GetWindowText(new ComponentIndex(this.twoFactor));
+    }
+
+    /**
+     * The lookups of the login handler, sharing one component index as the handlers do.
+     *
+     * @return Returns the last looked up component
+     */
+    @Benchmark
+    public Object loginLookupsIndexed() {
+        ComponentIndex components = new ComponentIndex(this.login);
+        components.getToggleButton("IB API");
+        components.getToggleButton("Paper Trading");
+        components.getTextField(0);
+        components.getTextField(1);
+        components.getCheckBox("Use SSL");
+        return components.getButton("Paper Log In");
+    }
+
+    /**
+     * The same lookups as {@link #loginLookupsIndexed()}, each one walking the component tree.
+     *
+     * @return Returns the last looked up component
+     */
+    @Benchmark
+    public Object loginLookupsUnindexed() {
+        Common.getToggleButton(this.login, "IB API");
+        Common.getToggleButton(this.login, "Paper Trading");
+        Common.getTextField(this.login, 0);
+        Common.getTextField(this.login, 1);
+        Common.getCheckBox(this.login, "Use SSL");
+        return Common.getButton(this.login, "Paper Log In");
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.awt.GraphicsEnvironment;
+import java.awt.event.WindowEvent;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the full handling of a window event (snapshot, analysis and handlers, see {@link WindowEventListener#eventDispatched}),
+ * for each recorded window shape (see {@link WindowShapes#getShapes()}).
+ *
+ * The handlers act on the windows (e.g. click buttons), the windows are never shown so this has no visible effect.
+ * Real windows require a display (run under Xvfb on headless hosts):
+ * ant -Djmh.lib.dir=/path/to/jmh/jars -Djmh.args=EventDispatchBenchmark jmh
+ *
+ * @author QuantConnect Corporation
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventDispatchBenchmark {
+
+    @Param({
+        "Login frame opened",
+        "Main frame activated",
+        "Login failed dialog opened",
+        "Market data dialog opened",
+        "Untitled notice opened",
+        "2FA dialog opened",
+        "Configuration dialog opened"
+    })
+    public String shape;
+
+    private WindowEventListener listener;
+    private WindowEvent event;
+
+    /**
+     * Creates the window of the selected shape.
+     */
+    @Setup
+    public void setup() {
+        if (GraphicsEnvironment.isHeadless()) {
+            throw new IllegalStateException("EventDispatchBenchmark requires a display, run it under Xvfb");
+        }
+
+        this.listener = new WindowEventListener(new IBAutomater("user", "password", "paper", 4002, false));
+        for (WindowShapes.Shape candidate : WindowShapes.getShapes()) {
+            if (candidate.name.equals(this.shape)) {
+                this.event = new WindowEvent(candidate.window, candidate.eventId);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Unknown window shape: " + this.shape);
+    }
+
+    @Benchmark
+    public void eventDispatched() {
+        this.listener.dispatchSynchronously(this.event);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Probes the IBGateway API port once the configuration is applied, so that the clients are told
+ * when the port actually accepts connections instead of retrying after fixed delays.
+ *
+ * The probe runs on the IBAutomater scheduler with non-blocking connects to the loopback port:
+ * a pending connect is completed on the next tick, a refused one is retried.
+ * The result is published as an {@link AutomaterEventType#API_READY} event: success with the time since
+ * the configuration was applied, failure if the port does not accept connections within the timeout.
+ *
+ * @author QuantConnect Corporation
+ */
+final class ApiPortProbe implements AutomaterEventListener {
+    private final IBAutomater automater;
+    private final int port;
+    private final long intervalMillis;
+    private final long timeoutNanos;
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    // the first probe can stop the probe before the task is assigned, both sides check the other one
+    private volatile ScheduledFuture<?> task;
+    private volatile boolean stopped = false;
+    private SocketChannel channel;
+    private long startTime;
+    private int attempts = 0;
+
+    /**
+     * Creates a new instance of the {@link ApiPortProbe} class.
+     *
+     * @param automater The {@link IBAutomater} instance
+     * @param port The API port to be probed
+     * @param intervalMillis The interval between the connection attempts in milliseconds
+     * @param timeoutMillis The time after which the probe gives up in milliseconds
+     */
+    ApiPortProbe(IBAutomater automater, int port, long intervalMillis, long timeoutMillis) {
+        this.automater = automater;
+        this.port = port;
+        this.intervalMillis = intervalMillis;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    /**
+     * Starts the probe when the IBGateway configuration is applied.
+     *
+     * @param event The published event
+     */
+    @Override
+    public void onEvent(AutomaterEvent event) {
+        if (event.getType() == AutomaterEventType.CONFIGURED && this.started.compareAndSet(false, true)) {
+            this.automater.logMessage("Probing API port " + this.port + "...");
+            this.startTime = event.getTimestamp();
+            this.task = this.automater.getScheduler().scheduleWithFixedDelay(this::probe, 0, this.intervalMillis, TimeUnit.MILLISECONDS);
+            if (this.stopped) {
+                this.task.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Makes or completes a connection attempt, runs on the scheduler thread.
+     */
+    private void probe() {
+        if (this.stopped) {
+            return;
+        }
+
+        try {
+            if (this.channel == null) {
+                this.attempts++;
+                this.channel = SocketChannel.open();
+                this.channel.configureBlocking(false);
+                if (this.channel.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), this.port))) {
+                    this.onConnected();
+                    return;
+                }
+            }
+            else if (this.channel.finishConnect()) {
+                this.onConnected();
+                return;
+            }
+        }
+        catch (IOException exception) {
+            // not listening yet
+            this.closeChannel();
+        }
+
+        long elapsed = System.nanoTime() - this.startTime;
+        if (elapsed >= this.timeoutNanos) {
+            this.stop();
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+            this.automater.logMessage("API port " + this.port + " not accepting connections after " + elapsedMillis + " ms");
+            this.automater.publishEvent(AutomaterEventType.API_READY, AutomaterEventOutcome.FAILURE, null,
+                "port " + this.port + " not accepting connections after " + elapsedMillis + " ms, " + this.attempts + " attempts");
+        }
+    }
+
+    /**
+     * Publishes the API ready event and stops the probe.
+     */
+    private void onConnected() {
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.startTime);
+        this.stop();
+        this.automater.logMessage("API port " + this.port + " ready after " + elapsedMillis + " ms");
+        this.automater.publishEvent(AutomaterEventType.API_READY, AutomaterEventOutcome.SUCCESS, null,
+            "port " + this.port + " ready after " + elapsedMillis + " ms, " + this.attempts + " attempts");
+    }
+
+    /**
+     * Stops the probe.
+     */
+    private void stop() {
+        this.stopped = true;
+        this.closeChannel();
+        ScheduledFuture<?> task = this.task;
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Closes the probe connection.
+     */
+    private void closeChannel() {
+        if (this.channel != null) {
+            try {
+                this.channel.close();
+            }
+            catch (IOException exception) {
+                // already closed
+            }
+            this.channel = null;
+        }
+    }
+}
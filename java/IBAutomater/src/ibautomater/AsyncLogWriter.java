@@ -0,0 +1,256 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes text lines to a file on a background thread.
+ *
+ * Callers only append the line to a bounded lock-free ring buffer, a single writer thread drains the buffer,
+ * encodes the lines into a reusable buffer and writes them to the file in batches.
+ * Disk latency is therefore never seen by the calling thread (usually the AWT event dispatching thread),
+ * unless the buffer is full and the {@link LogOverflowPolicy#BLOCK} policy is used.
+ *
+ * @author QuantConnect Corporation
+ */
+final class AsyncLogWriter {
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final RingBuffer<String> lines;
+    private final LogOverflowPolicy overflowPolicy;
+    private final FileChannel channel;
+    private final Thread writerThread;
+    private final AtomicLong droppedLines = new AtomicLong();
+    private volatile boolean sleeping = false;
+    private volatile boolean closed = false;
+    private volatile long writtenPosition = 0;
+
+    // used by the writer thread only
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer chars = CharBuffer.allocate(8 * 1024);
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(64 * 1024);
+
+    /**
+     * Creates a new instance of the {@link AsyncLogWriter} class, truncates the file and starts the writer thread.
+     *
+     * @param file The path of the log file
+     * @param capacity The maximum number of lines waiting to be written
+     * @param overflowPolicy The policy applied when the buffer is full
+     */
+    AsyncLogWriter(Path file, int capacity, LogOverflowPolicy overflowPolicy) throws IOException {
+        this(file, capacity, overflowPolicy, false, "IBAutomater-log-writer");
+    }
+
+    /**
+     * Creates a new instance of the {@link AsyncLogWriter} class and starts the writer thread.
+     *
+     * @param file The path of the file
+     * @param capacity The maximum number of lines waiting to be written
+     * @param overflowPolicy The policy applied when the buffer is full
+     * @param append If true, lines are appended to the existing file, otherwise the file is truncated
+     * @param threadName The name of the writer thread
+     */
+    AsyncLogWriter(Path file, int capacity, LogOverflowPolicy overflowPolicy, boolean append, String threadName) throws IOException {
+        this.lines = new RingBuffer<>(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.channel = append
+            ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+            : FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        this.writerThread = new Thread(this::run, threadName);
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queues a line to be written to the file.
+     *
+     * @param line The text line
+     */
+    void writeLine(String line) {
+        if (this.closed) {
+            return;
+        }
+
+        while (!this.lines.offer(line)) {
+            if (this.overflowPolicy == LogOverflowPolicy.DROP) {
+                this.droppedLines.incrementAndGet();
+                return;
+            }
+            LockSupport.unpark(this.writerThread);
+            LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+            // the writer thread stops on a write error (disk full, file removed), never wait for it forever
+            if (this.closed || !this.writerThread.isAlive()) {
+                return;
+            }
+        }
+
+        if (this.sleeping) {
+            LockSupport.unpark(this.writerThread);
+        }
+    }
+
+    /**
+     * Waits until all lines queued so far have been written to the file.
+     *
+     * @param timeout The maximum time to wait
+     * @param unit The time unit of the timeout
+     *
+     * @return Returns true if all lines were written, false if the timeout expired
+     */
+    boolean flush(long timeout, TimeUnit unit) {
+        long target = this.lines.producerPosition();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (this.writtenPosition < target) {
+            if (System.nanoTime() - deadline >= 0 || !this.writerThread.isAlive()) {
+                return false;
+            }
+            LockSupport.unpark(this.writerThread);
+            LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+        }
+        return true;
+    }
+
+    /**
+     * Writes all queued lines, stops the writer thread and closes the file.
+     *
+     * @param timeout The maximum time to wait for the queued lines to be written
+     * @param unit The time unit of the timeout
+     */
+    void close(long timeout, TimeUnit unit) {
+        this.closed = true;
+        LockSupport.unpark(this.writerThread);
+        try {
+            this.writerThread.join(unit.toMillis(timeout));
+        }
+        catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The writer thread loop.
+     */
+    private void run() {
+        try {
+            while (true) {
+                String line = this.lines.poll();
+                if (line != null) {
+                    this.append(line);
+                    continue;
+                }
+
+                long dropped = this.droppedLines.getAndSet(0);
+                if (dropped > 0) {
+                    this.append("Log buffer full, " + dropped + " log messages dropped");
+                }
+
+                // the buffer is empty: write the batch and wait for more lines
+                this.writeBytes();
+                this.writtenPosition = this.lines.consumerPosition();
+
+                if (this.closed) {
+                    if (this.lines.producerPosition() == this.lines.consumerPosition()) {
+                        break;
+                    }
+                    continue;
+                }
+
+                this.sleeping = true;
+                if (this.lines.producerPosition() == this.lines.consumerPosition()) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                this.sleeping = false;
+            }
+        }
+        catch (IOException exception) {
+            System.out.println(exception.getMessage());
+        }
+        finally {
+            // the lines written after a write error are discarded, the callers must not block on the full buffer
+            this.closed = true;
+            try {
+                this.channel.close();
+            }
+            catch (IOException exception) {
+                System.out.println(exception.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Encodes the line followed by a line separator into the byte buffer, writing the buffer when it is full.
+     *
+     * @param line The text line
+     */
+    private void append(String line) throws IOException {
+        int offset = 0;
+        this.chars.clear();
+        while (true) {
+            int count = Math.min(this.chars.remaining(), line.length() - offset);
+            line.getChars(offset, offset + count, this.chars.array(), this.chars.position());
+            this.chars.position(this.chars.position() + count);
+            offset += count;
+
+            this.chars.flip();
+            boolean endOfInput = offset == line.length();
+            while (this.encoder.encode(this.chars, this.bytes, endOfInput).isOverflow()) {
+                this.writeBytes();
+            }
+            if (endOfInput) {
+                break;
+            }
+            // keeps a split surrogate pair for the next chunk
+            this.chars.compact();
+        }
+        while (this.encoder.flush(this.bytes).isOverflow()) {
+            this.writeBytes();
+        }
+        this.encoder.reset();
+
+        if (this.bytes.remaining() < LINE_SEPARATOR.length) {
+            this.writeBytes();
+        }
+        this.bytes.put(LINE_SEPARATOR);
+    }
+
+    /**
+     * Writes the content of the byte buffer to the file.
+     */
+    private void writeBytes() throws IOException {
+        this.bytes.flip();
+        while (this.bytes.hasRemaining()) {
+            this.channel.write(this.bytes);
+        }
+        this.bytes.clear();
+    }
+}
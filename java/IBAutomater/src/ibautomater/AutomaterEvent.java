@@ -0,0 +1,113 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+/**
+ * An event published by IBAutomater, e.g. a handled window or a login result.
+ * Events are meant to be consumed by programs, the log file remains the human readable record.
+ *
+ * @author QuantConnect Corporation
+ */
+public final class AutomaterEvent {
+    private final AutomaterEventType type;
+    private final AutomaterEventOutcome outcome;
+    private final long timestamp;
+    private final String windowTitle;
+    private final String detail;
+
+    /**
+     * Creates a new instance of the {@link AutomaterEvent} class.
+     *
+     * @param type The event type
+     * @param outcome The event outcome
+     * @param windowTitle The title of the window related to the event, empty if none
+     * @param detail The event detail
+     */
+    public AutomaterEvent(AutomaterEventType type, AutomaterEventOutcome outcome, String windowTitle, String detail) {
+        this.type = type;
+        this.outcome = outcome;
+        this.timestamp = System.nanoTime();
+        this.windowTitle = windowTitle == null ? "" : windowTitle;
+        this.detail = detail == null ? "" : detail;
+    }
+
+    /**
+     * Gets the event type.
+     *
+     * @return Returns the event type
+     */
+    public AutomaterEventType getType() {
+        return this.type;
+    }
+
+    /**
+     * Gets the event outcome.
+     *
+     * @return Returns the event outcome
+     */
+    public AutomaterEventOutcome getOutcome() {
+        return this.outcome;
+    }
+
+    /**
+     * Gets the monotonic timestamp of the event (see {@link System#nanoTime()}).
+     *
+     * @return Returns the event timestamp in nanoseconds
+     */
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    /**
+     * Gets the title of the window related to the event.
+     *
+     * @return Returns the window title, empty if none
+     */
+    public String getWindowTitle() {
+        return this.windowTitle;
+    }
+
+    /**
+     * Gets the event detail.
+     *
+     * @return Returns the event detail
+     */
+    public String getDetail() {
+        return this.detail;
+    }
+
+    /**
+     * Formats the event as a single line of tab separated fields: timestamp, type, outcome, window title and detail.
+     * Tabs and line breaks in the window title and detail are replaced by spaces.
+     *
+     * @return Returns the formatted event
+     */
+    public String format() {
+        return this.timestamp + "\t" + this.type.name() + "\t" + this.outcome.name() + "\t"
+            + AutomaterEvent.escape(this.windowTitle) + "\t" + AutomaterEvent.escape(this.detail);
+    }
+
+    /**
+     * Replaces the field separators in an event field.
+     *
+     * @param text The field text
+     *
+     * @return Returns the text without tabs and line breaks
+     */
+    private static String escape(String text) {
+        return text.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+/**
+ * The outcome reported by an IBAutomater event.
+ *
+ * @author QuantConnect Corporation
+ */
+public enum AutomaterEventOutcome {
+    /**
+     * The event is informational only.
+     */
+    NONE,
+
+    /**
+     * The operation is in progress, another event will report its outcome.
+     */
+    PENDING,
+
+    /**
+     * The operation succeeded.
+     */
+    SUCCESS,
+
+    /**
+     * The operation failed, the event detail describes the reason.
+     */
+    FAILURE
+}
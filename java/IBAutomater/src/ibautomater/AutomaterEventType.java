@@ -0,0 +1,109 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+/**
+ * The types of the events published by IBAutomater.
+ *
+ * @author QuantConnect Corporation
+ */
+public enum AutomaterEventType {
+    /**
+     * IBAutomater started in a new IBGateway process, the detail is the wall clock time (epoch milliseconds)
+     * of the event timestamp, so that the monotonic timestamps of the process can be converted.
+     */
+    SESSION_STARTED,
+
+    /**
+     * A window event was received, the detail is the window event name (e.g. "WINDOW_OPENED").
+     */
+    WINDOW_EVENT,
+
+    /**
+     * A window was detected and handled, the detail is the handler name.
+     */
+    WINDOW_HANDLED,
+
+    /**
+     * The result of a login attempt: pending when the credentials are submitted,
+     * success when IBGateway starts the application, failure with the reason otherwise.
+     */
+    LOGIN_RESULT,
+
+    /**
+     * A change of the two factor authentication state, e.g. "prompt 1/3", "approved", "timeout".
+     */
+    TWO_FACTOR,
+
+    /**
+     * A security dialog which cannot be automated was detected (e.g. code card authentication).
+     */
+    SECURITY_DIALOG,
+
+    /**
+     * The IBGateway configuration was applied, IBGateway is initialized.
+     */
+    CONFIGURED,
+
+    /**
+     * The probe of the API port completed after the configuration was applied: success when the port accepts
+     * connections, failure if it does not within the timeout; the detail includes the time since the configuration.
+     */
+    API_READY,
+
+    /**
+     * The IBGateway version is no longer supported, the detail is the IBGateway message.
+     */
+    UNSUPPORTED_VERSION,
+
+    /**
+     * A restart was requested or scheduled, the detail describes when.
+     */
+    RESTART_SCHEDULED,
+
+    /**
+     * IBGateway is restarting (daily restart with no authentication required).
+     */
+    RESTART_IN_PROGRESS,
+
+    /**
+     * The auto-restart token expired, IBGateway is closed and a full login is required.
+     */
+    AUTO_RESTART_TOKEN_EXPIRED,
+
+    /**
+     * An unknown message window was detected, the detail is the window text.
+     */
+    UNKNOWN_WINDOW,
+
+    /**
+     * The AWT event dispatching thread did not run the watchdog heartbeat within the stall threshold:
+     * failure when the stall is detected (the detail is the lag, the thread state and the top of its stack),
+     * success when the stall ends (the detail is the stall duration).
+     */
+    EDT_STALL,
+
+    /**
+     * The gateway lifecycle state changed, see {@link GatewayLifecycle}: the detail is the transition
+     * (states, dwell time in the previous state and reason); failure when a state exceeded its timeout.
+     */
+    LIFECYCLE,
+
+    /**
+     * An error was logged, the detail is the exception message.
+     */
+    ERROR
+}
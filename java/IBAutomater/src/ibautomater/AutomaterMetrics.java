@@ -0,0 +1,287 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Collects the IBAutomater metrics, see {@link AutomaterMetricsMXBean}.
+ *
+ * There is one instance per JVM, so that the static {@link Common} lookups can be measured.
+ * The metrics are created on first use and then recorded without locking.
+ *
+ * @author QuantConnect Corporation
+ */
+final class AutomaterMetrics implements AutomaterMetricsMXBean, AutomaterEventListener {
+    static final String OBJECT_NAME = "ibautomater:type=Metrics";
+
+    private static final AutomaterMetrics INSTANCE = new AutomaterMetrics();
+
+    private final ConcurrentMap<String, LatencyMetric> handlers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyMetric> events = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyMetric> eventSnapshots = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyMetric> eventHandling = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyMetric> eventLatencies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyMetric> lookups = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyMetric> lifecycleDwell = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyMetric> twoFactor = new ConcurrentHashMap<>();
+    private final LatencyMetric edtLag = new LatencyMetric();
+    private volatile long sessionStartTime = System.nanoTime();
+    private volatile long timeToLoginNanos = -1;
+    private volatile long timeToConfiguredNanos = -1;
+    private volatile long timeToApiReadyNanos = -1;
+
+    private AutomaterMetrics() {
+    }
+
+    /**
+     * Gets the metrics instance.
+     *
+     * @return Returns the metrics of this JVM
+     */
+    static AutomaterMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server.
+     */
+    static void register() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+    }
+
+    /**
+     * Gets the metric of a window handler.
+     *
+     * @param name The handler name
+     *
+     * @return Returns the handler metric
+     */
+    LatencyMetric handler(String name) {
+        return this.handlers.computeIfAbsent(name, k -> new LatencyMetric());
+    }
+
+    /**
+     * Gets the metric of a window event.
+     *
+     * @param name The window event name
+     *
+     * @return Returns the window event metric
+     */
+    LatencyMetric event(String name) {
+        return this.events.computeIfAbsent(name, k -> new LatencyMetric());
+    }
+
+    /**
+     * Gets the snapshot phase metric of a window event.
+     *
+     * @param name The window event name
+     *
+     * @return Returns the window event snapshot metric
+     */
+    LatencyMetric eventSnapshot(String name) {
+        return this.eventSnapshots.computeIfAbsent(name, k -> new LatencyMetric());
+    }
+
+    /**
+     * Gets the handling phase metric of a window event.
+     *
+     * @param name The window event name
+     *
+     * @return Returns the window event handling metric
+     */
+    LatencyMetric eventHandling(String name) {
+        return this.eventHandling.computeIfAbsent(name, k -> new LatencyMetric());
+    }
+
+    /**
+     * Gets the end-to-end latency metric of a window event.
+     *
+     * @param name The window event name
+     *
+     * @return Returns the window event latency metric
+     */
+    LatencyMetric eventLatency(String name) {
+        return this.eventLatencies.computeIfAbsent(name, k -> new LatencyMetric());
+    }
+
+    /**
+     * Gets the metric of a component lookup.
+     *
+     * @param name The lookup name
+     *
+     * @return Returns the lookup metric
+     */
+    LatencyMetric lookup(String name) {
+        return this.lookups.computeIfAbsent(name, k -> new LatencyMetric());
+    }
+
+    /**
+     * Gets the dwell time metric of a lifecycle state, see {@link GatewayLifecycle}.
+     *
+     * @param name The state name
+     *
+     * @return Returns the dwell time metric
+     */
+    LatencyMetric lifecycleDwell(String name) {
+        return this.lifecycleDwell.computeIfAbsent(name, k -> new LatencyMetric());
+    }
+
+    /**
+     * Gets the prompt to approval metric of a 2FA attempt, see {@link TwoFactorRetryScheduler}.
+     *
+     * @param name The attempt name
+     *
+     * @return Returns the 2FA attempt metric
+     */
+    LatencyMetric twoFactor(String name) {
+        return this.twoFactor.computeIfAbsent(name, k -> new LatencyMetric());
+    }
+
+    /**
+     * Gets the lag metric of the AWT event dispatching thread, see {@link EdtWatchdog}.
+     *
+     * @return Returns the lag metric
+     */
+    LatencyMetric edtLag() {
+        return this.edtLag;
+    }
+
+    /**
+     * Records the time to login, the time to configured and the time to API ready from the published events.
+     *
+     * @param event The published event
+     */
+    @Override
+    public void onEvent(AutomaterEvent event) {
+        switch (event.getType()) {
+            case SESSION_STARTED:
+                this.sessionStartTime = event.getTimestamp();
+                break;
+            case LOGIN_RESULT:
+                if (event.getOutcome() == AutomaterEventOutcome.SUCCESS) {
+                    this.timeToLoginNanos = event.getTimestamp() - this.sessionStartTime;
+                }
+                break;
+            case CONFIGURED:
+                this.timeToConfiguredNanos = event.getTimestamp() - this.sessionStartTime;
+                break;
+            case API_READY:
+                if (event.getOutcome() == AutomaterEventOutcome.SUCCESS) {
+                    this.timeToApiReadyNanos = event.getTimestamp() - this.sessionStartTime;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public Map<String, MetricSnapshot> getHandlerMetrics() {
+        return AutomaterMetrics.snapshot(this.handlers);
+    }
+
+    @Override
+    public Map<String, MetricSnapshot> getEventMetrics() {
+        return AutomaterMetrics.snapshot(this.events);
+    }
+
+    @Override
+    public Map<String, MetricSnapshot> getEventSnapshotMetrics() {
+        return AutomaterMetrics.snapshot(this.eventSnapshots);
+    }
+
+    @Override
+    public Map<String, MetricSnapshot> getEventHandlingMetrics() {
+        return AutomaterMetrics.snapshot(this.eventHandling);
+    }
+
+    @Override
+    public Map<String, MetricSnapshot> getEventLatencyMetrics() {
+        return AutomaterMetrics.snapshot(this.eventLatencies);
+    }
+
+    @Override
+    public Map<String, MetricSnapshot> getLookupMetrics() {
+        return AutomaterMetrics.snapshot(this.lookups);
+    }
+
+    @Override
+    public Map<String, MetricSnapshot> getLifecycleDwellMetrics() {
+        return AutomaterMetrics.snapshot(this.lifecycleDwell);
+    }
+
+    @Override
+    public Map<String, MetricSnapshot> getTwoFactorMetrics() {
+        return AutomaterMetrics.snapshot(this.twoFactor);
+    }
+
+    @Override
+    public MetricSnapshot getEdtLagMetrics() {
+        return this.edtLag.snapshot();
+    }
+
+    @Override
+    public long getTimeToLoginMillis() {
+        long nanos = this.timeToLoginNanos;
+        return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    @Override
+    public long getTimeToConfiguredMillis() {
+        long nanos = this.timeToConfiguredNanos;
+        return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    @Override
+    public long getTimeToApiReadyMillis() {
+        long nanos = this.timeToApiReadyNanos;
+        return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    @Override
+    public void reset() {
+        this.handlers.values().forEach(LatencyMetric::reset);
+        this.events.values().forEach(LatencyMetric::reset);
+        this.eventSnapshots.values().forEach(LatencyMetric::reset);
+        this.eventHandling.values().forEach(LatencyMetric::reset);
+        this.eventLatencies.values().forEach(LatencyMetric::reset);
+        this.lookups.values().forEach(LatencyMetric::reset);
+        this.lifecycleDwell.values().forEach(LatencyMetric::reset);
+        this.twoFactor.values().forEach(LatencyMetric::reset);
+        this.edtLag.reset();
+    }
+
+    /**
+     * Takes a snapshot of the metrics, sorted by name.
+     *
+     * @param metrics The metrics by name
+     *
+     * @return Returns the metric snapshots by name
+     */
+    private static Map<String, MetricSnapshot> snapshot(Map<String, LatencyMetric> metrics) {
+        Map<String, MetricSnapshot> snapshots = new TreeMap<>();
+        metrics.forEach((name, metric) -> snapshots.put(name, metric.snapshot()));
+        return snapshots;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.util.Map;
+
+/**
+ * The IBAutomater metrics, registered in the platform MBean server as "ibautomater:type=Metrics".
+ *
+ * @author QuantConnect Corporation
+ */
+public interface AutomaterMetricsMXBean {
+
+    /**
+     * Gets the metrics of the window handlers, by handler name (hits are the handled windows).
+     *
+     * @return Returns the handler metrics
+     */
+    Map<String, MetricSnapshot> getHandlerMetrics();
+
+    /**
+     * Gets the time spent on the AWT event dispatching thread by IBAutomater, by window event name
+     * (the snapshot and handling phases together; hits are the events handled by a window handler).
+     *
+     * @return Returns the window event metrics
+     */
+    Map<String, MetricSnapshot> getEventMetrics();
+
+    /**
+     * Gets the time spent taking the window snapshot on the AWT event dispatching thread, by window event name
+     * (hits are the events handled by a window handler).
+     *
+     * @return Returns the window event snapshot metrics
+     */
+    Map<String, MetricSnapshot> getEventSnapshotMetrics();
+
+    /**
+     * Gets the time spent in the window handlers on the AWT event dispatching thread, by window event name
+     * (hits are the events handled by a window handler).
+     *
+     * @return Returns the window event handling metrics
+     */
+    Map<String, MetricSnapshot> getEventHandlingMetrics();
+
+    /**
+     * Gets the time from the dispatch of a window event to the end of its handling, by window event name
+     * (snapshot, analysis off the AWT event dispatching thread, queueing and handling; hits are the events handled by a window handler).
+     *
+     * @return Returns the window event latency metrics
+     */
+    Map<String, MetricSnapshot> getEventLatencyMetrics();
+
+    /**
+     * Gets the metrics of the component lookups, by lookup name (hits are the found components).
+     *
+     * @return Returns the lookup metrics
+     */
+    Map<String, MetricSnapshot> getLookupMetrics();
+
+    /**
+     * Gets the time spent in each state of the gateway lifecycle before leaving it, by state name
+     * (see {@link GatewayLifecycle}; hits are the times the state was left).
+     *
+     * @return Returns the lifecycle dwell time metrics
+     */
+    Map<String, MetricSnapshot> getLifecycleDwellMetrics();
+
+    /**
+     * Gets the time from each 2FA prompt to its approval or timeout, by attempt
+     * (see {@link TwoFactorRetryScheduler}; hits are the approved prompts).
+     *
+     * @return Returns the 2FA attempt metrics
+     */
+    Map<String, MetricSnapshot> getTwoFactorMetrics();
+
+    /**
+     * Gets the lag of the AWT event dispatching thread: the delay before a posted heartbeat runs,
+     * measured since the IBAutomater start or the last reset.
+     *
+     * @return Returns the event dispatching thread lag metric
+     */
+    MetricSnapshot getEdtLagMetrics();
+
+    /**
+     * Gets the time from the IBAutomater start to the successful login.
+     *
+     * @return Returns the time to login in milliseconds, -1 if not logged in yet
+     */
+    long getTimeToLoginMillis();
+
+    /**
+     * Gets the time from the IBAutomater start to the IBGateway configuration being applied.
+     *
+     * @return Returns the time to configured in milliseconds, -1 if not configured yet
+     */
+    long getTimeToConfiguredMillis();
+
+    /**
+     * Gets the time from the IBAutomater start to the API port accepting connections.
+     *
+     * @return Returns the time to API ready in milliseconds, -1 if the API port is not ready yet
+     */
+    long getTimeToApiReadyMillis();
+
+    /**
+     * Clears all latency metrics (the time to login, to configured and to API ready are kept).
+     */
+    void reset();
+}
@@ -22,6 +22,10 @@ import java.awt.Frame;
 import java.awt.Window;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import javax.swing.AbstractButton;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JFrame;
@@ -31,21 +35,29 @@ import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
+import javax.swing.JPasswordField;
 import javax.swing.JRadioButton;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.JTextPane;
 import javax.swing.JToggleButton;
 import javax.swing.JTree;
+import javax.swing.SwingUtilities;
+import javax.swing.text.JTextComponent;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.TreePath;
 
 /**
  * Contains various helper functions.
  *
+ * Each component lookup walks the component tree of the container,
+ * use a {@link ComponentIndex} when several lookups are performed on the same container.
+ *
  * @author QuantConnect Corporation
  */
 public class Common {
+    private static final LatencyMetric MENU_ITEM_LOOKUP = AutomaterMetrics.get().lookup("getMenuItem");
+    private static final LatencyMetric TREE_NODE_SELECTION = AutomaterMetrics.get().lookup("selectTreeNode");
 
     /**
      * Gets whether the window is a Frame window.
@@ -95,15 +107,7 @@ public class Common {
      * @return Returns a JButton instance in the given container with the specified text, null if the button is not found
      */
     public static JButton getButton(Container container, String text) {
-        ArrayList<Component> buttons = new ArrayList<>();
-        Common.loadComponents(container, JButton.class, buttons);
-        for (Component component : buttons) {
-            JButton button = (JButton)component;
-            String buttonText = button.getText();
-            if (buttonText == null || !buttonText.equalsIgnoreCase(text)) continue;
-            return button;
-        }
-        return null;
+        return new ComponentIndex(container).getButton(text);
     }
 
     /**
@@ -115,15 +119,7 @@ public class Common {
      * @return Returns a JToggleButton instance in the given container with the specified text, null if the toggle button is not found
      */
     public static JToggleButton getToggleButton(Container container, String text) {
-        ArrayList<Component> buttons = new ArrayList<>();
-        Common.loadComponents(container, JToggleButton.class, buttons);
-        for (Component component : buttons) {
-            JToggleButton button = (JToggleButton)component;
-            String buttonText = button.getText();
-            if (buttonText == null || !buttonText.equalsIgnoreCase(text)) continue;
-            return button;
-        }
-        return null;
+        return new ComponentIndex(container).getToggleButton(text);
     }
 
     /**
@@ -135,15 +131,7 @@ public class Common {
      * @return Returns a JRadioButton instance in the given container with the specified text, null if the radio button is not found
      */
     public static JRadioButton getRadioButton(Container container, String text) {
-        ArrayList<Component> buttons = new ArrayList<>();
-        Common.loadComponents(container, JRadioButton.class, buttons);
-        for (Component component : buttons) {
-            JRadioButton button = (JRadioButton)component;
-            String buttonText = button.getText();
-            if (buttonText == null || !buttonText.equalsIgnoreCase(text)) continue;
-            return button;
-        }
-        return null;
+        return new ComponentIndex(container).getRadioButton(text);
     }
 
     /**
@@ -155,15 +143,7 @@ public class Common {
      * @return Returns a JLabel instance in the given container containing the specified text, null if the label is not found
      */
     public static JLabel getLabel(Container container, String text) {
-        ArrayList<Component> labels = new ArrayList<>();
-        Common.loadComponents(container, JLabel.class, labels);
-        for (Component component : labels) {
-            JLabel label = (JLabel)component;
-            String labelText = label.getText();
-            if (labelText == null || !labelText.toLowerCase().contains(text.toLowerCase())) continue;
-            return label;
-        }
-        return null;
+        return new ComponentIndex(container).getLabel(text);
     }
 
     /**
@@ -175,15 +155,7 @@ public class Common {
      * @return Returns a JOptionPane instance in the given container containing the specified text, null if the option pane is not found
      */
     public static JOptionPane getOptionPane(Container container, String text) {
-        ArrayList<Component> optionPanes = new ArrayList<>();
-        Common.loadComponents(container, JOptionPane.class, optionPanes);
-        for (Component component : optionPanes) {
-            JOptionPane optionPane = (JOptionPane)component;
-            String optionPaneText = optionPane.getMessage().toString();
-            if (optionPaneText == null || !optionPaneText.toLowerCase().contains(text.toLowerCase())) continue;
-            return optionPane;
-        }
-        return null;
+        return new ComponentIndex(container).getOptionPane(text);
     }
 
     /**
@@ -195,9 +167,7 @@ public class Common {
      * @return Returns a JTextField instance at the specified position in the list of text fields in the container, null if the index is not valid
      */
     public static JTextField getTextField(Container container, int index) {
-        ArrayList<Component> textFields = new ArrayList<>();
-        Common.loadComponents(container, JTextField.class, textFields);
-        return textFields.size() > index ? (JTextField)textFields.get(index) : null;
+        return new ComponentIndex(container).getTextField(index);
     }
 
     /**
@@ -210,12 +180,28 @@ public class Common {
      * @return Returns a JMenuItem instance in the given container with the specified text, null if the menu item is not found
      */
     public static JMenuItem getMenuItem(Container container, String menuText, String menuItemText) {
-        if (container == null) return null;
+        long start = System.nanoTime();
+        JMenuItem menuItem = Common.findMenuItem(container, menuText, menuItemText);
+        MENU_ITEM_LOOKUP.record(start, menuItem != null);
+        return menuItem;
+    }
+
+    /**
+     * Finds a JMenuItem instance in the container with the specified menu item text in the menu with the specified menu text.
+     *
+     * @param container The container to be queried
+     * @param menuText The menu text to find
+     * @param menuItemText The menu item text to find
+     *
+     * @return Returns the JMenuItem instance, null if the menu item is not found
+     */
+    private static JMenuItem findMenuItem(Container container, String menuText, String menuItemText) {
+        if (!(container instanceof JFrame)) return null;
         JMenuBar menuBar = ((JFrame) container).getJMenuBar();
         if (menuBar == null) return null;
         for (int i = 0; i < menuBar.getMenuCount(); ++i) {
             JMenu menu = menuBar.getMenu(i);
-            if (!menu.getText().equals(menuText)) continue;
+            if (menu == null || !menuText.equals(menu.getText())) continue;
             for (int j = 0; j < menu.getItemCount(); ++j) {
                 JMenuItem menuItem = menu.getItem(j);
                 if (menuItem == null || !menuItem.getText().equalsIgnoreCase(menuItemText)) continue;
@@ -234,15 +220,7 @@ public class Common {
      * @return Returns a JCheckBox instance in the given container with the specified text, null if the check box is not found
      */
     public static JCheckBox getCheckBox(Container container, String text) {
-        ArrayList<Component> checkBoxes = new ArrayList<>();
-        Common.loadComponents(container, JCheckBox.class, checkBoxes);
-        for (Component component : checkBoxes) {
-            JCheckBox checkBox = (JCheckBox)component;
-            String checkBoxText = checkBox.getText();
-            if (checkBoxText == null || !checkBoxText.equalsIgnoreCase(text)) continue;
-            return checkBox;
-        }
-        return null;
+        return new ComponentIndex(container).getCheckBox(text);
     }
 
     /**
@@ -253,9 +231,7 @@ public class Common {
      * @return Returns the first JTextPane instance in the given container, null if the text pane is not found
      */
     public static JTextPane getTextPane(Container container) {
-        ArrayList<Component> textPanes = new ArrayList<>();
-        Common.loadComponents(container, JTextPane.class, textPanes);
-        return textPanes.size() > 0 ? (JTextPane)textPanes.get(0) : null;
+        return new ComponentIndex(container).getTextPane();
     }
 
     /**
@@ -266,9 +242,7 @@ public class Common {
      * @return Returns the first JTextArea instance in the given container, null if the text area is not found
      */
     public static JTextArea getTextArea(Container container) {
-        ArrayList<Component> textAreas = new ArrayList<>();
-        Common.loadComponents(container, JTextArea.class, textAreas);
-        return textAreas.size() > 0 ? (JTextArea)textAreas.get(0) : null;
+        return new ComponentIndex(container).getTextArea();
     }
 
     /**
@@ -279,19 +253,7 @@ public class Common {
      * @return Returns a list of label text lines found in the given container
      */
     public static List<String> getLabelTextLines(Container container) {
-        List<String> lines = new ArrayList<>();
-
-        ArrayList<Component> labels = new ArrayList<>();
-        Common.loadComponents(container, JLabel.class, labels);
-        for (Component component : labels) {
-            JLabel label = (JLabel)component;
-            String labelText = label.getText();
-            if (labelText != null && labelText.length() > 0) {
-                lines.add(labelText.replaceAll("\\<.*?>", " ").trim());
-            }
-        }
-
-        return lines;
+        return new ComponentIndex(container).getLabelTextLines();
     }
 
     /**
@@ -302,9 +264,7 @@ public class Common {
      * @return Returns the first JTree instance in the given container, null if the tree is not found
      */
     public static JTree getTree(Container container) {
-        ArrayList<Component> trees = new ArrayList<>();
-        Common.loadComponents(container, JTree.class, trees);
-        return trees.size() > 0 ? (JTree)trees.get(0) : null;
+        return new ComponentIndex(container).getTree();
     }
 
     /**
@@ -315,9 +275,7 @@ public class Common {
      * @return Returns the first JList instance in the given container, null if the list is not found
      */
     public static JList getList(Container container) {
-        ArrayList<Component> lists = new ArrayList<>();
-        Common.loadComponents(container, JList.class, lists);
-        return lists.size() > 0 ? (JList)lists.get(0) : null;
+        return new ComponentIndex(container).getList();
     }
 
     /**
@@ -329,8 +287,10 @@ public class Common {
      * @return Returns false
      */
     public static boolean selectTreeNode(JTree tree, TreePath path) {
+        long start = System.nanoTime();
         DefaultMutableTreeNode rootNode = (DefaultMutableTreeNode)tree.getModel().getRoot();
-        Common.selectNode(tree, rootNode, path);
+        boolean selected = Common.selectNode(tree, rootNode, path);
+        TREE_NODE_SELECTION.record(start, selected);
         return false;
     }
 
@@ -357,24 +317,6 @@ public class Common {
         return false;
     }
 
-    /**
-     * Recursively loads components of the specified type in the given container into the specified list.
-     *
-     * @param container The container to be queried
-     * @param type The type of the components to be loaded
-     * @param components The list to be loaded with the components
-     */
-    private static void loadComponents(Container container, Class<?> type, List<Component> components) {
-        for (Component component : container.getComponents()) {
-            if (type.isAssignableFrom(component.getClass())) {
-                components.add(component);
-                continue;
-            }
-            if (!(component instanceof Container)) continue;
-            Common.loadComponents((Container)component, type, components);
-        }
-    }
-
     /**
      * Recursively loads all components in the given container into the specified list.
      *
@@ -409,4 +351,78 @@ public class Common {
 
         return components;
     }
+
+    /**
+     * Gets the text displayed by the component.
+     *
+     * @param component The component to be queried
+     *
+     * @return Returns the component text, null if the component does not display text or is a password field
+     */
+    public static String getComponentText(Component component) {
+        if (component instanceof JPasswordField) {
+            // never expose the password (window tree dumps are sent to the control endpoint clients)
+            return null;
+        }
+        if (component instanceof JLabel) {
+            return ((JLabel)component).getText();
+        }
+        if (component instanceof JTextComponent) {
+            return ((JTextComponent)component).getText();
+        }
+        if (component instanceof AbstractButton) {
+            return ((AbstractButton)component).getText();
+        }
+        if (component instanceof JOptionPane) {
+            Object message = ((JOptionPane)component).getMessage();
+            return message == null ? null : message.toString();
+        }
+        return null;
+    }
+
+    /**
+     * Appends a description of the component tree of the container, one component per line, indented by depth.
+     *
+     * @param container The container to be described
+     * @param depth The depth of the container in the tree
+     * @param builder The builder to append to
+     */
+    public static void appendComponentTree(Container container, int depth, StringBuilder builder) {
+        for (Component component : container.getComponents()) {
+            for (int i = 0; i <= depth; i++) {
+                builder.append("  ");
+            }
+            builder.append(component.getClass().getName());
+            String text = Common.getComponentText(component);
+            if (text != null) {
+                builder.append(" - Text: [").append(text).append(']');
+            }
+            if (component instanceof AbstractButton) {
+                builder.append(" - Selected: [").append(((AbstractButton)component).isSelected()).append(']');
+            }
+            builder.append('\n');
+            if (component instanceof Container) {
+                Common.appendComponentTree((Container)component, depth + 1, builder);
+            }
+        }
+    }
+
+    /**
+     * Executes the task on the AWT event dispatching thread and waits for its result.
+     *
+     * @param task The task to be executed
+     * @param timeout The maximum time to wait
+     * @param unit The time unit of the timeout
+     * @param <T> The type of the task result
+     *
+     * @return Returns the task result
+     */
+    public static <T> T invokeAndWait(Callable<T> task, long timeout, TimeUnit unit) throws Exception {
+        if (SwingUtilities.isEventDispatchThread()) {
+            return task.call();
+        }
+        FutureTask<T> future = new FutureTask<>(task);
+        SwingUtilities.invokeLater(future);
+        return future.get(timeout, unit);
+    }
 }
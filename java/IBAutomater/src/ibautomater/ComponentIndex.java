@@ -0,0 +1,490 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import javax.swing.AbstractButton;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JOptionPane;
+import javax.swing.JRadioButton;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import javax.swing.JTextPane;
+import javax.swing.JToggleButton;
+import javax.swing.JTree;
+
+/**
+ * Indexes the components of a container with a single walk of the component tree.
+ * Components are bucketed by type and buttons by their normalized text, so all lookups after the first one
+ * are served from the index.
+ *
+ * The index is a snapshot: if the component tree changes (e.g. a Configuration panel is swapped
+ * after selecting a tree node), call {@link #invalidate()} and the next lookup walks the tree again.
+ * The indexes of the windows are cached by {@link ComponentIndexCache}, which marks them as stale
+ * when a component is added, removed or changes its text.
+ *
+ * The lookups and the tree walks are measured, see {@link AutomaterMetricsMXBean#getLookupMetrics()}.
+ *
+ * @author QuantConnect Corporation
+ */
+public final class ComponentIndex {
+    private static final LatencyMetric TREE_WALK = AutomaterMetrics.get().lookup("componentTreeWalk");
+    private static final LatencyMetric BUTTON_LOOKUP = AutomaterMetrics.get().lookup("getButton");
+    private static final LatencyMetric TOGGLE_BUTTON_LOOKUP = AutomaterMetrics.get().lookup("getToggleButton");
+    private static final LatencyMetric RADIO_BUTTON_LOOKUP = AutomaterMetrics.get().lookup("getRadioButton");
+    private static final LatencyMetric CHECK_BOX_LOOKUP = AutomaterMetrics.get().lookup("getCheckBox");
+    private static final LatencyMetric LABEL_LOOKUP = AutomaterMetrics.get().lookup("getLabel");
+    private static final LatencyMetric OPTION_PANE_LOOKUP = AutomaterMetrics.get().lookup("getOptionPane");
+    private static final LatencyMetric TEXT_FIELD_LOOKUP = AutomaterMetrics.get().lookup("getTextField");
+    private static final LatencyMetric TEXT_PANE_LOOKUP = AutomaterMetrics.get().lookup("getTextPane");
+    private static final LatencyMetric TEXT_AREA_LOOKUP = AutomaterMetrics.get().lookup("getTextArea");
+    private static final LatencyMetric TREE_LOOKUP = AutomaterMetrics.get().lookup("getTree");
+    private static final LatencyMetric LIST_LOOKUP = AutomaterMetrics.get().lookup("getList");
+
+    private final Container container;
+    private final Consumer<Component> walkListener;
+    private volatile boolean stale;
+    private List<Component> components;
+    private final Map<Class<?>, List<Component>> componentsByType = new HashMap<>();
+    private Map<String, List<AbstractButton>> buttonsByText;
+    private String windowText;
+    private String normalizedWindowText;
+
+    /**
+     * Creates a new instance of the {@link ComponentIndex} class.
+     * The component tree is walked on the first lookup.
+     *
+     * @param container The container to be indexed
+     */
+    public ComponentIndex(Container container) {
+        this(container, null);
+    }
+
+    /**
+     * Creates a new instance of the {@link ComponentIndex} class.
+     * The component tree is walked on the first lookup.
+     *
+     * @param container The container to be indexed
+     * @param walkListener Called for each component found by a walk of the component tree, null if none
+     */
+    ComponentIndex(Container container, Consumer<Component> walkListener) {
+        this.container = container;
+        this.walkListener = walkListener;
+    }
+
+    /**
+     * Gets the indexed container.
+     *
+     * @return Returns the indexed container
+     */
+    public Container getContainer() {
+        return this.container;
+    }
+
+    /**
+     * Discards the index, the next lookup walks the component tree again.
+     */
+    public void invalidate() {
+        this.components = null;
+        this.componentsByType.clear();
+        this.buttonsByText = null;
+        this.windowText = null;
+        this.normalizedWindowText = null;
+    }
+
+    /**
+     * Marks the index as stale, the next lookup discards it and walks the component tree again.
+     * Unlike {@link #invalidate()}, this method can be called from any thread.
+     */
+    void markStale() {
+        this.stale = true;
+    }
+
+    /**
+     * Discards the index if it was marked as stale.
+     */
+    private void refreshIfStale() {
+        if (this.stale) {
+            this.stale = false;
+            this.invalidate();
+        }
+    }
+
+    /**
+     * Gets a JButton instance with the specified text.
+     *
+     * @param text The button text to find
+     *
+     * @return Returns a JButton instance with the specified text, null if the button is not found
+     */
+    public JButton getButton(String text) {
+        long start = System.nanoTime();
+        JButton button = this.getButton(JButton.class, text);
+        BUTTON_LOOKUP.record(start, button != null);
+        return button;
+    }
+
+    /**
+     * Gets a JToggleButton instance with the specified text.
+     *
+     * @param text The toggle button text to find
+     *
+     * @return Returns a JToggleButton instance with the specified text, null if the toggle button is not found
+     */
+    public JToggleButton getToggleButton(String text) {
+        long start = System.nanoTime();
+        JToggleButton toggleButton = this.getButton(JToggleButton.class, text);
+        TOGGLE_BUTTON_LOOKUP.record(start, toggleButton != null);
+        return toggleButton;
+    }
+
+    /**
+     * Gets a JRadioButton instance with the specified text.
+     *
+     * @param text The radio button text to find
+     *
+     * @return Returns a JRadioButton instance with the specified text, null if the radio button is not found
+     */
+    public JRadioButton getRadioButton(String text) {
+        long start = System.nanoTime();
+        JRadioButton radioButton = this.getButton(JRadioButton.class, text);
+        RADIO_BUTTON_LOOKUP.record(start, radioButton != null);
+        return radioButton;
+    }
+
+    /**
+     * Gets a JCheckBox instance with the specified text.
+     *
+     * @param text The check box text to find
+     *
+     * @return Returns a JCheckBox instance with the specified text, null if the check box is not found
+     */
+    public JCheckBox getCheckBox(String text) {
+        long start = System.nanoTime();
+        JCheckBox checkBox = this.getButton(JCheckBox.class, text);
+        CHECK_BOX_LOOKUP.record(start, checkBox != null);
+        return checkBox;
+    }
+
+    /**
+     * Gets a JLabel instance containing the specified text.
+     *
+     * @param text The label text to find
+     *
+     * @return Returns a JLabel instance containing the specified text, null if the label is not found
+     */
+    public JLabel getLabel(String text) {
+        long start = System.nanoTime();
+        JLabel label = this.findLabel(text);
+        LABEL_LOOKUP.record(start, label != null);
+        return label;
+    }
+
+    /**
+     * Finds a JLabel instance containing the specified text.
+     *
+     * @param text The text to find
+     *
+     * @return Returns a JLabel instance containing the specified text, null if not found
+     */
+    private JLabel findLabel(String text) {
+        String lowerText = text.toLowerCase();
+        for (Component component : this.getComponents(JLabel.class)) {
+            JLabel label = (JLabel)component;
+            String labelText = label.getText();
+            if (labelText == null || !labelText.toLowerCase().contains(lowerText)) continue;
+            return label;
+        }
+        return null;
+    }
+
+    /**
+     * Gets a JOptionPane instance containing the specified text.
+     *
+     * @param text The option pane text to find
+     *
+     * @return Returns a JOptionPane instance containing the specified text, null if the option pane is not found
+     */
+    public JOptionPane getOptionPane(String text) {
+        long start = System.nanoTime();
+        JOptionPane optionPane = this.findOptionPane(text);
+        OPTION_PANE_LOOKUP.record(start, optionPane != null);
+        return optionPane;
+    }
+
+    /**
+     * Finds a JOptionPane instance containing the specified text.
+     *
+     * @param text The text to find
+     *
+     * @return Returns a JOptionPane instance containing the specified text, null if not found
+     */
+    private JOptionPane findOptionPane(String text) {
+        String lowerText = text.toLowerCase();
+        for (Component component : this.getComponents(JOptionPane.class)) {
+            JOptionPane optionPane = (JOptionPane)component;
+            String optionPaneText = optionPane.getMessage().toString();
+            if (optionPaneText == null || !optionPaneText.toLowerCase().contains(lowerText)) continue;
+            return optionPane;
+        }
+        return null;
+    }
+
+    /**
+     * Gets a JTextField instance at the specified position.
+     *
+     * @param index The index of the text field to return
+     *
+     * @return Returns a JTextField instance at the specified position in the list of text fields, null if the index is not valid
+     */
+    public JTextField getTextField(int index) {
+        long start = System.nanoTime();
+        List<Component> textFields = this.getComponents(JTextField.class);
+        JTextField textField = textFields.size() > index ? (JTextField)textFields.get(index) : null;
+        TEXT_FIELD_LOOKUP.record(start, textField != null);
+        return textField;
+    }
+
+    /**
+     * Gets the first JTextPane instance.
+     *
+     * @return Returns the first JTextPane instance, null if the text pane is not found
+     */
+    public JTextPane getTextPane() {
+        long start = System.nanoTime();
+        JTextPane textPane = this.getFirst(JTextPane.class);
+        TEXT_PANE_LOOKUP.record(start, textPane != null);
+        return textPane;
+    }
+
+    /**
+     * Gets the first JTextArea instance.
+     *
+     * @return Returns the first JTextArea instance, null if the text area is not found
+     */
+    public JTextArea getTextArea() {
+        long start = System.nanoTime();
+        JTextArea textArea = this.getFirst(JTextArea.class);
+        TEXT_AREA_LOOKUP.record(start, textArea != null);
+        return textArea;
+    }
+
+    /**
+     * Gets the first JTree instance.
+     *
+     * @return Returns the first JTree instance, null if the tree is not found
+     */
+    public JTree getTree() {
+        long start = System.nanoTime();
+        JTree tree = this.getFirst(JTree.class);
+        TREE_LOOKUP.record(start, tree != null);
+        return tree;
+    }
+
+    /**
+     * Gets the first JList instance.
+     *
+     * @return Returns the first JList instance, null if the list is not found
+     */
+    public JList<?> getList() {
+        long start = System.nanoTime();
+        JList<?> list = this.getFirst(JList.class);
+        LIST_LOOKUP.record(start, list != null);
+        return list;
+    }
+
+    /**
+     * Gets a list of label text lines.
+     *
+     * @return Returns a list of label text lines
+     */
+    public List<String> getLabelTextLines() {
+        List<String> lines = new ArrayList<>();
+
+        for (Component component : this.getComponents(JLabel.class)) {
+            JLabel label = (JLabel)component;
+            String labelText = label.getText();
+            if (labelText != null && labelText.length() > 0) {
+                lines.add(MarkupStripper.strip(labelText));
+            }
+        }
+
+        return lines;
+    }
+
+    /**
+     * Gets the text of the first JTextPane instance, without markup.
+     *
+     * @return Returns the text of the text pane, empty if the text pane is not found
+     */
+    public String getTextPaneText() {
+        JTextPane textPane = this.getTextPane();
+        return textPane == null ? "" : MarkupStripper.strip(textPane.getText());
+    }
+
+    /**
+     * Gets the text content of the container (labels, text panes and text areas only), without markup.
+     * The text is extracted once and shared by all window handlers.
+     *
+     * @return Returns the text content of the container
+     */
+    public String getWindowText() {
+        this.refreshIfStale();
+        if (this.windowText == null) {
+            StringBuilder builder = new StringBuilder();
+
+            JTextPane textPane = this.getTextPane();
+            if (textPane != null && textPane.getText() != null) {
+                builder.append(MarkupStripper.strip(textPane.getText()));
+            }
+
+            JTextArea textArea = this.getTextArea();
+            if (textArea != null && textArea.getText() != null) {
+                builder.append(' ').append(MarkupStripper.strip(textArea.getText()));
+            }
+
+            builder.append(' ').append(String.join(" ", this.getLabelTextLines()));
+            this.windowText = builder.toString();
+        }
+        return this.windowText;
+    }
+
+    /**
+     * Gets the text content of the container in lower case with single spaces, see {@link MarkupStripper#normalize}.
+     * The window handlers match their (lower case) text fragments against it.
+     *
+     * @return Returns the normalized text content of the container
+     */
+    public String getNormalizedWindowText() {
+        this.refreshIfStale();
+        if (this.normalizedWindowText == null) {
+            this.normalizedWindowText = MarkupStripper.normalize(this.getWindowText());
+        }
+        return this.normalizedWindowText;
+    }
+
+    /**
+     * Gets all components of the specified type, in component tree order.
+     *
+     * @param type The type of the components
+     *
+     * @return Returns the list of components of the specified type
+     */
+    public List<Component> getComponents(Class<?> type) {
+        this.refreshIfStale();
+        List<Component> components = this.componentsByType.get(type);
+        if (components == null) {
+            components = new ArrayList<>();
+            for (Component component : this.getAllComponents()) {
+                if (type.isInstance(component)) {
+                    components.add(component);
+                }
+            }
+            this.componentsByType.put(type, components);
+        }
+        return components;
+    }
+
+    /**
+     * Gets all components in the container, in component tree order (parents before their children).
+     *
+     * @return Returns the list of all components
+     */
+    public List<Component> getAllComponents() {
+        this.refreshIfStale();
+        if (this.components == null) {
+            long start = System.nanoTime();
+            this.components = new ArrayList<>();
+            ComponentIndex.loadComponents(this.container, this.components);
+            TREE_WALK.record(start, true);
+
+            if (this.walkListener != null) {
+                this.components.forEach(this.walkListener);
+            }
+        }
+        return Collections.unmodifiableList(this.components);
+    }
+
+    /**
+     * Gets a button of the specified type with the specified text (case insensitive).
+     *
+     * @param type The type of the button
+     * @param text The button text to find
+     *
+     * @return Returns the first button of the specified type with the specified text, null if the button is not found
+     */
+    private <T extends AbstractButton> T getButton(Class<T> type, String text) {
+        this.refreshIfStale();
+        if (this.buttonsByText == null) {
+            this.buttonsByText = new HashMap<>();
+            for (Component component : this.getComponents(AbstractButton.class)) {
+                String buttonText = ((AbstractButton)component).getText();
+                if (buttonText == null) continue;
+                this.buttonsByText
+                    .computeIfAbsent(buttonText.toLowerCase(Locale.ROOT), k -> new ArrayList<>(1))
+                    .add((AbstractButton)component);
+            }
+        }
+
+        List<AbstractButton> buttons = this.buttonsByText.get(text.toLowerCase(Locale.ROOT));
+        if (buttons != null) {
+            for (AbstractButton button : buttons) {
+                if (type.isInstance(button)) {
+                    return type.cast(button);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the first component of the specified type.
+     *
+     * @param type The type of the component
+     *
+     * @return Returns the first component of the specified type, null if not found
+     */
+    private <T extends Component> T getFirst(Class<T> type) {
+        List<Component> components = this.getComponents(type);
+        return components.size() > 0 ? type.cast(components.get(0)) : null;
+    }
+
+    /**
+     * Recursively loads all components in the given container into the specified list, parents before their children.
+     *
+     * @param container The container to be walked
+     * @param components The list to be loaded with the components
+     */
+    private static void loadComponents(Container container, List<Component> components) {
+        for (Component component : container.getComponents()) {
+            components.add(component);
+            if (component instanceof Container) {
+                ComponentIndex.loadComponents((Container)component, components);
+            }
+        }
+    }
+}
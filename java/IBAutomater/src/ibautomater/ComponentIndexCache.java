@@ -0,0 +1,201 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Window;
+import java.awt.event.ContainerEvent;
+import java.awt.event.ContainerListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import javax.swing.AbstractButton;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JRootPane;
+import javax.swing.JTextArea;
+import javax.swing.JTextPane;
+import javax.swing.RootPaneContainer;
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.Document;
+import javax.swing.text.JTextComponent;
+
+/**
+ * Caches the {@link ComponentIndex} of each window, so the component tree and the window text
+ * are extracted once for all the window events and handlers of a window, not once per event.
+ *
+ * The index is stored as a client property of the window root pane: the cache holds no reference to the windows
+ * and the index of a disposed dialog is collected with it.
+ * Listeners on the indexed components mark the index as stale when a component is added or removed,
+ * or when the text of a label, button, option pane, text pane or text area changes.
+ *
+ * The cache must be used on the event dispatch thread, the listeners can be called from any thread.
+ * The cache hit rate is measured, see {@link AutomaterMetricsMXBean#getLookupMetrics()}.
+ *
+ * @author QuantConnect Corporation
+ */
+final class ComponentIndexCache {
+    private static final String INDEX_PROPERTY = "ibautomater.componentIndex";
+    private static final LatencyMetric CACHE_LOOKUP = AutomaterMetrics.get().lookup("componentIndexCache");
+
+    private final Set<Component> observedComponents = Collections.newSetFromMap(new WeakHashMap<>());
+    private final ContainerListener containerListener = new ContainerListener() {
+        @Override
+        public void componentAdded(ContainerEvent event) {
+            ComponentIndexCache.markStale(event.getContainer());
+        }
+
+        @Override
+        public void componentRemoved(ContainerEvent event) {
+            ComponentIndexCache.markStale(event.getContainer());
+        }
+    };
+    private final PropertyChangeListener textListener = event -> ComponentIndexCache.markStale((Component)event.getSource());
+
+    /**
+     * Gets the index of a window, indexing the window if it is not cached.
+     *
+     * @param window The window
+     *
+     * @return Returns the cached index of the window, a new index if the window has no root pane
+     */
+    ComponentIndex get(Window window) {
+        long start = System.nanoTime();
+
+        JRootPane rootPane = ComponentIndexCache.getRootPane(window);
+        if (rootPane == null) {
+            CACHE_LOOKUP.record(start, false);
+            return new ComponentIndex(window);
+        }
+
+        Object cached = rootPane.getClientProperty(INDEX_PROPERTY);
+        if (cached instanceof ComponentIndex) {
+            CACHE_LOOKUP.record(start, true);
+            return (ComponentIndex)cached;
+        }
+
+        ComponentIndex index = new ComponentIndex(window, this::observe);
+        rootPane.putClientProperty(INDEX_PROPERTY, index);
+        this.observe(window);
+        CACHE_LOOKUP.record(start, false);
+        return index;
+    }
+
+    /**
+     * Removes the index of a window from the cache.
+     *
+     * @param window The window
+     */
+    void remove(Window window) {
+        JRootPane rootPane = ComponentIndexCache.getRootPane(window);
+        if (rootPane != null) {
+            rootPane.putClientProperty(INDEX_PROPERTY, null);
+        }
+    }
+
+    /**
+     * Adds the invalidation listeners to an indexed component, once per component.
+     *
+     * @param component The indexed component
+     */
+    private void observe(Component component) {
+        if (!this.observedComponents.add(component)) {
+            return;
+        }
+
+        if (component instanceof Container) {
+            ((Container)component).addContainerListener(this.containerListener);
+        }
+        if (component instanceof JLabel || component instanceof AbstractButton) {
+            component.addPropertyChangeListener("text", this.textListener);
+        }
+        if (component instanceof JOptionPane) {
+            component.addPropertyChangeListener(JOptionPane.MESSAGE_PROPERTY, this.textListener);
+        }
+        if (component instanceof JTextPane || component instanceof JTextArea) {
+            JTextComponent textComponent = (JTextComponent)component;
+            DocumentListener documentListener = new DocumentChangeListener(textComponent);
+            textComponent.getDocument().addDocumentListener(documentListener);
+            textComponent.addPropertyChangeListener("document", event -> {
+                if (event.getOldValue() instanceof Document) {
+                    ((Document)event.getOldValue()).removeDocumentListener(documentListener);
+                }
+                if (event.getNewValue() instanceof Document) {
+                    ((Document)event.getNewValue()).addDocumentListener(documentListener);
+                }
+                ComponentIndexCache.markStale(textComponent);
+            });
+        }
+    }
+
+    /**
+     * Marks the cached index of the window containing a component as stale.
+     *
+     * @param component The changed component
+     */
+    private static void markStale(Component component) {
+        Window window = component instanceof Window ? (Window)component : SwingUtilities.getWindowAncestor(component);
+        JRootPane rootPane = ComponentIndexCache.getRootPane(window);
+        if (rootPane != null) {
+            Object cached = rootPane.getClientProperty(INDEX_PROPERTY);
+            if (cached instanceof ComponentIndex) {
+                ((ComponentIndex)cached).markStale();
+            }
+        }
+    }
+
+    /**
+     * Gets the root pane of a window.
+     *
+     * @param window The window
+     *
+     * @return Returns the root pane of the window, null if the window has none
+     */
+    private static JRootPane getRootPane(Window window) {
+        return window instanceof RootPaneContainer ? ((RootPaneContainer)window).getRootPane() : null;
+    }
+
+    /**
+     * Marks the index as stale when the text of a text pane or a text area changes.
+     */
+    private static final class DocumentChangeListener implements DocumentListener {
+        private final Component component;
+
+        DocumentChangeListener(Component component) {
+            this.component = component;
+        }
+
+        @Override
+        public void insertUpdate(DocumentEvent event) {
+            ComponentIndexCache.markStale(this.component);
+        }
+
+        @Override
+        public void removeUpdate(DocumentEvent event) {
+            ComponentIndexCache.markStale(this.component);
+        }
+
+        @Override
+        public void changedUpdate(DocumentEvent event) {
+            ComponentIndexCache.markStale(this.component);
+        }
+    }
+}
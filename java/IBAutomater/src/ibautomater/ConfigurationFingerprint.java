@@ -0,0 +1,93 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The fingerprint of the IBGateway configuration applied by the Configuration window handler.
+ *
+ * IBGateway keeps its settings across its daily restart, so when the fingerprint of the last applied configuration
+ * matches the one which would be applied now, the Configuration window does not need to be opened again.
+ *
+ * @author QuantConnect Corporation
+ */
+final class ConfigurationFingerprint {
+    private static final String VERSION = "1";
+
+    private ConfigurationFingerprint() {
+    }
+
+    /**
+     * Gets the fingerprint of a configuration.
+     * The check boxes and radio buttons always set by the Configuration window handler are part of the fingerprint,
+     * so that changing them in the handler invalidates the previously saved fingerprints.
+     *
+     * @param apiPort The API port number
+     * @param restartTime The auto restart time, e.g. "11:45 PM"
+     *
+     * @return Returns the configuration fingerprint
+     */
+    static String of(int apiPort, String restartTime) {
+        return "version=" + VERSION
+            + ";apiPort=" + apiPort
+            + ";readOnlyApi=false"
+            + ";createApiLog=true"
+            + ";accountGroups=false"
+            + ";bypassOrderPrecautions=true"
+            + ";autoRestart=true"
+            + ";restartTime=" + restartTime;
+    }
+
+    /**
+     * Reads the saved fingerprint.
+     *
+     * @param path The fingerprint file
+     *
+     * @return Returns the saved fingerprint, null if there is none
+     */
+    static String read(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * Saves a fingerprint, replacing the file atomically.
+     *
+     * @param path The fingerprint file
+     * @param fingerprint The fingerprint of the applied configuration
+     */
+    static void write(Path path, String fingerprint) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temp, fingerprint.getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Deletes the saved fingerprint, so that the next start applies the whole configuration.
+     *
+     * @param path The fingerprint file
+     */
+    static void delete(Path path) throws IOException {
+        Files.deleteIfExists(path);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Watches a directory for control files (e.g. "restart", "shutdown") created by the host process.
+ * When a registered control file appears, the file is deleted and its action is executed.
+ *
+ * A {@link WatchService} is used, so control files are detected as soon as they are created.
+ * Where the JDK watch service has no native notifications (it then polls every few seconds itself), or if the
+ * watch service fails, the directory is polled every second instead, see {@link Settings#getControlFilePolling()}.
+ *
+ * @author QuantConnect Corporation
+ */
+final class ControlFileWatcher {
+    private static final long POLLING_INTERVAL_MILLIS = 1000;
+
+    private final IBAutomater automater;
+    private final Path directory;
+    private final boolean polling;
+    private final Map<String, Runnable> actions = new LinkedHashMap<>();
+    private Thread thread;
+
+    /**
+     * Creates a new instance of the {@link ControlFileWatcher} class.
+     *
+     * @param automater The {@link IBAutomater} instance
+     * @param directory The directory where the control files are created
+     * @param polling If true, the directory is polled instead of using the watch service, see {@link Settings#getControlFilePolling()}
+     */
+    ControlFileWatcher(IBAutomater automater, Path directory, boolean polling) {
+        this.automater = automater;
+        this.directory = directory;
+        this.polling = polling;
+    }
+
+    /**
+     * Registers the action to be executed when the control file is created, must be called before {@link #start()}.
+     *
+     * @param fileName The name of the control file
+     * @param action The action to be executed
+     */
+    void register(String fileName, Runnable action) {
+        this.actions.put(fileName, action);
+    }
+
+    /**
+     * Starts watching the directory on a background thread, subsequent calls have no effect.
+     */
+    synchronized void start() {
+        if (this.thread != null) {
+            return;
+        }
+
+        this.thread = new Thread(this::run, "IBAutomater-control-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * The watcher thread loop.
+     */
+    private void run() {
+        this.automater.logMessage("Start watching control files in: " + this.directory);
+
+        if (this.polling) {
+            this.poll();
+            return;
+        }
+
+        try {
+            this.watch();
+        }
+        catch (IOException | UnsupportedOperationException exception) {
+            this.automater.logMessage("Control file watch service not available (" + exception.getMessage() + "), polling for control files");
+            this.poll();
+        }
+        catch (InterruptedException exception) {
+            // stopped
+        }
+    }
+
+    /**
+     * Waits for control files using the file system watch service.
+     */
+    private void watch() throws IOException, InterruptedException {
+        try (WatchService watchService = this.directory.getFileSystem().newWatchService()) {
+            this.directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+            // control files created before the watch was registered
+            this.checkAll();
+
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        this.checkAll();
+                    }
+                    else {
+                        this.check(event.context().toString());
+                    }
+                }
+                if (!key.reset()) {
+                    throw new IOException("Watch key is no longer valid: " + this.directory);
+                }
+            }
+        }
+    }
+
+    /**
+     * Polls for control files.
+     */
+    @SuppressWarnings("SleepWhileInLoop")
+    private void poll() {
+        while (true) {
+            this.checkAll();
+            try {
+                Thread.sleep(POLLING_INTERVAL_MILLIS);
+            }
+            catch (InterruptedException exception) {
+                // stopped
+                return;
+            }
+        }
+    }
+
+    /**
+     * Checks all registered control files.
+     */
+    private void checkAll() {
+        for (String fileName : this.actions.keySet()) {
+            this.check(fileName);
+        }
+    }
+
+    /**
+     * Deletes the control file if it exists and executes its action.
+     *
+     * @param fileName The name of the file
+     */
+    private void check(String fileName) {
+        Runnable action = this.actions.get(fileName);
+        if (action == null) {
+            return;
+        }
+
+        try {
+            if (!Files.deleteIfExists(this.directory.resolve(fileName))) {
+                return;
+            }
+        }
+        catch (IOException exception) {
+            this.automater.logError(exception);
+            return;
+        }
+
+        try {
+            action.run();
+        }
+        catch (Exception exception) {
+            this.automater.logError(exception);
+        }
+    }
+}
@@ -0,0 +1,449 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Loopback TCP endpoint used by the host process to send commands to IBAutomater and to receive its events.
+ *
+ * Every message is a frame: a 4 byte big-endian length (of the rest of the frame),
+ * a 1 byte frame kind and a UTF-8 payload.
+ * - 'A' (client to agent): the secret token, must be the first frame of the connection
+ * - 'C' (client to agent): a command name, e.g. "status", "restart", "shutdown", "export-logs", "dump-window-tree", "resources", "restart-report", "lifecycle"
+ * - 'R' (agent to client): the successful command output
+ * - 'X' (agent to client): the command error message
+ * - 'E' (agent to client): an event, see {@link AutomaterEvent#format()}
+ *
+ * Responses are sent in the order of the commands, events are pushed to all authenticated clients.
+ * The listening port is written to the "IBAutomater.port" file in the working directory.
+ * A random token is written at each start to the "IBAutomater.token" file, readable by its owner only,
+ * so that only the user running IBGateway can send commands: a connection with a wrong token is closed.
+ * Commands run on the IBAutomater worker pool with a timeout, a slow command does not delay the events,
+ * the commands of a client run one after the other.
+ *
+ * @author QuantConnect Corporation
+ */
+final class ControlServer implements AutomaterEventListener {
+    static final byte FRAME_AUTHENTICATE = 'A';
+    static final byte FRAME_COMMAND = 'C';
+    static final byte FRAME_RESPONSE = 'R';
+    static final byte FRAME_ERROR = 'X';
+    static final byte FRAME_EVENT = 'E';
+
+    private static final int MAX_FRAME_LENGTH = 64 * 1024;
+    private static final int MAX_PENDING_FRAMES = 10000;
+    private static final long COMMAND_TIMEOUT_SECONDS = 30;
+
+    private final IBAutomater automater;
+    private final int port;
+    private final Path portFile;
+    private final Path tokenFile;
+    private final Map<String, ControlCommand> commands = new ConcurrentHashMap<>();
+    private final Queue<ByteBuffer> events = new ConcurrentLinkedQueue<>();
+    private final Queue<Response> responses = new ConcurrentLinkedQueue<>();
+    private byte[] token;
+    private final List<Client> clients = new ArrayList<>();
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+
+    /**
+     * Creates a new instance of the {@link ControlServer} class.
+     *
+     * @param automater The {@link IBAutomater} instance
+     * @param port The loopback port to listen on, 0 for any free port
+     * @param portFile The file the listening port is written to
+     * @param tokenFile The owner-only file the secret token is written to
+     */
+    ControlServer(IBAutomater automater, int port, Path portFile, Path tokenFile) {
+        this.automater = automater;
+        this.port = port;
+        this.portFile = portFile;
+        this.tokenFile = tokenFile;
+    }
+
+    /**
+     * Registers a command.
+     *
+     * @param name The command name
+     * @param command The command
+     */
+    void register(String name, ControlCommand command) {
+        this.commands.put(name, command);
+    }
+
+    /**
+     * Opens the listening socket and starts the server thread.
+     */
+    void start() throws IOException {
+        this.token = ControlServer.writeToken(this.tokenFile);
+
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), this.port));
+        this.serverChannel.configureBlocking(false);
+        this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+
+        int localPort = ((InetSocketAddress)this.serverChannel.getLocalAddress()).getPort();
+        Files.write(this.portFile, Integer.toString(localPort).getBytes(StandardCharsets.UTF_8));
+        this.automater.logMessage("Control endpoint listening on port " + localPort);
+
+        Thread thread = new Thread(this::run, "IBAutomater-control-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Pushes the event to all connected clients.
+     *
+     * @param event The published event
+     */
+    @Override
+    public void onEvent(AutomaterEvent event) {
+        if (this.selector == null) {
+            return;
+        }
+
+        this.events.add(ControlServer.frame(FRAME_EVENT, event.format()));
+        this.selector.wakeup();
+    }
+
+    /**
+     * The server thread loop.
+     */
+    private void run() {
+        while (this.selector.isOpen()) {
+            try {
+                this.selector.select();
+
+                ByteBuffer event;
+                while ((event = this.events.poll()) != null) {
+                    for (Client client : new ArrayList<>(this.clients)) {
+                        if (client.authenticated) {
+                            client.send(event.duplicate());
+                        }
+                    }
+                }
+
+                Response response;
+                while ((response = this.responses.poll()) != null) {
+                    response.client.send(response.frame);
+                    response.client.commandRunning = false;
+                    response.client.startNextCommand();
+                }
+
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        this.accept();
+                        continue;
+                    }
+
+                    Client client = (Client)key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            client.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            client.write();
+                        }
+                    }
+                    catch (IOException exception) {
+                        client.close();
+                    }
+                }
+            }
+            catch (Exception exception) {
+                this.automater.logError(exception);
+            }
+        }
+    }
+
+    /**
+     * Accepts a new client connection.
+     */
+    private void accept() throws IOException {
+        SocketChannel channel = this.serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        Client client = new Client(channel);
+        client.key = channel.register(this.selector, SelectionKey.OP_READ, client);
+        this.clients.add(client);
+    }
+
+    /**
+     * Executes a command.
+     *
+     * @param name The command name
+     *
+     * @return Returns the response frame
+     */
+    private ByteBuffer execute(String name) {
+        ControlCommand command = this.commands.get(name.trim());
+        if (command == null) {
+            return ControlServer.frame(FRAME_ERROR, "Unknown command: " + name);
+        }
+
+        try {
+            this.automater.logMessage("Control command: [" + name + "]");
+            String output = command.execute();
+            return ControlServer.frame(FRAME_RESPONSE, output == null ? "" : output);
+        }
+        catch (Exception exception) {
+            this.automater.logError(exception);
+            return ControlServer.frame(FRAME_ERROR, String.valueOf(exception.getMessage()));
+        }
+    }
+
+    /**
+     * Writes a new random token to a file readable by its owner only.
+     *
+     * @param file The token file
+     *
+     * @return Returns the token
+     */
+    private static byte[] writeToken(Path file) throws IOException {
+        byte[] random = new byte[16];
+        new SecureRandom().nextBytes(random);
+        StringBuilder builder = new StringBuilder();
+        for (byte value : random) {
+            builder.append(String.format("%02x", value));
+        }
+        byte[] token = builder.toString().getBytes(StandardCharsets.UTF_8);
+
+        // the file is created owner-only before the token is written to it
+        Files.deleteIfExists(file);
+        try {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        catch (UnsupportedOperationException exception) {
+            // not a POSIX file system, the file inherits the permissions of the directory
+            Files.createFile(file);
+        }
+        Files.write(file, token);
+        return token;
+    }
+
+    /**
+     * Creates a frame.
+     *
+     * @param kind The frame kind
+     * @param payload The frame payload
+     *
+     * @return Returns the frame, ready to be written
+     */
+    static ByteBuffer frame(byte kind, String payload) {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(5 + bytes.length);
+        buffer.putInt(1 + bytes.length).put(kind).put(bytes);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * A connected client.
+     */
+    private final class Client {
+        private final SocketChannel channel;
+        private final ByteBuffer input = ByteBuffer.allocate(MAX_FRAME_LENGTH + 4);
+        private final Queue<ByteBuffer> output = new ArrayDeque<>();
+        private SelectionKey key;
+        private boolean authenticated;
+        // the commands of a client run one after the other, so that its responses keep the command order
+        private final Queue<String> pendingCommands = new ArrayDeque<>();
+        private boolean commandRunning;
+
+        Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Reads the available bytes and executes the complete command frames.
+         */
+        void read() throws IOException {
+            if (this.channel.read(this.input) < 0) {
+                this.close();
+                return;
+            }
+
+            this.input.flip();
+            while (this.input.remaining() >= 4) {
+                int length = this.input.getInt(this.input.position());
+                if (length < 1 || length > MAX_FRAME_LENGTH) {
+                    throw new IOException("Invalid frame length: " + length);
+                }
+                if (this.input.remaining() < 4 + length) {
+                    break;
+                }
+
+                this.input.getInt();
+                byte kind = this.input.get();
+                byte[] payload = new byte[length - 1];
+                this.input.get(payload);
+
+                if (kind == FRAME_AUTHENTICATE) {
+                    this.authenticated = MessageDigest.isEqual(payload, ControlServer.this.token);
+                    if (!this.authenticated) {
+                        ControlServer.this.automater.logMessage("Control endpoint: invalid token, connection closed");
+                        this.close();
+                        return;
+                    }
+                }
+                else if (!this.authenticated) {
+                    ControlServer.this.automater.logMessage("Control endpoint: unauthenticated client, connection closed");
+                    this.close();
+                    return;
+                }
+                else if (kind == FRAME_COMMAND) {
+                    this.pendingCommands.add(new String(payload, StandardCharsets.UTF_8));
+                    this.startNextCommand();
+                }
+                else {
+                    this.send(ControlServer.frame(FRAME_ERROR, "Unexpected frame kind: " + (char)kind));
+                }
+            }
+            this.input.compact();
+        }
+
+        /**
+         * Submits the next pending command to the worker pool, unless a command of the client is running.
+         * The response (or the timeout error) is queued once, when the command completes or its timeout expires.
+         */
+        void startNextCommand() {
+            if (this.commandRunning || !this.key.isValid() || this.pendingCommands.isEmpty()) {
+                return;
+            }
+            this.commandRunning = true;
+
+            String name = this.pendingCommands.poll();
+            AtomicBoolean responded = new AtomicBoolean(false);
+            ControlServer.this.automater.submit("Control command " + name, () -> {
+                ByteBuffer frame = ControlServer.this.execute(name);
+                if (responded.compareAndSet(false, true)) {
+                    this.respond(frame);
+                }
+                return null;
+            }, COMMAND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+            ControlServer.this.automater.getScheduler().schedule(() -> {
+                if (responded.compareAndSet(false, true)) {
+                    this.respond(ControlServer.frame(FRAME_ERROR, "Timeout in execution of " + name));
+                }
+            }, COMMAND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+
+        /**
+         * Hands a command response to the server thread.
+         *
+         * @param frame The response frame
+         */
+        private void respond(ByteBuffer frame) {
+            ControlServer.this.responses.add(new Response(this, frame));
+            ControlServer.this.selector.wakeup();
+        }
+
+        /**
+         * Queues a frame for writing.
+         *
+         * @param frame The frame to be written
+         */
+        void send(ByteBuffer frame) throws IOException {
+            if (!this.key.isValid()) {
+                return;
+            }
+            if (this.output.size() >= MAX_PENDING_FRAMES) {
+                // the client does not read its events, disconnect it instead of buffering without limit
+                this.close();
+                return;
+            }
+            this.output.add(frame);
+            this.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        /**
+         * Writes the queued frames until the socket buffer is full.
+         */
+        void write() throws IOException {
+            while (!this.output.isEmpty()) {
+                ByteBuffer frame = this.output.peek();
+                this.channel.write(frame);
+                if (frame.hasRemaining()) {
+                    return;
+                }
+                this.output.poll();
+            }
+            this.key.interestOps(SelectionKey.OP_READ);
+        }
+
+        /**
+         * Closes the connection.
+         */
+        void close() {
+            ControlServer.this.clients.remove(this);
+            this.key.cancel();
+            try {
+                this.channel.close();
+            }
+            catch (IOException exception) {
+                // already closed
+            }
+        }
+    }
+
+    /**
+     * A command response waiting to be queued to its client by the server thread.
+     */
+    private static final class Response {
+        private final Client client;
+        private final ByteBuffer frame;
+
+        Response(Client client, ByteBuffer frame) {
+            this.client = client;
+            this.frame = frame;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+
+/**
+ * Measures the responsiveness of the AWT event dispatching thread, which runs the IBGateway user interface
+ * and the IBAutomater window handlers.
+ *
+ * A heartbeat is posted to the event dispatching thread at a fixed interval and the delay before it runs (the lag)
+ * is recorded, see {@link AutomaterMetricsMXBean#getEdtLagMetrics()}. The lag distribution of the last period
+ * is logged at the end of each period.
+ *
+ * When a heartbeat is still pending after the stall threshold, the stack of the event dispatching thread is captured
+ * and logged, with an {@link AutomaterEventType#EDT_STALL} event, to show what is blocking it
+ * (a window handler, IBGateway code, a lock).
+ *
+ * @author QuantConnect Corporation
+ */
+final class EdtWatchdog {
+    private static final int MAX_EVENT_FRAMES = 8;
+
+    private final IBAutomater automater;
+    private final long intervalMillis;
+    private final long thresholdNanos;
+    private final long summaryMillis;
+    private final LatencyMetric periodLag = new LatencyMetric();
+    private volatile long heartbeatPostTime;
+    private volatile boolean stallReported;
+    private volatile long edtThreadId = -1;
+
+    /**
+     * Creates a new instance of the {@link EdtWatchdog} class.
+     *
+     * @param automater The {@link IBAutomater} instance
+     * @param intervalMillis The heartbeat interval in milliseconds
+     * @param thresholdMillis The lag in milliseconds after which the event dispatching thread is considered stalled
+     * @param summaryMillis The period in milliseconds of the lag summary written to the log
+     */
+    EdtWatchdog(IBAutomater automater, long intervalMillis, long thresholdMillis, long summaryMillis) {
+        this.automater = automater;
+        this.intervalMillis = intervalMillis;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.summaryMillis = summaryMillis;
+    }
+
+    /**
+     * Starts posting the heartbeats on the IBAutomater scheduler.
+     */
+    void start() {
+        this.automater.getScheduler().scheduleWithFixedDelay(this::check, this.intervalMillis, this.intervalMillis, TimeUnit.MILLISECONDS);
+        this.automater.getScheduler().scheduleAtFixedRate(this::logSummary, this.summaryMillis, this.summaryMillis, TimeUnit.MILLISECONDS);
+        this.automater.logMessage("EDT watchdog started: interval " + this.intervalMillis + " ms, stall threshold "
+            + TimeUnit.NANOSECONDS.toMillis(this.thresholdNanos) + " ms");
+    }
+
+    /**
+     * Posts a heartbeat if none is pending, otherwise checks whether the pending heartbeat is late.
+     * Runs on the scheduler thread.
+     */
+    private void check() {
+        try {
+            long postTime = this.heartbeatPostTime;
+            long now = System.nanoTime();
+
+            if (postTime == 0) {
+                this.heartbeatPostTime = now;
+                SwingUtilities.invokeLater(this::heartbeat);
+            }
+            else if (!this.stallReported && now - postTime >= this.thresholdNanos) {
+                this.stallReported = true;
+                this.reportStall(now - postTime);
+            }
+        }
+        catch (Exception exception) {
+            this.automater.logError(exception);
+        }
+    }
+
+    /**
+     * Records the lag of the heartbeat, runs on the event dispatching thread.
+     */
+    private void heartbeat() {
+        long postTime = this.heartbeatPostTime;
+        this.edtThreadId = Thread.currentThread().getId();
+
+        AutomaterMetrics.get().edtLag().record(postTime, true);
+        this.periodLag.record(postTime, true);
+
+        if (this.stallReported) {
+            long stallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - postTime);
+            this.automater.logMessage("EDT stall ended after " + stallMillis + " ms");
+            this.automater.publishEvent(AutomaterEventType.EDT_STALL, AutomaterEventOutcome.SUCCESS, null, "ended after " + stallMillis + " ms");
+            this.stallReported = false;
+        }
+
+        this.heartbeatPostTime = 0;
+    }
+
+    /**
+     * Captures and logs the stack of the stalled event dispatching thread.
+     *
+     * @param lagNanos The current lag of the pending heartbeat
+     */
+    private void reportStall(long lagNanos) {
+        long lagMillis = TimeUnit.NANOSECONDS.toMillis(lagNanos);
+        ThreadInfo info = this.getEdtThreadInfo();
+        if (info == null) {
+            this.automater.logMessage("EDT stall detected: " + lagMillis + " ms, event dispatching thread not found");
+            this.automater.publishEvent(AutomaterEventType.EDT_STALL, AutomaterEventOutcome.FAILURE, null, lagMillis + " ms");
+            return;
+        }
+
+        StringBuilder log = new StringBuilder();
+        log.append("EDT stall detected: ").append(lagMillis).append(" ms - Thread: [").append(info.getThreadName())
+            .append("] - State: [").append(info.getThreadState()).append(']');
+        StringBuilder detail = new StringBuilder();
+        detail.append(lagMillis).append(" ms; ").append(info.getThreadState());
+
+        if (info.getLockName() != null) {
+            log.append(" - Waiting on: [").append(info.getLockName()).append(']');
+            detail.append(" on ").append(info.getLockName());
+            if (info.getLockOwnerName() != null) {
+                log.append(" owned by [").append(info.getLockOwnerName()).append(']');
+                detail.append(" owned by ").append(info.getLockOwnerName());
+            }
+        }
+
+        StackTraceElement[] frames = info.getStackTrace();
+        for (int i = 0; i < frames.length; i++) {
+            log.append(System.lineSeparator()).append("\tat ").append(frames[i]);
+            if (i < MAX_EVENT_FRAMES) {
+                detail.append(i == 0 ? "; at " : " < ").append(frames[i]);
+            }
+        }
+
+        this.automater.logMessage(log.toString());
+        this.automater.publishEvent(AutomaterEventType.EDT_STALL, AutomaterEventOutcome.FAILURE, null, detail.toString());
+    }
+
+    /**
+     * Gets the information of the event dispatching thread, including its stack and the lock it waits for.
+     *
+     * @return Returns the thread information, null if the thread is not found
+     */
+    private ThreadInfo getEdtThreadInfo() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long threadId = this.edtThreadId;
+
+        if (threadId < 0) {
+            // no heartbeat ran yet, find the thread by name
+            for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+                if (info != null && info.getThreadName().startsWith("AWT-EventQueue")) {
+                    threadId = info.getThreadId();
+                    break;
+                }
+            }
+            if (threadId < 0) {
+                return null;
+            }
+        }
+
+        ThreadInfo[] infos = threads.getThreadInfo(new long[] { threadId },
+            threads.isObjectMonitorUsageSupported(), threads.isSynchronizerUsageSupported());
+        return infos.length == 0 ? null : infos[0];
+    }
+
+    /**
+     * Logs the lag distribution of the period and starts a new period.
+     */
+    private void logSummary() {
+        MetricSnapshot snapshot = this.periodLag.snapshot();
+        this.periodLag.reset();
+        this.automater.logMessage("EDT lag (last " + TimeUnit.MILLISECONDS.toMinutes(this.summaryMillis) + " min):"
+            + " heartbeats=" + snapshot.getCount()
+            + " p50=" + snapshot.getP50Micros() + " us"
+            + " p90=" + snapshot.getP90Micros() + " us"
+            + " p99=" + snapshot.getP99Micros() + " us"
+            + " max=" + snapshot.getMaxMicros() + " us");
+    }
+}
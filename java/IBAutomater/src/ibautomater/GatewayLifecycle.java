@@ -0,0 +1,368 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The lifecycle of the automated IBGateway: starting, login form, authenticating, 2FA pending, configuring, ready,
+ * restarting and shutting down.
+ *
+ * The state is driven by the published events (login results, 2FA prompts, configuration, restarts) and by the
+ * window handlers for the steps without an event. Transitions are atomic (compare and set on the current state)
+ * and only the transitions listed in {@link State} are accepted, so that concurrent or late signals
+ * (e.g. from the scheduler and the event dispatching thread) cannot move the lifecycle backwards.
+ *
+ * Each transition is recorded in a bounded history with its time and the dwell time in the previous state,
+ * published as a {@link AutomaterEventType#LIFECYCLE} event and measured per state, see
+ * {@link AutomaterMetricsMXBean#getLifecycleDwellMetrics()}. A state staying longer than its timeout
+ * is reported with a failure event, the automation itself is left to the window handlers and the host process.
+ *
+ * @author QuantConnect Corporation
+ */
+final class GatewayLifecycle implements AutomaterEventListener {
+
+    /**
+     * The lifecycle states, with the states they can be entered from.
+     */
+    enum State {
+        STARTING,
+        LOGIN_FORM,
+        AUTHENTICATING,
+        TWO_FACTOR_PENDING,
+        CONFIGURING,
+        READY,
+        RESTARTING,
+        SHUTTING_DOWN;
+
+        private Set<State> predecessors;
+
+        static {
+            STARTING.predecessors = EnumSet.noneOf(State.class);
+            LOGIN_FORM.predecessors = EnumSet.of(STARTING, AUTHENTICATING, TWO_FACTOR_PENDING, RESTARTING);
+            AUTHENTICATING.predecessors = EnumSet.of(STARTING, LOGIN_FORM, TWO_FACTOR_PENDING);
+            TWO_FACTOR_PENDING.predecessors = EnumSet.of(LOGIN_FORM, AUTHENTICATING);
+            // the "Starting application..." window can be seen without a login (daily restart)
+            CONFIGURING.predecessors = EnumSet.of(STARTING, LOGIN_FORM, AUTHENTICATING, TWO_FACTOR_PENDING, READY);
+            READY.predecessors = EnumSet.of(CONFIGURING);
+            RESTARTING.predecessors = EnumSet.complementOf(EnumSet.of(RESTARTING, SHUTTING_DOWN));
+            SHUTTING_DOWN.predecessors = EnumSet.complementOf(EnumSet.of(SHUTTING_DOWN));
+        }
+
+        /**
+         * Checks whether this state can be entered from another state.
+         *
+         * @param state The current state
+         *
+         * @return Returns true if the transition is allowed
+         */
+        boolean canFollow(State state) {
+            return this.predecessors.contains(state);
+        }
+    }
+
+    /**
+     * A recorded transition.
+     */
+    static final class Transition {
+        final long sequence;
+        final State from;
+        final State to;
+        final long timeMillis;
+        final long enteredNanos;
+        final long dwellNanos;
+        final String reason;
+
+        Transition(long sequence, State from, State to, long timeMillis, long enteredNanos, long dwellNanos, String reason) {
+            this.sequence = sequence;
+            this.from = from;
+            this.to = to;
+            this.timeMillis = timeMillis;
+            this.enteredNanos = enteredNanos;
+            this.dwellNanos = dwellNanos;
+            this.reason = reason;
+        }
+
+        /**
+         * Formats the transition as a single line: time, states, dwell time in the previous state and reason.
+         *
+         * @return Returns the formatted transition
+         */
+        String format() {
+            return TIME_FORMAT.format(Instant.ofEpochMilli(this.timeMillis)) + " " + (this.from == null ? "-" : this.from.name())
+                + " -> " + this.to.name() + " after " + TimeUnit.NANOSECONDS.toMillis(this.dwellNanos) + " ms"
+                + (this.reason == null || this.reason.isEmpty() ? "" : " (" + this.reason + ")");
+        }
+    }
+
+    private static final int MAX_HISTORY = 256;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private final IBAutomater automater;
+    private final Map<State, Long> timeoutMillis;
+    private final AtomicReference<Transition> current;
+    private final AtomicLongArray lastEnteredNanos = new AtomicLongArray(State.values().length);
+    private final ArrayDeque<Transition> history = new ArrayDeque<>();
+    private final AtomicReference<ScheduledFuture<?>> timeout = new AtomicReference<>();
+
+    /**
+     * Creates a new instance of the {@link GatewayLifecycle} class, in the {@link State#STARTING} state.
+     *
+     * @param automater The {@link IBAutomater} instance
+     * @param timeoutMillis The maximum time in each state in milliseconds, states without a timeout are not listed
+     */
+    GatewayLifecycle(IBAutomater automater, Map<State, Long> timeoutMillis) {
+        this.automater = automater;
+        this.timeoutMillis = new EnumMap<>(State.class);
+        this.timeoutMillis.putAll(timeoutMillis);
+
+        long now = System.nanoTime();
+        Transition initial = new Transition(0, null, State.STARTING, System.currentTimeMillis(), now, 0, "session started");
+        this.current = new AtomicReference<>(initial);
+        this.lastEnteredNanos.set(State.STARTING.ordinal(), now);
+        this.history.add(initial);
+    }
+
+    /**
+     * Gets the default state timeouts, overridden by the "lifecycleTimeouts" option
+     * (e.g. "AUTHENTICATING=300,CONFIGURING=60", 0 removes the timeout of a state).
+     *
+     * @param option The option value, null if not set
+     *
+     * @return Returns the maximum time in each state in milliseconds
+     */
+    static Map<State, Long> parseTimeouts(String option) {
+        Map<State, Long> timeouts = new EnumMap<>(State.class);
+        timeouts.put(State.STARTING, TimeUnit.MINUTES.toMillis(5));
+        timeouts.put(State.LOGIN_FORM, TimeUnit.MINUTES.toMillis(2));
+        timeouts.put(State.AUTHENTICATING, TimeUnit.MINUTES.toMillis(3));
+        // IBGateway closes the 2FA prompt after 3 minutes
+        timeouts.put(State.TWO_FACTOR_PENDING, TimeUnit.MINUTES.toMillis(4));
+        timeouts.put(State.CONFIGURING, TimeUnit.MINUTES.toMillis(2));
+        timeouts.put(State.RESTARTING, TimeUnit.MINUTES.toMillis(10));
+        timeouts.put(State.SHUTTING_DOWN, TimeUnit.MINUTES.toMillis(2));
+
+        if (option != null) {
+            for (String entry : option.split(",")) {
+                int separator = entry.indexOf('=');
+                if (separator <= 0) {
+                    continue;
+                }
+                try {
+                    State state = State.valueOf(entry.substring(0, separator).trim().toUpperCase());
+                    long seconds = Long.parseLong(entry.substring(separator + 1).trim());
+                    if (seconds > 0) {
+                        timeouts.put(state, TimeUnit.SECONDS.toMillis(seconds));
+                    }
+                    else {
+                        timeouts.remove(state);
+                    }
+                }
+                catch (IllegalArgumentException exception) {
+                    // unknown state or invalid value, keep the default
+                }
+            }
+        }
+        return timeouts;
+    }
+
+    /**
+     * Starts the timeout of the initial state.
+     */
+    void start() {
+        this.scheduleTimeout(this.current.get());
+    }
+
+    /**
+     * Drives the lifecycle from the published events.
+     *
+     * @param event The published event
+     */
+    @Override
+    public void onEvent(AutomaterEvent event) {
+        switch (event.getType()) {
+            case LOGIN_RESULT:
+                if (event.getOutcome() == AutomaterEventOutcome.PENDING) {
+                    this.transition(State.AUTHENTICATING, event.getDetail());
+                }
+                else if (event.getOutcome() == AutomaterEventOutcome.FAILURE) {
+                    this.transition(State.LOGIN_FORM, "login failed");
+                }
+                else if (event.getOutcome() == AutomaterEventOutcome.SUCCESS) {
+                    this.transition(State.CONFIGURING, event.getDetail());
+                }
+                break;
+            case TWO_FACTOR:
+                if (event.getOutcome() == AutomaterEventOutcome.PENDING && event.getDetail().startsWith("prompt")) {
+                    this.transition(State.TWO_FACTOR_PENDING, "2FA " + event.getDetail());
+                }
+                else if (event.getOutcome() == AutomaterEventOutcome.SUCCESS) {
+                    this.transition(State.AUTHENTICATING, "2FA approved");
+                }
+                else if (event.getOutcome() == AutomaterEventOutcome.FAILURE) {
+                    this.transition(State.LOGIN_FORM, "2FA " + event.getDetail());
+                }
+                break;
+            case CONFIGURED:
+                if (event.getOutcome() == AutomaterEventOutcome.SUCCESS) {
+                    this.transition(State.READY, event.getDetail().isEmpty() ? "configured" : "configuration " + event.getDetail());
+                }
+                break;
+            case RESTART_IN_PROGRESS:
+                this.transition(State.RESTARTING, "restart in progress");
+                break;
+            case AUTO_RESTART_TOKEN_EXPIRED:
+                this.transition(State.SHUTTING_DOWN, "auto-restart token expired");
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Gets the current state.
+     *
+     * @return Returns the current state
+     */
+    State getState() {
+        return this.current.get().to;
+    }
+
+    /**
+     * Gets the time spent in the current state.
+     *
+     * @return Returns the time since the current state was entered, in milliseconds
+     */
+    long getMillisInState() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.current.get().enteredNanos);
+    }
+
+    /**
+     * Gets the time since a state was last entered, whether or not it is the current state.
+     *
+     * @param state The state
+     *
+     * @return Returns the time since the state was last entered in milliseconds, -1 if it was never entered
+     */
+    long getMillisSinceEntered(State state) {
+        long entered = this.lastEnteredNanos.get(state.ordinal());
+        return entered == 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - entered);
+    }
+
+    /**
+     * Moves to a new state, if the transition from the current state is allowed.
+     * A transition to the current state is ignored.
+     *
+     * @param state The new state
+     * @param reason The reason of the transition, for the history
+     *
+     * @return Returns true if the state was entered by this call
+     */
+    boolean transition(State state, String reason) {
+        while (true) {
+            Transition previous = this.current.get();
+            if (previous.to == state) {
+                return false;
+            }
+            if (!state.canFollow(previous.to)) {
+                this.automater.logMessage("Lifecycle: ignored transition " + previous.to + " -> " + state + (reason == null ? "" : " (" + reason + ")"));
+                return false;
+            }
+
+            long now = System.nanoTime();
+            Transition next = new Transition(previous.sequence + 1, previous.to, state, System.currentTimeMillis(), now, now - previous.enteredNanos, reason);
+            if (!this.current.compareAndSet(previous, next)) {
+                continue;
+            }
+
+            this.lastEnteredNanos.set(state.ordinal(), now);
+            AutomaterMetrics.get().lifecycleDwell(previous.to.name()).record(previous.enteredNanos, true);
+            synchronized (this.history) {
+                if (this.history.size() >= MAX_HISTORY) {
+                    this.history.removeFirst();
+                }
+                this.history.addLast(next);
+            }
+            this.scheduleTimeout(next);
+
+            String line = next.format();
+            this.automater.logMessage("Lifecycle: " + line);
+            this.automater.publishEvent(AutomaterEventType.LIFECYCLE, AutomaterEventOutcome.NONE, null, line);
+            return true;
+        }
+    }
+
+    /**
+     * Gets the recorded transitions, oldest first.
+     *
+     * @return Returns the transition history
+     */
+    List<Transition> getHistory() {
+        synchronized (this.history) {
+            return Collections.unmodifiableList(new ArrayList<>(this.history));
+        }
+    }
+
+    /**
+     * Formats the transition history and the current state.
+     *
+     * @return Returns one line per transition followed by the current state line
+     */
+    String formatHistory() {
+        StringBuilder builder = new StringBuilder();
+        for (Transition transition : this.getHistory()) {
+            builder.append(transition.format()).append('\n');
+        }
+        builder.append("current: ").append(this.getState()).append(" for ").append(this.getMillisInState()).append(" ms\n");
+        return builder.toString();
+    }
+
+    /**
+     * Schedules the timeout of the state entered by a transition, replacing the timeout of the previous state.
+     * The timeout is reported only if the state was not left meanwhile.
+     *
+     * @param transition The transition
+     */
+    private void scheduleTimeout(Transition transition) {
+        Long millis = this.timeoutMillis.get(transition.to);
+        ScheduledFuture<?> future = millis == null ? null : this.automater.getScheduler().schedule(() -> {
+            if (this.current.get() == transition) {
+                String detail = transition.to + " timeout after " + TimeUnit.MILLISECONDS.toSeconds(millis) + " s";
+                this.automater.logMessage("Lifecycle: " + detail);
+                this.automater.publishEvent(AutomaterEventType.LIFECYCLE, AutomaterEventOutcome.FAILURE, null, detail);
+            }
+        }, millis, TimeUnit.MILLISECONDS);
+
+        ScheduledFuture<?> previous = this.timeout.getAndSet(future);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,605 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Launches and tracks several IBGateway processes with the IBAutomater agent on one host.
+ *
+ * Each gateway gets its own Xvfb display, its own directory for the IBAutomater files
+ * (log, events, "restart"/"shutdown" control files, see {@link Settings#getWorkingDirectory()})
+ * and the API port of its settings file. Only the processes started by the supervisor are ever stopped,
+ * unlike IBAutomater.sh which kills every java and Xvfb process of the host.
+ *
+ * The logins are staggered: two gateway launches are always at least "loginStaggerSeconds" apart,
+ * including the relaunches, so that IB does not see many simultaneous logins from the host.
+ * A gateway is followed across the IBGateway restarts (the restarted JVM is not a child of the supervisor)
+ * with the process id the agent writes to "IBAutomater.pid", and relaunched if it exited.
+ * The gateway states are written to "IBAutomaterSupervisor.status" in the base directory.
+ *
+ * Usage: java -jar IBAutomater.jar supervisor.conf
+ *
+ * The configuration file contains "name=value" lines:
+ * - ibGatewayDirectory: the IBGateway installation, started with its "ibgateway" launcher (required)
+ * - baseDirectory: the directory containing one directory per gateway (default: the working directory)
+ * - gateway.NAME: the IBAutomater settings file of the gateway NAME, one line per gateway (at least one)
+ * - gateway.NAME.args: the arguments of the IBGateway launcher for the gateway NAME, e.g. its own IBGateway settings directory
+ * - javaOptions: JVM options added to every gateway, e.g. "-Xmx768m" (default none)
+ * - agentJar: the IBAutomater agent (default: the jar of the supervisor)
+ * - firstDisplay: the first Xvfb display number, displays in use are skipped (default 10)
+ * - screen: the Xvfb screen geometry (default "1024x768x24")
+ * - loginStaggerSeconds: the minimum time between two gateway launches (default 60)
+ * - relaunchDelaySeconds: the time before a gateway which exited is launched again, 0 to not relaunch (default 60)
+ * - restartGraceSeconds: the time allowed to an IBGateway restart to start the new process (default 120)
+ * - stopTimeoutSeconds: the time allowed to the gateways to shut down when the supervisor stops (default 60)
+ *
+ * @author QuantConnect Corporation
+ */
+public final class GatewaySupervisor {
+    private static final String GATEWAY_PREFIX = "gateway.";
+    private static final String ARGS_SUFFIX = ".args";
+    private static final long MONITOR_INTERVAL_SECONDS = 5;
+    private static final long DISPLAY_TIMEOUT_MILLIS = 10000;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private final Map<String, String> options;
+    private final Path ibGateway;
+    private final Path baseDirectory;
+    private final Path agentJar;
+    private final List<Gateway> gateways = new ArrayList<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "IBAutomater-supervisor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long nextLaunchTime = System.nanoTime();
+    private volatile boolean stopping;
+
+    /**
+     * The state of a supervised gateway.
+     */
+    enum GatewayState {
+        WAITING,
+        RUNNING,
+        EXITED,
+        STOPPED
+    }
+
+    /**
+     * Starts the supervisor and waits until it is stopped (SIGTERM or SIGINT).
+     *
+     * @param args The name of the supervisor configuration file
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: java -jar IBAutomater.jar <supervisor configuration file>");
+            System.exit(2);
+        }
+
+        GatewaySupervisor supervisor;
+        try {
+            supervisor = new GatewaySupervisor(GatewaySupervisor.readOptions(Paths.get(args[0])));
+        }
+        catch (IOException | IllegalArgumentException exception) {
+            System.err.println("Invalid supervisor configuration: " + exception.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(supervisor::stop, "IBAutomater-supervisor-stop"));
+        supervisor.start();
+        Thread.currentThread().join();
+    }
+
+    /**
+     * Creates a new instance of the {@link GatewaySupervisor} class and validates the gateway settings.
+     *
+     * @param options The supervisor configuration, by name
+     */
+    GatewaySupervisor(Map<String, String> options) throws IOException {
+        this.options = options;
+
+        String ibGatewayDirectory = options.get("ibGatewayDirectory");
+        if (ibGatewayDirectory == null || ibGatewayDirectory.isEmpty()) {
+            throw new IllegalArgumentException("ibGatewayDirectory is required");
+        }
+        this.ibGateway = Paths.get(ibGatewayDirectory, "ibgateway").toAbsolutePath();
+        this.baseDirectory = Paths.get(options.getOrDefault("baseDirectory", "")).toAbsolutePath();
+
+        String agentJar = options.get("agentJar");
+        try {
+            this.agentJar = agentJar != null
+                ? Paths.get(agentJar).toAbsolutePath()
+                : Paths.get(GatewaySupervisor.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        }
+        catch (Exception exception) {
+            throw new IllegalArgumentException("agentJar is required: " + exception.getMessage());
+        }
+
+        Set<Integer> ports = new HashSet<>();
+        int display = this.getIntOption("firstDisplay", 10);
+        for (Map.Entry<String, String> entry : options.entrySet()) {
+            String key = entry.getKey();
+            if (!key.startsWith(GATEWAY_PREFIX) || key.endsWith(ARGS_SUFFIX)) {
+                continue;
+            }
+
+            String name = key.substring(GATEWAY_PREFIX.length());
+            if (name.isEmpty() || !name.matches("[A-Za-z0-9_.-]+")) {
+                throw new IllegalArgumentException("Invalid gateway name: [" + name + "]");
+            }
+
+            Path settingsFile = Paths.get(entry.getValue()).toAbsolutePath();
+            Settings settings;
+            try {
+                settings = Settings.load(settingsFile);
+            }
+            catch (RuntimeException exception) {
+                throw new IllegalArgumentException("Gateway " + name + ": invalid settings file " + settingsFile);
+            }
+            if (!ports.add(settings.getPortNumber())) {
+                throw new IllegalArgumentException("Gateway " + name + ": API port " + settings.getPortNumber() + " is used by another gateway");
+            }
+            if (settings.getControlPort() > 0 && !ports.add(settings.getControlPort())) {
+                throw new IllegalArgumentException("Gateway " + name + ": control port " + settings.getControlPort() + " is used by another gateway");
+            }
+
+            display = GatewaySupervisor.findFreeDisplay(display);
+            String args = options.getOrDefault(key + ARGS_SUFFIX, "");
+            this.gateways.add(new Gateway(name, settingsFile, this.baseDirectory.resolve(name), display++,
+                args.isEmpty() ? new String[0] : args.split("\\s+")));
+        }
+
+        if (this.gateways.isEmpty()) {
+            throw new IllegalArgumentException("No gateway configured, add gateway.NAME=/path/to/settings lines");
+        }
+    }
+
+    /**
+     * Schedules the staggered launch of all gateways and starts monitoring them.
+     */
+    void start() {
+        GatewaySupervisor.log("Supervising " + this.gateways.size() + " gateways, IBGateway: " + this.ibGateway + ", agent: " + this.agentJar);
+        for (Gateway gateway : this.gateways) {
+            this.scheduleLaunch(gateway, 0);
+        }
+        this.scheduler.scheduleWithFixedDelay(this::monitor, MONITOR_INTERVAL_SECONDS, MONITOR_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Asks all gateways to shut down with their "shutdown" control file,
+     * then kills the ones still running after the stop timeout and their Xvfb servers.
+     */
+    void stop() {
+        if (this.stopping) {
+            return;
+        }
+        this.stopping = true;
+        this.scheduler.shutdownNow();
+        GatewaySupervisor.log("Stopping " + this.gateways.size() + " gateways");
+
+        for (Gateway gateway : this.gateways) {
+            if (gateway.isAlive()) {
+                try {
+                    Files.write(gateway.directory.resolve("shutdown"), new byte[0]);
+                }
+                catch (IOException exception) {
+                    GatewaySupervisor.log("Gateway " + gateway.name + ": " + exception.getMessage());
+                }
+            }
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(this.getIntOption("stopTimeoutSeconds", 60));
+        for (Gateway gateway : this.gateways) {
+            while (gateway.isAlive() && System.nanoTime() < deadline) {
+                try {
+                    Thread.sleep(500);
+                }
+                catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            gateway.kill();
+            gateway.state = GatewayState.STOPPED;
+            GatewaySupervisor.log("Gateway " + gateway.name + " stopped");
+        }
+    }
+
+    /**
+     * Gets the status of all gateways, written to "IBAutomaterSupervisor.status" in the base directory after every check.
+     *
+     * @return Returns one line per gateway
+     */
+    String getStatus() {
+        StringBuilder builder = new StringBuilder();
+        for (Gateway gateway : this.gateways) {
+            builder.append(gateway.name)
+                .append(" state=").append(gateway.state)
+                .append(" display=:").append(gateway.display)
+                .append(" pid=").append(gateway.processId)
+                .append(" launches=").append(gateway.launches)
+                .append(" directory=").append(gateway.directory)
+                .append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Schedules the launch of a gateway in the next free login slot.
+     *
+     * @param gateway The gateway
+     * @param minDelayMillis The minimum delay before the launch
+     */
+    private synchronized void scheduleLaunch(Gateway gateway, long minDelayMillis) {
+        long now = System.nanoTime();
+        long launchTime = Math.max(now + TimeUnit.MILLISECONDS.toNanos(minDelayMillis), this.nextLaunchTime);
+        this.nextLaunchTime = launchTime + TimeUnit.SECONDS.toNanos(this.getIntOption("loginStaggerSeconds", 60));
+
+        gateway.state = GatewayState.WAITING;
+        long delayMillis = TimeUnit.NANOSECONDS.toMillis(launchTime - now);
+        GatewaySupervisor.log("Gateway " + gateway.name + " launch in " + delayMillis + " ms");
+        this.scheduler.schedule(() -> this.launch(gateway), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Launches the Xvfb server (if not running) and the IBGateway process of a gateway.
+     *
+     * @param gateway The gateway
+     */
+    private void launch(Gateway gateway) {
+        if (this.stopping) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(gateway.directory);
+            Path settingsFile = this.writeAgentSettings(gateway);
+            // a stale control file would stop the new IBGateway process
+            Files.deleteIfExists(gateway.directory.resolve("IBAutomater.pid"));
+            Files.deleteIfExists(gateway.directory.resolve("shutdown"));
+            Files.deleteIfExists(gateway.directory.resolve("restart"));
+
+            if (gateway.xvfb == null || !gateway.xvfb.isAlive()) {
+                gateway.xvfb = new ProcessBuilder("Xvfb", ":" + gateway.display, "-screen", "0", this.options.getOrDefault("screen", "1024x768x24"), "-nolisten", "tcp")
+                    .directory(gateway.directory.toFile())
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.appendTo(gateway.directory.resolve("Xvfb.out").toFile()))
+                    .start();
+                GatewaySupervisor.waitForDisplay(gateway.display);
+            }
+
+            List<String> command = new ArrayList<>();
+            command.add(this.ibGateway.toString());
+            command.addAll(Arrays.asList(gateway.args));
+
+            ProcessBuilder builder = new ProcessBuilder(command)
+                .directory(gateway.directory.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(gateway.directory.resolve("ibgateway.out").toFile()));
+            String javaOptions = this.options.getOrDefault("javaOptions", "");
+            builder.environment().put("DISPLAY", ":" + gateway.display);
+            builder.environment().put("JAVA_TOOL_OPTIONS", ("-javaagent:" + this.agentJar + "=" + settingsFile + " " + javaOptions).trim());
+
+            gateway.process = builder.start();
+            gateway.processId = "";
+            gateway.exitTime = 0;
+            gateway.launches++;
+            gateway.state = GatewayState.RUNNING;
+            GatewaySupervisor.log("Gateway " + gateway.name + " launched on display :" + gateway.display + " (launch " + gateway.launches + ")");
+        }
+        catch (IOException exception) {
+            GatewaySupervisor.log("Gateway " + gateway.name + " launch failed: " + exception.getMessage());
+            this.relaunch(gateway);
+        }
+    }
+
+    /**
+     * Writes the agent settings of a gateway: its settings file with its directory as the IBAutomater directory.
+     *
+     * @param gateway The gateway
+     *
+     * @return Returns the agent settings file
+     */
+    private Path writeAgentSettings(Gateway gateway) throws IOException {
+        Path file = gateway.directory.resolve("IBAutomater.settings");
+        String content = new String(Files.readAllBytes(gateway.settingsFile), StandardCharsets.UTF_8);
+        if (!content.endsWith("\n")) {
+            content += "\n";
+        }
+        content += "workingDirectory=" + gateway.directory + "\n";
+
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        try {
+            // the settings contain the IB credentials
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+        }
+        catch (UnsupportedOperationException exception) {
+            // not a POSIX file system
+        }
+        return file;
+    }
+
+    /**
+     * Checks the gateways: follows the IBGateway restarts and relaunches the gateways which exited.
+     */
+    private void monitor() {
+        for (Gateway gateway : this.gateways) {
+            if (this.stopping || gateway.state != GatewayState.RUNNING) {
+                continue;
+            }
+
+            String processId = gateway.readProcessId();
+            if (gateway.isOwnProcess(processId) && !processId.equals(gateway.processId)) {
+                GatewaySupervisor.log("Gateway " + gateway.name + " process id: " + processId + (gateway.processId.isEmpty() ? "" : " (restarted)"));
+                gateway.processId = processId;
+            }
+
+            if (gateway.isAlive()) {
+                gateway.exitTime = 0;
+                continue;
+            }
+
+            // the restarted IBGateway process starts a few seconds after the previous one exits
+            long now = System.nanoTime();
+            if (gateway.exitTime == 0) {
+                gateway.exitTime = now;
+            }
+            if (now - gateway.exitTime < TimeUnit.SECONDS.toNanos(this.getIntOption("restartGraceSeconds", 120))) {
+                continue;
+            }
+
+            gateway.state = GatewayState.EXITED;
+            GatewaySupervisor.log("Gateway " + gateway.name + " exited");
+            this.relaunch(gateway);
+        }
+
+        try {
+            Files.write(this.baseDirectory.resolve("IBAutomaterSupervisor.status"), this.getStatus().getBytes(StandardCharsets.UTF_8));
+        }
+        catch (IOException exception) {
+            GatewaySupervisor.log("Status file: " + exception.getMessage());
+        }
+    }
+
+    /**
+     * Schedules the relaunch of a gateway which exited, if enabled.
+     *
+     * @param gateway The gateway
+     */
+    private void relaunch(Gateway gateway) {
+        int delaySeconds = this.getIntOption("relaunchDelaySeconds", 60);
+        if (this.stopping || delaySeconds <= 0) {
+            gateway.state = GatewayState.EXITED;
+            return;
+        }
+        this.scheduleLaunch(gateway, TimeUnit.SECONDS.toMillis(delaySeconds));
+    }
+
+    /**
+     * Gets the value of an optional integer setting.
+     *
+     * @param name The option name
+     * @param defaultValue The value returned if the option is missing or invalid
+     *
+     * @return Returns the option value
+     */
+    private int getIntOption(String name, int defaultValue) {
+        String value = this.options.get(name);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            }
+            catch (NumberFormatException exception) {
+                // invalid value, use the default
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Reads the supervisor configuration: "name=value" lines, empty lines and lines starting with '#' are ignored.
+     *
+     * @param file The configuration file
+     *
+     * @return Returns the configuration values by name, in file order
+     */
+    static Map<String, String> readOptions(Path file) throws IOException {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            int separator = line.indexOf('=');
+            if (line.isEmpty() || line.startsWith("#") || separator <= 0) {
+                continue;
+            }
+            options.put(line.substring(0, separator).trim(), line.substring(separator + 1).trim());
+        }
+        return options;
+    }
+
+    /**
+     * Finds the first X display number without a running X server.
+     *
+     * @param display The first display number to check
+     *
+     * @return Returns the free display number
+     */
+    private static int findFreeDisplay(int display) {
+        while (new File("/tmp/.X" + display + "-lock").exists()) {
+            display++;
+        }
+        return display;
+    }
+
+    /**
+     * Waits until the Xvfb server of a display accepts connections.
+     *
+     * @param display The display number
+     */
+    private static void waitForDisplay(int display) throws IOException {
+        File socket = new File("/tmp/.X11-unix/X" + display);
+        long deadline = System.currentTimeMillis() + DISPLAY_TIMEOUT_MILLIS;
+        while (!socket.exists()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException("Xvfb display :" + display + " not ready after " + DISPLAY_TIMEOUT_MILLIS + " ms");
+            }
+            try {
+                Thread.sleep(100);
+            }
+            catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for display :" + display);
+            }
+        }
+    }
+
+    /**
+     * Writes a supervisor message to the standard output.
+     *
+     * @param text The message
+     */
+    private static void log(String text) {
+        System.out.println(TIME_FORMAT.format(Instant.now()) + " " + text);
+    }
+
+    /**
+     * A supervised gateway.
+     */
+    private static final class Gateway {
+        private final String name;
+        private final Path settingsFile;
+        private final Path directory;
+        private final int display;
+        private final String[] args;
+        private volatile GatewayState state = GatewayState.WAITING;
+        private volatile Process process;
+        private volatile Process xvfb;
+        private volatile String processId = "";
+        private long exitTime;
+        private int launches;
+
+        Gateway(String name, Path settingsFile, Path directory, int display, String[] args) {
+            this.name = name;
+            this.settingsFile = settingsFile;
+            this.directory = directory;
+            this.display = display;
+            this.args = args;
+        }
+
+        /**
+         * Reads the process id written by the agent of the current IBGateway process.
+         *
+         * @return Returns the process id, empty if not written yet
+         */
+        String readProcessId() {
+            try {
+                return new String(Files.readAllBytes(this.directory.resolve("IBAutomater.pid")), StandardCharsets.UTF_8).trim();
+            }
+            catch (IOException exception) {
+                return "";
+            }
+        }
+
+        /**
+         * Checks whether the launched process or the restarted IBGateway process is running.
+         *
+         * @return Returns true if an IBGateway process of the gateway is running
+         */
+        boolean isAlive() {
+            Process process = this.process;
+            if (process != null && process.isAlive()) {
+                return true;
+            }
+            return this.isOwnProcess(this.processId);
+        }
+
+        /**
+         * Checks whether a process is an IBGateway process of the gateway, so that a reused process id
+         * is neither taken for the gateway nor killed: its command line or environment (JAVA_TOOL_OPTIONS,
+         * inherited by the restarted IBGateway process) must contain the agent settings file of the gateway.
+         *
+         * @param processId The process id
+         *
+         * @return Returns true if the process is running and belongs to the gateway
+         */
+        boolean isOwnProcess(String processId) {
+            if (processId.isEmpty()) {
+                return false;
+            }
+            String settingsFile = this.directory.resolve("IBAutomater.settings").toString();
+            Path process = Paths.get("/proc", processId);
+            for (String name : new String[] { "cmdline", "environ" }) {
+                try {
+                    // the entries are separated by NUL characters, ISO-8859-1 maps every byte to one character
+                    String content = new String(Files.readAllBytes(process.resolve(name)), StandardCharsets.ISO_8859_1);
+                    if (content.contains(settingsFile)) {
+                        return true;
+                    }
+                }
+                catch (IOException exception) {
+                    // not running or not readable
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Kills the IBGateway processes and the Xvfb server of the gateway.
+         */
+        void kill() {
+            Process process = this.process;
+            if (process != null) {
+                process.destroyForcibly();
+            }
+            String processId = this.processId;
+            if (this.isOwnProcess(processId)) {
+                try {
+                    new ProcessBuilder("kill", "-9", processId).start().waitFor(5, TimeUnit.SECONDS);
+                }
+                catch (IOException exception) {
+                    GatewaySupervisor.log("Gateway " + this.name + ": " + exception.getMessage());
+                }
+                catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            Process xvfb = this.xvfb;
+            if (xvfb != null) {
+                xvfb.destroy();
+            }
+        }
+    }
+}
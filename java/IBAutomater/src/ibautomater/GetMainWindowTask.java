@@ -17,6 +17,7 @@ package ibautomater;
 
 import java.awt.Window;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import javax.swing.JMenuItem;
 
 /**
@@ -26,14 +27,31 @@ import javax.swing.JMenuItem;
  */
 public class GetMainWindowTask implements Callable<Window> {
     private final IBAutomater automater;
+    private final MainWindowLocator locator;
+    private final Runnable configurationSkipped;
 
     /**
      * Creates a new instance of the {@link GetMainWindowTask} class.
      *
      * @param automater The {@link IBAutomater} instance
+     * @param locator The {@link MainWindowLocator} instance
      */
-    GetMainWindowTask(IBAutomater automater) {
+    GetMainWindowTask(IBAutomater automater, MainWindowLocator locator) {
+        this(automater, locator, null);
+    }
+
+    /**
+     * Creates a new instance of the {@link GetMainWindowTask} class.
+     *
+     * @param automater The {@link IBAutomater} instance
+     * @param locator The {@link MainWindowLocator} instance
+     * @param configurationSkipped If not null, the configuration window is not opened and this action is run instead
+     * (the configuration is already applied)
+     */
+    GetMainWindowTask(IBAutomater automater, MainWindowLocator locator, Runnable configurationSkipped) {
         this.automater = automater;
+        this.locator = locator;
+        this.configurationSkipped = configurationSkipped;
     }
 
     /**
@@ -42,28 +60,30 @@ public class GetMainWindowTask implements Callable<Window> {
      * @return Returns the IBGateway main window
      */
     @Override
-    @SuppressWarnings("SleepWhileInLoop")
     public Window call() throws Exception {
-        while (true) {
-            this.automater.logMessage("Finding main window...");
-
-            for(Window w : Window.getWindows()) {
-                JMenuItem menuItem = Common.getMenuItem(w, "Configure", "Settings");
-                if (menuItem != null) {
-                    this.automater.logMessage("Found main window (Window title: [" + Common.getTitle(w) + "] - Window name: [" + w.getName() + "])");
+        this.automater.logMessage("Finding main window...");
 
-                    // when the main window is found and is ready,
-                    // save it for future use and open the configuration window
-                    this.automater.setMainWindow(w);
-                    menuItem.doClick();
+        CompletableFuture<Window> future = this.locator.find("Configure", "Settings");
+        try {
+            Window w = future.get();
+            JMenuItem menuItem = Common.getMenuItem(w, "Configure", "Settings");
+            this.automater.logMessage("Found main window (Window title: [" + Common.getTitle(w) + "] - Window name: [" + w.getName() + "])");
 
-                    return w;
-                }
+            // when the main window is found and is ready,
+            // save it for future use and open the configuration window
+            this.automater.setMainWindow(w);
+            if (this.configurationSkipped != null) {
+                this.configurationSkipped.run();
+            }
+            else {
+                menuItem.doClick();
             }
 
-            this.automater.logMessage("Main window not found.");
-
-            Thread.sleep(1000);
+            return w;
+        }
+        finally {
+            // stops the lookup if the task was cancelled
+            future.cancel(false);
         }
     }
 }
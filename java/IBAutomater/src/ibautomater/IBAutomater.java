@@ -17,13 +17,27 @@ package ibautomater;
 
 import java.awt.Toolkit;
 import java.awt.Window;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
 
 /**
  * IBAutomater is the component responsible for the interaction with the IBGateway user interface.
@@ -31,27 +45,42 @@ import java.nio.file.Paths;
  * @author QuantConnect Corporation
  */
 public final class IBAutomater {
+    // the background tasks (main window lookup, shutdown, close) wait for the UI most of the time,
+    // they run on a small fixed pool, the timeouts and delays run on the single scheduler thread,
+    // so that a timeout can always cancel a blocked task
+    private static final int WORKER_THREADS = 2;
+
     private final Settings settings;
-    private PrintWriter printWriter = null;
-    private Window mainWindow;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService workers;
+    private final ExecutorService analyzer;
+    private final GatewayLifecycle lifecycle;
+    private AsyncLogWriter logWriter = null;
+    private AsyncLogWriter eventWriter = null;
+    private ControlServer controlServer = null;
+    private ResourceSampler resourceSampler = null;
+    private RestartJournal restartJournal = null;
+    private WindowTraceRecorder windowTraceRecorder = null;
+    private final List<AutomaterEventListener> eventListeners = new CopyOnWriteArrayList<>();
+    private final long startTime = System.nanoTime();
+    private volatile Window mainWindow;
 
     /**
      * The Java agent premain method is called before the IBGateway main method.
      *
      * @param args The name of a text file containing the values of the IBAutomater settings
+     * (one value per line, optionally followed by "name=value" lines for the optional settings)
      */
     public static void premain(String args) throws Exception {
 
-        String fileContent = new String(Files.readAllBytes(Paths.get(args)), StandardCharsets.UTF_8);
-        String[] argValues = fileContent.split("\n");
-
-        String userName = argValues[0];
-        String password = argValues[1];
-        String tradingMode = argValues[2];
-        int portNumber = Integer.parseInt(argValues[3]);
-        boolean exportIbGatewayLogs = Boolean.parseBoolean(argValues[4]);
+        IBAutomater automater = new IBAutomater(Settings.load(Paths.get(args)));
 
-        IBAutomater automater = new IBAutomater(userName, password, tradingMode, portNumber, exportIbGatewayLogs);
+        try {
+            AutomaterMetrics.register();
+        }
+        catch (JMException exception) {
+            automater.logError(exception);
+        }
     }
 
     /**
@@ -65,35 +94,154 @@ public final class IBAutomater {
      * (currently at startup and when unknown windows are detected)
      */
     public IBAutomater(String userName, String password, String tradingMode, int portNumber, boolean exportIbGatewayLogs) {
-        this.settings = new Settings(userName, password, tradingMode, portNumber, exportIbGatewayLogs);
+        this(new Settings(userName, password, tradingMode, portNumber, exportIbGatewayLogs));
+    }
+
+    /**
+     * Creates a new instance of the {@link IBAutomater} class.
+     *
+     * @param settings The IBAutomater settings
+     */
+    public IBAutomater(Settings settings) {
+        this.settings = settings;
+        this.scheduler = IBAutomater.createScheduler();
+        this.workers = new ThreadPoolExecutor(WORKER_THREADS, WORKER_THREADS, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), IBAutomater.createThreadFactory("IBAutomater-worker-"));
+        this.analyzer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), IBAutomater.createThreadFactory("IBAutomater-analysis-"));
 
         try
         {
-            this.printWriter = new PrintWriter(new FileWriter("IBAutomater.log"), true);
+            this.logWriter = new AsyncLogWriter(settings.resolvePath("IBAutomater.log"), settings.getLogBufferCapacity(), settings.getLogOverflowPolicy());
+
+            // the log writer thread is a daemon thread, write the pending messages before the JVM exits
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> this.logWriter.close(5, TimeUnit.SECONDS), "IBAutomater-log-flush"));
         }
         catch (IOException exception)
         {
             System.out.println(exception.getMessage());
         }
 
+        if (!settings.getEventFile().isEmpty()) {
+            try {
+                // the event file is appended to, so that the events of a restarted IBGateway process follow the previous ones
+                AsyncLogWriter writer = new AsyncLogWriter(settings.resolvePath(settings.getEventFile()), settings.getLogBufferCapacity(), LogOverflowPolicy.BLOCK, true, "IBAutomater-event-writer");
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> writer.close(5, TimeUnit.SECONDS), "IBAutomater-event-flush"));
+                this.eventWriter = writer;
+                this.addEventListener(event -> writer.writeLine(event.format()));
+            }
+            catch (IOException exception) {
+                this.logError(exception);
+            }
+        }
+
+        this.addEventListener(AutomaterMetrics.get());
+
+        this.lifecycle = new GatewayLifecycle(this, GatewayLifecycle.parseTimeouts(settings.getLifecycleTimeouts()));
+        this.addEventListener(this.lifecycle);
+        this.lifecycle.start();
+
+        if (!settings.getRestartJournalFile().isEmpty()) {
+            try {
+                this.restartJournal = new RestartJournal(settings.resolvePath(settings.getRestartJournalFile()));
+                this.addEventListener(this.restartJournal);
+            }
+            catch (IOException exception) {
+                this.logError(exception);
+            }
+        }
+
+        if (settings.getApiReadyTimeoutSeconds() > 0 && settings.getPortNumber() > 0) {
+            this.addEventListener(new ApiPortProbe(this, settings.getPortNumber(), Math.max(10, settings.getApiProbeIntervalMillis()),
+                TimeUnit.SECONDS.toMillis(settings.getApiReadyTimeoutSeconds())));
+        }
+
+        if (settings.getControlPort() >= 0) {
+            this.controlServer = new ControlServer(this, settings.getControlPort(), settings.resolvePath("IBAutomater.port"), settings.resolvePath("IBAutomater.token"));
+            this.controlServer.register("status", this::getStatus);
+            this.controlServer.register("dump-window-tree", () -> Common.invokeAndWait(IBAutomater::getWindowTree, 5, TimeUnit.SECONDS));
+            this.controlServer.register("restart-report", () -> {
+                if (this.restartJournal == null) {
+                    throw new IllegalStateException("The restart journal is disabled");
+                }
+                return this.restartJournal.report();
+            });
+            this.controlServer.register("lifecycle", this.lifecycle::formatHistory);
+            this.addEventListener(this.controlServer);
+        }
+
+        this.publishEvent(AutomaterEventType.SESSION_STARTED, AutomaterEventOutcome.NONE, null, Long.toString(System.currentTimeMillis()));
+
+        if (!settings.getWindowTraceFile().isEmpty()) {
+            try {
+                this.windowTraceRecorder = new WindowTraceRecorder(this, settings.resolvePath(settings.getWindowTraceFile()),
+                    Math.max(1, settings.getWindowTraceMaxMegabytes()) * 1024L * 1024L);
+            }
+            catch (IOException exception) {
+                this.logError(exception);
+            }
+        }
+
         Toolkit.getDefaultToolkit().addAWTEventListener(new WindowEventListener(this), 64L);
 
+        if (settings.getEdtWatchdogIntervalMillis() > 0) {
+            new EdtWatchdog(this, settings.getEdtWatchdogIntervalMillis(), settings.getEdtStallThresholdMillis(),
+                TimeUnit.MINUTES.toMillis(Math.max(1, settings.getEdtLagSummaryMinutes()))).start();
+        }
+
+        if (settings.getResourceSampleSeconds() > 0) {
+            this.resourceSampler = new ResourceSampler(this, TimeUnit.SECONDS.toMillis(settings.getResourceSampleSeconds()),
+                settings.getResourceSampleCapacity(), TimeUnit.MINUTES.toMillis(Math.max(1, settings.getResourceLogMinutes())));
+            this.resourceSampler.start();
+            this.registerControlCommand("resources", this.resourceSampler::formatSamples);
+        }
+
+        try {
+            // the supervisor follows the IBGateway process across the IBGateway restarts with this file
+            String processName = ManagementFactory.getRuntimeMXBean().getName();
+            String processId = processName.contains("@") ? processName.substring(0, processName.indexOf('@')) : processName;
+            Files.write(settings.resolvePath("IBAutomater.pid"), processId.getBytes(StandardCharsets.UTF_8));
+        }
+        catch (IOException exception) {
+            this.logError(exception);
+        }
+
         this.logMessage("IBGateway started");
+
+        if (this.controlServer != null) {
+            try {
+                this.controlServer.start();
+            }
+            catch (IOException exception) {
+                this.logError(exception);
+            }
+        }
     }
 
     /**
      * Writes the text message to the log file.
+     * The message is queued and written by a background thread, see {@link #flushLog()}.
      *
      * @param text The text message to be logged
      */
     public void logMessage(String text) {
-        try
-        {
-            this.printWriter.println(text);
+        if (this.logWriter == null) {
+            System.out.println(text);
+            return;
         }
-        catch (Exception exception)
-        {
-            System.out.println(exception.getMessage());
+
+        this.logWriter.writeLine(text);
+    }
+
+    /**
+     * Waits until all messages and events logged so far have been written to their files (5 seconds maximum each).
+     */
+    public void flushLog() {
+        if (this.logWriter != null && !this.logWriter.flush(5, TimeUnit.SECONDS)) {
+            System.out.println("Timeout flushing IBAutomater.log");
+        }
+        if (this.eventWriter != null && !this.eventWriter.flush(5, TimeUnit.SECONDS)) {
+            System.out.println("Timeout flushing " + this.settings.getEventFile());
         }
     }
 
@@ -103,11 +251,23 @@ public final class IBAutomater {
      * @param exception The exception to be logged
      */
     public void logError(Exception exception) {
+        this.logMessage("Error: " + IBAutomater.getStackTrace(exception));
+        this.publishEvent(AutomaterEventType.ERROR, AutomaterEventOutcome.FAILURE, null, exception.toString());
+    }
+
+    /**
+     * Gets the stack trace of the exception.
+     *
+     * @param exception The exception
+     *
+     * @return Returns the stack trace text
+     */
+    private static String getStackTrace(Exception exception) {
         StringWriter sw = new StringWriter();
         PrintWriter pw = new PrintWriter(sw);
         exception.printStackTrace(pw);
 
-        this.logMessage("Error: " + sw.toString());
+        return sw.toString();
     }
 
     /**
@@ -126,6 +286,9 @@ public final class IBAutomater {
      */
     public void setMainWindow(Window window) {
         this.mainWindow = window;
+        if (this.restartJournal != null) {
+            this.restartJournal.record(RestartJournal.Phase.MAIN_WINDOW_FOUND, Common.getTitle(window));
+        }
     }
 
     /**
@@ -136,4 +299,193 @@ public final class IBAutomater {
     public Settings getSettings() {
         return this.settings;
     }
+
+    /**
+     * Adds a listener for the events published by IBAutomater.
+     *
+     * @param listener The event listener
+     */
+    public void addEventListener(AutomaterEventListener listener) {
+        this.eventListeners.add(listener);
+    }
+
+    /**
+     * Publishes an event to all event listeners.
+     *
+     * @param type The event type
+     * @param outcome The event outcome
+     * @param windowTitle The title of the window related to the event, null if none
+     * @param detail The event detail, null if none
+     */
+    public void publishEvent(AutomaterEventType type, AutomaterEventOutcome outcome, String windowTitle, String detail) {
+        AutomaterEvent event = new AutomaterEvent(type, outcome, windowTitle, detail);
+        for (AutomaterEventListener listener : this.eventListeners) {
+            try {
+                listener.onEvent(event);
+            }
+            catch (Exception exception) {
+                // not logError, a failing listener would be invoked again with the error event
+                this.logMessage("Error: " + IBAutomater.getStackTrace(exception));
+            }
+        }
+    }
+
+    /**
+     * Gets the scheduler running the IBAutomater delayed actions, which must not block.
+     *
+     * @return Returns the shared scheduler
+     */
+    ScheduledExecutorService getScheduler() {
+        return this.scheduler;
+    }
+
+    /**
+     * Gets the single thread executor analyzing the window events off the event dispatch thread.
+     * Tasks run one at a time in submission order, so the window events are analyzed in the order they occurred.
+     *
+     * @return Returns the window analysis executor
+     */
+    ExecutorService getAnalyzer() {
+        return this.analyzer;
+    }
+
+    /**
+     * Gets the lifecycle of the automated IBGateway.
+     *
+     * @return Returns the gateway lifecycle
+     */
+    GatewayLifecycle getLifecycle() {
+        return this.lifecycle;
+    }
+
+    /**
+     * Gets the recorder of the window event trace.
+     *
+     * @return Returns the window trace recorder, null if the recording is disabled
+     */
+    WindowTraceRecorder getWindowTraceRecorder() {
+        return this.windowTraceRecorder;
+    }
+
+    /**
+     * Runs a background task, the task is cancelled (interrupted) if it is not completed within the timeout.
+     * Task errors and timeouts are logged.
+     *
+     * @param name The task name, used in the log messages
+     * @param task The task
+     * @param timeout The maximum execution time
+     * @param unit The time unit of the timeout
+     *
+     * @return Returns the future of the task result
+     */
+    <T> Future<T> submit(String name, Callable<T> task, long timeout, TimeUnit unit) {
+        Future<T> future = this.workers.submit(() -> {
+            try {
+                return task.call();
+            }
+            catch (InterruptedException exception) {
+                // cancelled by the timeout, already logged
+                throw exception;
+            }
+            catch (Exception exception) {
+                this.logError(exception);
+                throw exception;
+            }
+        });
+
+        // a timeout firing after the completion of the task has no effect,
+        // a task still queued when its timeout fires is cancelled without running
+        this.scheduler.schedule(() -> {
+            if (future.cancel(true)) {
+                this.logError(new TimeoutException("Timeout in execution of " + name));
+            }
+        }, timeout, unit);
+
+        return future;
+    }
+
+    /**
+     * Creates the single thread scheduler running the timeouts and the delayed actions.
+     *
+     * @return Returns the new scheduler
+     */
+    private static ScheduledExecutorService createScheduler() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, IBAutomater.createThreadFactory("IBAutomater-scheduler-"));
+        // do not keep the cancelled delayed actions in the queue until their delay elapses
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Creates a factory of numbered daemon threads.
+     *
+     * @param namePrefix The thread name prefix
+     *
+     * @return Returns the new thread factory
+     */
+    private static ThreadFactory createThreadFactory(String namePrefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Registers a command of the control endpoint, has no effect if the control endpoint is disabled.
+     *
+     * @param name The command name
+     * @param command The command
+     */
+    void registerControlCommand(String name, ControlCommand command) {
+        if (this.controlServer != null) {
+            this.controlServer.register(name, command);
+        }
+    }
+
+    /**
+     * Gets the IBAutomater status, one "name=value" pair per line.
+     *
+     * @return Returns the status text
+     */
+    String getStatus() {
+        Window window = this.mainWindow;
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("uptimeMillis=").append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.startTime)).append('\n');
+        builder.append("tradingMode=").append(this.settings.getTradingMode()).append('\n');
+        builder.append("apiPort=").append(this.settings.getPortNumber()).append('\n');
+        builder.append("mainWindow=").append(window == null ? "" : Common.getTitle(window)).append('\n');
+        builder.append("state=").append(this.lifecycle.getState()).append('\n');
+        builder.append("stateMillis=").append(this.lifecycle.getMillisInState()).append('\n');
+
+        ResourceSample sample = this.resourceSampler == null ? null : this.resourceSampler.getLatest();
+        if (sample != null) {
+            builder.append("heapUsed=").append(sample.heapUsedBytes).append('\n');
+            builder.append("heapMax=").append(sample.heapMaxBytes).append('\n');
+            builder.append("gcCount=").append(sample.gcCount).append('\n');
+            builder.append("gcTimeMillis=").append(sample.gcTimeMillis).append('\n');
+            builder.append("threads=").append(sample.threadCount).append('\n');
+            builder.append("cpuTimeMillis=").append(sample.processCpuTimeNanos < 0 ? -1 : sample.processCpuTimeNanos / 1000000).append('\n');
+            builder.append("openFds=").append(sample.openFileDescriptors).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Gets the component trees of all windows, must be called on the AWT event dispatching thread.
+     *
+     * @return Returns the description of all windows
+     */
+    private static String getWindowTree() {
+        StringBuilder builder = new StringBuilder();
+        for (Window window : Window.getWindows()) {
+            builder.append("Window title: [").append(Common.getTitle(window))
+                .append("] - Window name: [").append(window.getName())
+                .append("] - Visible: [").append(window.isVisible()).append("]\n");
+            Common.appendComponentTree(window, 0, builder);
+        }
+        return builder.toString();
+    }
 }
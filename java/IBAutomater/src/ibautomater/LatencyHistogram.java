@@ -0,0 +1,164 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed memory histogram of latencies in nanoseconds, safe for concurrent recording.
+ *
+ * Values are counted in log-linear buckets (as in HdrHistogram): values below 32 ns have their own bucket,
+ * every larger power of two range is split into 16 buckets, so a recorded value is known within 1/16 (6.25%).
+ * Values above ~68 seconds are counted in the last bucket. The histogram uses 528 counters whatever the number
+ * of recorded values.
+ *
+ * @author QuantConnect Corporation
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+    private static final int MAX_VALUE_BITS = 36;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_VALUE_BITS - SUB_BUCKET_BITS) * SUB_BUCKET_HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos The latency in nanoseconds
+     */
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        this.counts.incrementAndGet(LatencyHistogram.indexOf(Math.min(value, MAX_VALUE)));
+        this.totalCount.increment();
+        this.totalNanos.add(value);
+
+        long max = this.maxNanos.get();
+        while (value > max && !this.maxNanos.compareAndSet(max, value)) {
+            max = this.maxNanos.get();
+        }
+    }
+
+    /**
+     * Gets the number of recorded latencies.
+     *
+     * @return Returns the number of recorded latencies
+     */
+    long getCount() {
+        return this.totalCount.sum();
+    }
+
+    /**
+     * Gets the mean of the recorded latencies.
+     *
+     * @return Returns the mean latency in nanoseconds, 0 if none was recorded
+     */
+    long getMeanNanos() {
+        long count = this.totalCount.sum();
+        return count == 0 ? 0 : this.totalNanos.sum() / count;
+    }
+
+    /**
+     * Gets the maximum recorded latency.
+     *
+     * @return Returns the maximum latency in nanoseconds
+     */
+    long getMaxNanos() {
+        return this.maxNanos.get();
+    }
+
+    /**
+     * Gets the latency below which the given percentage of the recorded latencies fall.
+     *
+     * @param percentile The percentile, between 0 and 100
+     *
+     * @return Returns the latency in nanoseconds (the middle of the matching bucket), 0 if none was recorded
+     */
+    long getPercentileNanos(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = this.counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                long low = LatencyHistogram.lowestValueAt(i);
+                long high = i + 1 < BUCKET_COUNT ? LatencyHistogram.lowestValueAt(i + 1) - 1 : MAX_VALUE;
+                return Math.min(low + (high - low) / 2, this.maxNanos.get());
+            }
+        }
+        return this.maxNanos.get();
+    }
+
+    /**
+     * Clears the recorded latencies.
+     */
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            this.counts.set(i, 0);
+        }
+        this.totalCount.reset();
+        this.totalNanos.reset();
+        this.maxNanos.set(0);
+    }
+
+    /**
+     * Gets the bucket of a value.
+     *
+     * @param value The value, between 0 and {@link #MAX_VALUE}
+     *
+     * @return Returns the bucket index
+     */
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        // the shift brings the value in [SUB_BUCKET_HALF, SUB_BUCKET_COUNT)
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (int) (value >>> shift) - SUB_BUCKET_HALF;
+    }
+
+    /**
+     * Gets the lowest value counted in a bucket.
+     *
+     * @param index The bucket index
+     *
+     * @return Returns the lowest value of the bucket
+     */
+    static long lowestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+        long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return subBucket << shift;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The latency histogram and hit count of an operation (a window handler, a window event, a component lookup).
+ *
+ * @author QuantConnect Corporation
+ */
+final class LatencyMetric {
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Records an execution of the operation.
+     *
+     * @param startNanos The {@link System#nanoTime()} value taken when the operation started
+     * @param hit True if the operation matched (e.g. the handler handled the window, the component was found)
+     */
+    void record(long startNanos, boolean hit) {
+        this.recordElapsed(System.nanoTime() - startNanos, hit);
+    }
+
+    /**
+     * Records an execution of the operation from its duration.
+     *
+     * @param elapsedNanos The duration of the execution in nanoseconds
+     * @param hit True if the operation matched
+     */
+    void recordElapsed(long elapsedNanos, boolean hit) {
+        this.histogram.record(elapsedNanos);
+        if (hit) {
+            this.hits.increment();
+        }
+    }
+
+    /**
+     * Gets a snapshot of the metric.
+     *
+     * @return Returns the current values of the metric
+     */
+    MetricSnapshot snapshot() {
+        return new MetricSnapshot(
+            this.histogram.getCount(),
+            this.hits.sum(),
+            this.histogram.getMeanNanos() / 1000,
+            this.histogram.getPercentileNanos(50) / 1000,
+            this.histogram.getPercentileNanos(90) / 1000,
+            this.histogram.getPercentileNanos(99) / 1000,
+            this.histogram.getMaxNanos() / 1000);
+    }
+
+    /**
+     * Clears the metric.
+     */
+    void reset() {
+        this.histogram.reset();
+        this.hits.reset();
+    }
+}
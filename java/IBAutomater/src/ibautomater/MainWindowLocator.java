@@ -0,0 +1,230 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.awt.Container;
+import java.awt.Window;
+import java.awt.event.ContainerAdapter;
+import java.awt.event.ContainerEvent;
+import java.awt.event.ContainerListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.swing.JFrame;
+import javax.swing.JMenu;
+import javax.swing.JMenuBar;
+import javax.swing.SwingUtilities;
+
+/**
+ * Finds the IBGateway main window, identified by a menu item (e.g. "Configure > Settings").
+ *
+ * The windows are checked when a lookup starts and when the {@link WindowEventListener} receives
+ * a WINDOW_OPENED or WINDOW_ACTIVATED event. A main window opened before its menus are populated
+ * is observed with container listeners on its layered pane, menu bar and menus, so the lookup completes
+ * as soon as the menu item is added. A slow poll remains as a safety net.
+ *
+ * All the state is accessed on the AWT event dispatching thread only.
+ *
+ * @author QuantConnect Corporation
+ */
+final class MainWindowLocator {
+    private static final long SAFETY_POLL_MILLIS = 1000;
+
+    private final IBAutomater automater;
+    private final List<Lookup> lookups = new ArrayList<>();
+    private final Set<Container> observedContainers = Collections.newSetFromMap(new WeakHashMap<>());
+    private final ContainerListener menuListener = new ContainerAdapter() {
+        @Override
+        public void componentAdded(ContainerEvent event) {
+            // menu popups are not part of the window hierarchy, check all windows
+            MainWindowLocator.this.checkAllWindows();
+        }
+    };
+    private ScheduledFuture<?> safetyPoll;
+
+    /**
+     * Creates a new instance of the {@link MainWindowLocator} class.
+     *
+     * @param automater The {@link IBAutomater} instance
+     */
+    MainWindowLocator(IBAutomater automater) {
+        this.automater = automater;
+    }
+
+    /**
+     * Starts the lookup of the window having the specified menu item.
+     * Cancelling the returned future stops the lookup.
+     *
+     * @param menuText The menu text
+     * @param menuItemText The menu item text
+     *
+     * @return Returns the future completed with the window containing the menu item
+     */
+    CompletableFuture<Window> find(String menuText, String menuItemText) {
+        CompletableFuture<Window> future = new CompletableFuture<>();
+        SwingUtilities.invokeLater(() -> {
+            this.lookups.add(new Lookup(menuText, menuItemText, future));
+            this.checkAllWindows();
+            if (!this.lookups.isEmpty() && this.safetyPoll == null) {
+                this.safetyPoll = this.automater.getScheduler().scheduleWithFixedDelay(
+                    () -> SwingUtilities.invokeLater(this::poll), SAFETY_POLL_MILLIS, SAFETY_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Checks the window of a WINDOW_OPENED or WINDOW_ACTIVATED event, must be called on the AWT event dispatching thread.
+     *
+     * @param window The window instance
+     */
+    void onWindowEvent(Window window) {
+        if (this.lookups.isEmpty()) {
+            return;
+        }
+
+        this.check(window);
+        this.stopIfIdle();
+    }
+
+    /**
+     * The safety net poll, in case a menu change was not observed.
+     */
+    private void poll() {
+        if (this.lookups.isEmpty()) {
+            return;
+        }
+
+        this.checkAllWindows();
+        if (!this.lookups.isEmpty()) {
+            this.automater.logMessage("Main window not found.");
+        }
+    }
+
+    /**
+     * Checks all windows.
+     */
+    private void checkAllWindows() {
+        for (Window window : Window.getWindows()) {
+            if (this.lookups.isEmpty()) {
+                break;
+            }
+            this.check(window);
+        }
+        this.stopIfIdle();
+    }
+
+    /**
+     * Completes the lookups matching the window, or observes the menus of the window.
+     *
+     * @param window The window instance
+     */
+    private void check(Window window) {
+        if (!(window instanceof JFrame)) {
+            return;
+        }
+
+        boolean pending = false;
+        for (Lookup lookup : new ArrayList<>(this.lookups)) {
+            if (lookup.future.isDone()) {
+                this.lookups.remove(lookup);
+            }
+            else if (Common.getMenuItem(window, lookup.menuText, lookup.menuItemText) != null) {
+                this.lookups.remove(lookup);
+                lookup.future.complete(window);
+            }
+            else {
+                pending = true;
+            }
+        }
+
+        if (pending) {
+            this.observe((JFrame) window);
+        }
+    }
+
+    /**
+     * Adds the container listeners needed to detect the menu changes of the frame.
+     *
+     * @param frame The frame instance
+     */
+    private void observe(JFrame frame) {
+        // the menu bar is added to the layered pane
+        this.observe(frame.getLayeredPane());
+
+        JMenuBar menuBar = frame.getJMenuBar();
+        if (menuBar == null) {
+            return;
+        }
+        this.observe(menuBar);
+        for (int i = 0; i < menuBar.getMenuCount(); ++i) {
+            JMenu menu = menuBar.getMenu(i);
+            if (menu != null) {
+                this.observe(menu.getPopupMenu());
+            }
+        }
+    }
+
+    /**
+     * Adds the container listener to the container, if not already added.
+     *
+     * @param container The container instance
+     */
+    private void observe(Container container) {
+        if (container != null && this.observedContainers.add(container)) {
+            container.addContainerListener(this.menuListener);
+        }
+    }
+
+    /**
+     * Stops the safety net poll and removes the container listeners when no lookup is pending.
+     */
+    private void stopIfIdle() {
+        this.lookups.removeIf(lookup -> lookup.future.isDone());
+        if (!this.lookups.isEmpty()) {
+            return;
+        }
+
+        if (this.safetyPoll != null) {
+            this.safetyPoll.cancel(false);
+            this.safetyPoll = null;
+        }
+        for (Container container : this.observedContainers) {
+            container.removeContainerListener(this.menuListener);
+        }
+        this.observedContainers.clear();
+    }
+
+    /**
+     * A pending lookup.
+     */
+    private static final class Lookup {
+        private final String menuText;
+        private final String menuItemText;
+        private final CompletableFuture<Window> future;
+
+        Lookup(String menuText, String menuItemText, CompletableFuture<Window> future) {
+            this.menuText = menuText;
+            this.menuItemText = menuItemText;
+            this.future = future;
+        }
+    }
+}
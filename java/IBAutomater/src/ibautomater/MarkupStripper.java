@@ -0,0 +1,163 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+/**
+ * Removes the HTML markup from the text of the IBGateway components with a single scan of the characters.
+ *
+ * A tag is a '<' followed by the nearest '>' on the same line, as matched by the regular expression "\<.*?>"
+ * previously used by the window handlers. Each thread reuses its own buffer, so only the result is allocated.
+ *
+ * @author QuantConnect Corporation
+ */
+final class MarkupStripper {
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(512));
+
+    private MarkupStripper() {
+    }
+
+    /**
+     * Replaces each tag with a space and trims the result,
+     * the result is identical to text.replaceAll("\\<.*?>", " ").trim().
+     *
+     * @param text The text to be stripped
+     *
+     * @return Returns the text without markup, empty if the text is null
+     */
+    static String strip(String text) {
+        if (text == null) {
+            return "";
+        }
+
+        int tagStart = text.indexOf('<');
+        if (tagStart < 0) {
+            return text.trim();
+        }
+
+        // copy the text between the tags in bulk
+        StringBuilder builder = MarkupStripper.buffer();
+        int length = text.length();
+        int i = 0;
+        while (tagStart >= 0) {
+            int tagEnd = MarkupStripper.findTagEnd(text, tagStart);
+            if (tagEnd < 0) {
+                builder.append(text, i, tagStart + 1);
+                i = tagStart + 1;
+            }
+            else {
+                builder.append(text, i, tagStart).append(' ');
+                i = tagEnd + 1;
+            }
+            tagStart = i < length ? text.indexOf('<', i) : -1;
+        }
+        builder.append(text, i, length);
+
+        // trim as String.trim does
+        int start = 0;
+        int end = builder.length();
+        while (start < end && builder.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && builder.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return builder.substring(start, end);
+    }
+
+    /**
+     * Removes the tags, converts the text to lower case and collapses each run of whitespace into a single space.
+     * The result is meant for matching, not for logging.
+     *
+     * @param text The text to be normalized
+     *
+     * @return Returns the normalized text, empty if the text is null
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+
+        StringBuilder builder = MarkupStripper.buffer();
+        int length = text.length();
+        int i = 0;
+        boolean pendingSpace = false;
+        while (i < length) {
+            char c = text.charAt(i);
+            int tagEnd = c == '<' ? MarkupStripper.findTagEnd(text, i) : -1;
+            if (tagEnd >= 0) {
+                pendingSpace = true;
+                i = tagEnd + 1;
+                continue;
+            }
+            i++;
+
+            if (c <= ' ' || c == '\u00a0' || Character.isWhitespace(c)) {
+                pendingSpace = true;
+                continue;
+            }
+            if (pendingSpace && builder.length() > 0) {
+                builder.append(' ');
+            }
+            pendingSpace = false;
+            builder.append(Character.toLowerCase(c));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Finds the end of the tag starting at the specified position.
+     *
+     * @param text The text
+     * @param start The position of the '<' character
+     *
+     * @return Returns the position of the '>' character, -1 if the '<' character does not start a tag
+     */
+    private static int findTagEnd(String text, int start) {
+        int length = text.length();
+        for (int i = start + 1; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '>') {
+                return i;
+            }
+            if (MarkupStripper.isLineTerminator(c)) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets whether the character ends a line (the characters not matched by "." in a regular expression).
+     *
+     * @param c The character
+     *
+     * @return Returns true if the character is a line terminator
+     */
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * Gets the cleared buffer of the current thread.
+     *
+     * @return Returns the buffer
+     */
+    private static StringBuilder buffer() {
+        StringBuilder builder = BUFFER.get();
+        builder.setLength(0);
+        return builder;
+    }
+}
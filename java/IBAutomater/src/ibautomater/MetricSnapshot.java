@@ -0,0 +1,118 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * The values of a latency metric at a point in time, exposed over JMX. Latencies are in microseconds.
+ *
+ * @author QuantConnect Corporation
+ */
+public final class MetricSnapshot {
+    private final long count;
+    private final long hits;
+    private final long meanMicros;
+    private final long p50Micros;
+    private final long p90Micros;
+    private final long p99Micros;
+    private final long maxMicros;
+
+    /**
+     * Creates a new instance of the {@link MetricSnapshot} class.
+     *
+     * @param count The number of executions
+     * @param hits The number of executions which matched
+     * @param meanMicros The mean latency
+     * @param p50Micros The median latency
+     * @param p90Micros The 90th percentile latency
+     * @param p99Micros The 99th percentile latency
+     * @param maxMicros The maximum latency
+     */
+    @ConstructorProperties({"count", "hits", "meanMicros", "p50Micros", "p90Micros", "p99Micros", "maxMicros"})
+    public MetricSnapshot(long count, long hits, long meanMicros, long p50Micros, long p90Micros, long p99Micros, long maxMicros) {
+        this.count = count;
+        this.hits = hits;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p90Micros = p90Micros;
+        this.p99Micros = p99Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    /**
+     * Gets the number of executions.
+     *
+     * @return Returns the number of executions
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Gets the number of executions which matched (handled window, found component).
+     *
+     * @return Returns the number of hits
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Gets the mean latency.
+     *
+     * @return Returns the mean latency in microseconds
+     */
+    public long getMeanMicros() {
+        return this.meanMicros;
+    }
+
+    /**
+     * Gets the median latency.
+     *
+     * @return Returns the median latency in microseconds
+     */
+    public long getP50Micros() {
+        return this.p50Micros;
+    }
+
+    /**
+     * Gets the 90th percentile latency.
+     *
+     * @return Returns the 90th percentile latency in microseconds
+     */
+    public long getP90Micros() {
+        return this.p90Micros;
+    }
+
+    /**
+     * Gets the 99th percentile latency.
+     *
+     * @return Returns the 99th percentile latency in microseconds
+     */
+    public long getP99Micros() {
+        return this.p99Micros;
+    }
+
+    /**
+     * Gets the maximum latency.
+     *
+     * @return Returns the maximum latency in microseconds
+     */
+    public long getMaxMicros() {
+        return this.maxMicros;
+    }
+}
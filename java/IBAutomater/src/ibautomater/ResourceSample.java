@@ -0,0 +1,81 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+/**
+ * The resource usage of the IBGateway JVM at a point in time, see {@link ResourceSampler}.
+ * Values which are not available on the platform are -1.
+ *
+ * @author QuantConnect Corporation
+ */
+final class ResourceSample {
+    final long timeMillis;
+    final long heapUsedBytes;
+    final long heapCommittedBytes;
+    final long heapMaxBytes;
+    final long nonHeapUsedBytes;
+    final long gcCount;
+    final long gcTimeMillis;
+    final int threadCount;
+    final long processCpuTimeNanos;
+    final long openFileDescriptors;
+
+    /**
+     * Creates a new instance of the {@link ResourceSample} class.
+     *
+     * @param timeMillis The wall clock time of the sample (epoch milliseconds)
+     * @param heapUsedBytes The used heap memory
+     * @param heapCommittedBytes The committed heap memory
+     * @param heapMaxBytes The maximum heap memory
+     * @param nonHeapUsedBytes The used non-heap memory (metaspace, code cache)
+     * @param gcCount The number of garbage collections since the JVM start, all collectors
+     * @param gcTimeMillis The accumulated garbage collection time since the JVM start, all collectors
+     * @param threadCount The number of live threads
+     * @param processCpuTimeNanos The CPU time used by the JVM process
+     * @param openFileDescriptors The number of open file descriptors
+     */
+    ResourceSample(long timeMillis, long heapUsedBytes, long heapCommittedBytes, long heapMaxBytes, long nonHeapUsedBytes,
+                   long gcCount, long gcTimeMillis, int threadCount, long processCpuTimeNanos, long openFileDescriptors) {
+        this.timeMillis = timeMillis;
+        this.heapUsedBytes = heapUsedBytes;
+        this.heapCommittedBytes = heapCommittedBytes;
+        this.heapMaxBytes = heapMaxBytes;
+        this.nonHeapUsedBytes = nonHeapUsedBytes;
+        this.gcCount = gcCount;
+        this.gcTimeMillis = gcTimeMillis;
+        this.threadCount = threadCount;
+        this.processCpuTimeNanos = processCpuTimeNanos;
+        this.openFileDescriptors = openFileDescriptors;
+    }
+
+    /**
+     * Formats the sample as space separated "name=value" pairs.
+     *
+     * @return Returns the formatted sample
+     */
+    String format() {
+        return "time=" + this.timeMillis
+            + " heapUsed=" + this.heapUsedBytes
+            + " heapCommitted=" + this.heapCommittedBytes
+            + " heapMax=" + this.heapMaxBytes
+            + " nonHeapUsed=" + this.nonHeapUsedBytes
+            + " gcCount=" + this.gcCount
+            + " gcTimeMillis=" + this.gcTimeMillis
+            + " threads=" + this.threadCount
+            + " cpuTimeMillis=" + (this.processCpuTimeNanos < 0 ? -1 : this.processCpuTimeNanos / 1000000)
+            + " openFds=" + this.openFileDescriptors;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the resource usage of the IBGateway JVM at a fixed interval from the platform MXBeans:
+ * heap and non-heap memory, garbage collections, threads, process CPU time and open file descriptors.
+ *
+ * The samples are kept in a fixed size ring (the oldest sample is overwritten), returned by the "resources"
+ * control command; the latest sample is part of the status and a sample is written to the log periodically,
+ * so the trend over a multi-day uptime can be followed.
+ *
+ * @author QuantConnect Corporation
+ */
+final class ResourceSampler {
+    private final IBAutomater automater;
+    private final long intervalMillis;
+    private final int samplesPerLog;
+    private final ResourceSample[] samples;
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    private long sampleCount = 0;
+
+    /**
+     * Creates a new instance of the {@link ResourceSampler} class.
+     *
+     * @param automater The {@link IBAutomater} instance
+     * @param intervalMillis The sampling interval in milliseconds
+     * @param capacity The number of samples kept
+     * @param logIntervalMillis The interval in milliseconds of the samples written to the log
+     */
+    ResourceSampler(IBAutomater automater, long intervalMillis, int capacity, long logIntervalMillis) {
+        this.automater = automater;
+        this.intervalMillis = intervalMillis;
+        this.samples = new ResourceSample[Math.max(1, capacity)];
+        this.samplesPerLog = (int)Math.max(1, logIntervalMillis / intervalMillis);
+    }
+
+    /**
+     * Starts sampling on the IBAutomater scheduler.
+     */
+    void start() {
+        this.automater.getScheduler().scheduleAtFixedRate(this::sample, 0, this.intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Takes a sample and adds it to the ring, runs on the scheduler thread.
+     */
+    private void sample() {
+        try {
+            ResourceSample sample = this.takeSample();
+            boolean log;
+            synchronized (this.samples) {
+                this.samples[(int)(this.sampleCount % this.samples.length)] = sample;
+                log = this.sampleCount % this.samplesPerLog == 0;
+                this.sampleCount++;
+            }
+
+            if (log) {
+                this.automater.logMessage("Resources: " + sample.format());
+            }
+        }
+        catch (Exception exception) {
+            this.automater.logError(exception);
+        }
+    }
+
+    /**
+     * Reads the current resource usage.
+     *
+     * @return Returns the new sample
+     */
+    ResourceSample takeSample() {
+        MemoryUsage heap = this.memory.getHeapMemoryUsage();
+        MemoryUsage nonHeap = this.memory.getNonHeapMemoryUsage();
+
+        long gcCount = 0;
+        long gcTime = 0;
+        for (GarbageCollectorMXBean collector : this.collectors) {
+            gcCount += Math.max(0, collector.getCollectionCount());
+            gcTime += Math.max(0, collector.getCollectionTime());
+        }
+
+        long cpuTime = -1;
+        if (this.os instanceof com.sun.management.OperatingSystemMXBean) {
+            cpuTime = ((com.sun.management.OperatingSystemMXBean)this.os).getProcessCpuTime();
+        }
+        long openFileDescriptors = -1;
+        if (this.os instanceof com.sun.management.UnixOperatingSystemMXBean) {
+            openFileDescriptors = ((com.sun.management.UnixOperatingSystemMXBean)this.os).getOpenFileDescriptorCount();
+        }
+
+        return new ResourceSample(System.currentTimeMillis(), heap.getUsed(), heap.getCommitted(), heap.getMax(),
+            nonHeap.getUsed(), gcCount, gcTime, ManagementFactory.getThreadMXBean().getThreadCount(), cpuTime, openFileDescriptors);
+    }
+
+    /**
+     * Gets the latest sample.
+     *
+     * @return Returns the latest sample, null if no sample was taken yet
+     */
+    ResourceSample getLatest() {
+        synchronized (this.samples) {
+            return this.sampleCount == 0 ? null : this.samples[(int)((this.sampleCount - 1) % this.samples.length)];
+        }
+    }
+
+    /**
+     * Gets the samples in the ring.
+     *
+     * @return Returns the samples, oldest first
+     */
+    List<ResourceSample> getSamples() {
+        synchronized (this.samples) {
+            int count = (int)Math.min(this.sampleCount, this.samples.length);
+            List<ResourceSample> result = new ArrayList<>(count);
+            for (long i = this.sampleCount - count; i < this.sampleCount; i++) {
+                result.add(this.samples[(int)(i % this.samples.length)]);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Formats the samples in the ring, one sample per line, oldest first.
+     *
+     * @return Returns the formatted samples
+     */
+    String formatSamples() {
+        StringBuilder builder = new StringBuilder();
+        for (ResourceSample sample : this.getSamples()) {
+            builder.append(sample.format()).append('\n');
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the phases of the IBGateway restart cycle in a small journal file which survives the restarts,
+ * so that the duration of each phase can be followed across the daily restarts.
+ *
+ * Each line is a tab separated entry: wall clock time (epoch milliseconds), process id, phase and detail.
+ * The phases of a restart cycle are, in order:
+ * - RESTART_IN_PROGRESS: the "Restart in progress" window opened in the restarting process
+ * - JVM_EXIT: the restarting process exits
+ * - SESSION_STARTED: IBAutomater started in the new process (the detail tells whether it is a restart)
+ * - APPLICATION_STARTED: the "Starting application..." window closed
+ * - MAIN_WINDOW_FOUND: the main window is ready
+ * - CONFIGURED: the configuration was applied (or skipped, see {@link ConfigurationFingerprint})
+ * - API_READY: the API port accepts connections
+ *
+ * See {@link #report(List)} for the per-phase durations, available with the "restart-report" control command.
+ *
+ * @author QuantConnect Corporation
+ */
+final class RestartJournal implements AutomaterEventListener {
+    /**
+     * The phases of the restart cycle, in order.
+     */
+    enum Phase {
+        RESTART_IN_PROGRESS,
+        JVM_EXIT,
+        SESSION_STARTED,
+        APPLICATION_STARTED,
+        MAIN_WINDOW_FOUND,
+        CONFIGURED,
+        API_READY
+    }
+
+    private static final int MAX_ENTRIES = 2000;
+    private static final String[] COLUMNS = { "shutdown", "relaunch", "startup", "mainWindow", "configure", "apiReady", "total" };
+    private static final String COLUMN_FORMAT = " %10s";
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private final Path path;
+    private final AsyncLogWriter writer;
+    private final String processId;
+
+    /**
+     * Creates a new instance of the {@link RestartJournal} class, trims the journal to its most recent entries
+     * and records the JVM exit in a shutdown hook.
+     *
+     * @param path The journal file
+     */
+    RestartJournal(Path path) throws IOException {
+        this.path = path;
+        RestartJournal.trim(path);
+        this.writer = new AsyncLogWriter(path, 64, LogOverflowPolicy.BLOCK, true, "IBAutomater-journal-writer");
+
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        int separator = name.indexOf('@');
+        this.processId = separator > 0 ? name.substring(0, separator) : name;
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            this.record(Phase.JVM_EXIT, null);
+            this.writer.close(5, TimeUnit.SECONDS);
+        }, "IBAutomater-journal-flush"));
+    }
+
+    /**
+     * Records the phases signaled by the published events.
+     *
+     * @param event The published event
+     */
+    @Override
+    public void onEvent(AutomaterEvent event) {
+        switch (event.getType()) {
+            case SESSION_STARTED:
+                this.record(Phase.SESSION_STARTED, "restart=" + (System.getProperty("restart") != null));
+                break;
+            case RESTART_IN_PROGRESS:
+                this.record(Phase.RESTART_IN_PROGRESS, null);
+                break;
+            case WINDOW_HANDLED:
+                if ("InitializationWindow".equals(event.getDetail())) {
+                    this.record(Phase.APPLICATION_STARTED, null);
+                }
+                break;
+            case CONFIGURED:
+                this.record(Phase.CONFIGURED, event.getDetail());
+                break;
+            case API_READY:
+                if (event.getOutcome() == AutomaterEventOutcome.SUCCESS) {
+                    this.record(Phase.API_READY, event.getDetail());
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Records a phase.
+     *
+     * @param phase The phase
+     * @param detail The phase detail, null if none
+     */
+    void record(Phase phase, String detail) {
+        String text = detail == null ? "" : detail.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+        this.writer.writeLine(System.currentTimeMillis() + "\t" + this.processId + "\t" + phase.name() + "\t" + text);
+    }
+
+    /**
+     * Reads the journal and formats the restart report.
+     *
+     * @return Returns the restart report, see {@link #report(List)}
+     */
+    String report() throws IOException {
+        this.writer.flush(5, TimeUnit.SECONDS);
+        return RestartJournal.report(Files.readAllLines(this.path, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Formats the durations of the phases of each restart cycle in the journal, in seconds,
+     * followed by the mean and the maximum of each phase. A phase which was not recorded is shown as "-".
+     * A cycle starts with the "Restart in progress" window and ends with the API port ready in the new process.
+     *
+     * @param lines The journal lines
+     *
+     * @return Returns the restart report
+     */
+    static String report(List<String> lines) {
+        List<Map<Phase, Long>> cycles = new ArrayList<>();
+        Map<Phase, Long> cycle = null;
+
+        for (String line : lines) {
+            String[] fields = line.split("\t", -1);
+            if (fields.length < 3) {
+                continue;
+            }
+            long time;
+            Phase phase;
+            try {
+                time = Long.parseLong(fields[0]);
+                phase = Phase.valueOf(fields[2]);
+            }
+            catch (IllegalArgumentException exception) {
+                continue;
+            }
+
+            if (phase == Phase.RESTART_IN_PROGRESS) {
+                cycle = new EnumMap<>(Phase.class);
+                cycles.add(cycle);
+            }
+            else if (phase == Phase.SESSION_STARTED && fields.length > 3 && fields[3].equals("restart=false")) {
+                // started by the host, not a restart
+                cycle = null;
+            }
+            if (cycle != null) {
+                cycle.putIfAbsent(phase, time);
+                if (phase == Phase.API_READY) {
+                    cycle = null;
+                }
+            }
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("Restart cycles: ").append(cycles.size()).append('\n');
+        builder.append(String.format("%-20s", "restart"));
+        for (String column : COLUMNS) {
+            builder.append(String.format(COLUMN_FORMAT, column));
+        }
+        builder.append('\n');
+
+        Phase[] phases = Phase.values();
+        double[] sums = new double[phases.length];
+        double[] maximums = new double[phases.length];
+        int[] counts = new int[phases.length];
+
+        for (Map<Phase, Long> entry : cycles) {
+            builder.append(String.format("%-20s", TIME_FORMAT.format(Instant.ofEpochMilli(entry.get(Phase.RESTART_IN_PROGRESS)))));
+            for (int i = 1; i < phases.length; i++) {
+                Long from = entry.get(phases[i - 1]);
+                Long to = entry.get(phases[i]);
+                builder.append(RestartJournal.formatDuration(from, to, i, sums, maximums, counts));
+            }
+            Long end = entry.get(Phase.API_READY);
+            builder.append(RestartJournal.formatDuration(entry.get(Phase.RESTART_IN_PROGRESS), end, 0, sums, maximums, counts));
+            builder.append('\n');
+        }
+
+        if (!cycles.isEmpty()) {
+            StringBuilder mean = new StringBuilder(String.format("%-20s", "mean"));
+            StringBuilder max = new StringBuilder(String.format("%-20s", "max"));
+            // the total is the last column
+            for (int i = 1; i <= phases.length; i++) {
+                int index = i % phases.length;
+                mean.append(String.format(COLUMN_FORMAT, counts[index] == 0 ? "-" : String.format("%.1f", sums[index] / counts[index])));
+                max.append(String.format(COLUMN_FORMAT, counts[index] == 0 ? "-" : String.format("%.1f", maximums[index])));
+            }
+            builder.append(mean).append('\n').append(max).append('\n');
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Formats the duration between two phases and adds it to the statistics of the column.
+     *
+     * @param from The time of the phase starting the duration, null if not recorded
+     * @param to The time of the phase ending the duration, null if not recorded
+     * @param index The index of the statistics, the phase index or 0 for the total
+     * @param sums The sums of the durations, by index
+     * @param maximums The maximum durations, by index
+     * @param counts The numbers of durations, by index
+     *
+     * @return Returns the formatted duration in seconds, padded to the column width
+     */
+    private static String formatDuration(Long from, Long to, int index, double[] sums, double[] maximums, int[] counts) {
+        if (from == null || to == null) {
+            return String.format(COLUMN_FORMAT, "-");
+        }
+        double seconds = (to - from) / 1000.0;
+        sums[index] += seconds;
+        maximums[index] = Math.max(maximums[index], seconds);
+        counts[index]++;
+        return String.format(COLUMN_FORMAT, String.format("%.1f", seconds));
+    }
+
+    /**
+     * Keeps the most recent entries of the journal only.
+     *
+     * @param path The journal file
+     */
+    private static void trim(Path path) throws IOException {
+        if (!Files.exists(path) || Files.size(path) < MAX_ENTRIES * 64L) {
+            return;
+        }
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        if (lines.size() > MAX_ENTRIES) {
+            Files.write(path, lines.subList(lines.size() - MAX_ENTRIES / 2, lines.size()), StandardCharsets.UTF_8);
+        }
+    }
+}
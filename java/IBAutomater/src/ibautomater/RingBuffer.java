@@ -0,0 +1,123 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for many producer threads and a single consumer thread.
+ *
+ * Each slot carries a sequence number: producers claim a position with a CAS on the tail
+ * and publish the slot by advancing its sequence, the consumer frees the slot for the next lap the same way.
+ *
+ * @param <T> The type of the queued items
+ *
+ * @author QuantConnect Corporation
+ */
+final class RingBuffer<T> {
+    private final int mask;
+    private final Object[] items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head = 0;
+
+    /**
+     * Creates a new instance of the {@link RingBuffer} class.
+     *
+     * @param capacity The minimum capacity, rounded up to the next power of two
+     */
+    RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.mask = size - 1;
+        this.items = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            this.sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Gets the number of slots.
+     *
+     * @return Returns the number of slots
+     */
+    int capacity() {
+        return this.items.length;
+    }
+
+    /**
+     * Gets the number of items offered successfully so far.
+     *
+     * @return Returns the position of the next item to be offered
+     */
+    long producerPosition() {
+        return this.tail.get();
+    }
+
+    /**
+     * Adds an item to the queue, can be called from any thread.
+     *
+     * @param item The item to be added
+     *
+     * @return Returns true if the item was added, false if the queue is full
+     */
+    boolean offer(T item) {
+        while (true) {
+            long position = this.tail.get();
+            int index = (int)position & this.mask;
+            long difference = this.sequences.get(index) - position;
+            if (difference == 0) {
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    this.items[index] = item;
+                    // volatile write, so that a consumer going to sleep cannot miss the item
+                    this.sequences.set(index, position + 1);
+                    return true;
+                }
+            }
+            else if (difference < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest item from the queue, must only be called from the consumer thread.
+     *
+     * @return Returns the oldest item, null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    T poll() {
+        int index = (int)this.head & this.mask;
+        if (this.sequences.get(index) != this.head + 1) {
+            return null;
+        }
+        T item = (T)this.items[index];
+        this.items[index] = null;
+        this.sequences.lazySet(index, this.head + this.items.length);
+        this.head++;
+        return item;
+    }
+
+    /**
+     * Gets the number of items removed so far, must only be called from the consumer thread.
+     *
+     * @return Returns the position of the next item to be removed
+     */
+    long consumerPosition() {
+        return this.head;
+    }
+}
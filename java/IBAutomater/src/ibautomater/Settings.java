@@ -15,9 +15,22 @@
 
 package ibautomater;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
 /**
  * Contains all settings required by IBAutomater.
  *
+ * Besides the required settings, optional settings can be given as "name=value" pairs,
+ * the documented default value is used for any optional setting which is missing or invalid.
+ *
  * @author QuantConnect Corporation
 */
 public class Settings {
@@ -26,6 +39,7 @@ public class Settings {
     private final String tradingMode;
     private final int portNumber;
     private final boolean exportIbGatewayLogs;
+    private final Map<String, String> options;
 
     /**
      * Creates a new instance of the {@link Settings} class.
@@ -38,11 +52,56 @@ public class Settings {
      * (currently at startup and when unknown windows are detected)
      */
     public Settings(String userName, String password, String tradingMode, int portNumber, boolean exportIbGatewayLogs) {
+        this(userName, password, tradingMode, portNumber, exportIbGatewayLogs, Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * Creates a new instance of the {@link Settings} class.
+     *
+     * @param userName The IB user name
+     * @param password The IB password
+     * @param tradingMode The trading mode (allowed values are "live" and "paper")
+     * @param portNumber The socket port number to be used for API connections
+     * @param exportIbGatewayLogs If true, IBGateway logs will be exported at predefined times
+     * (currently at startup and when unknown windows are detected)
+     * @param options The optional settings, by name
+     */
+    public Settings(String userName, String password, String tradingMode, int portNumber, boolean exportIbGatewayLogs, Map<String, String> options) {
         this.userName = userName;
         this.password = password;
         this.tradingMode = tradingMode;
         this.portNumber = portNumber;
         this.exportIbGatewayLogs = exportIbGatewayLogs;
+        this.options = new HashMap<>(options);
+    }
+
+    /**
+     * Reads the settings from a text file.
+     *
+     * @param file The name of a text file containing the values of the IBAutomater settings
+     * (one value per line, optionally followed by "name=value" lines for the optional settings)
+     *
+     * @return Returns the settings
+     */
+    public static Settings load(Path file) throws IOException {
+        String fileContent = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        String[] argValues = fileContent.split("\n");
+
+        String userName = argValues[0];
+        String password = argValues[1];
+        String tradingMode = argValues[2];
+        int portNumber = Integer.parseInt(argValues[3].trim());
+        boolean exportIbGatewayLogs = Boolean.parseBoolean(argValues[4].trim());
+
+        Map<String, String> options = new HashMap<>();
+        for (int i = 5; i < argValues.length; i++) {
+            int separator = argValues[i].indexOf('=');
+            if (separator > 0) {
+                options.put(argValues[i].substring(0, separator).trim(), argValues[i].substring(separator + 1).trim());
+            }
+        }
+
+        return new Settings(userName, password, tradingMode, portNumber, exportIbGatewayLogs, options);
     }
 
     /**
@@ -89,5 +148,303 @@ public class Settings {
     public boolean getExportIbGatewayLogs() {
         return this.exportIbGatewayLogs;
     }
-}
 
+    /**
+     * Gets the directory of the IBAutomater files (log, events, control files, ...), used instead of the working directory
+     * of the IBGateway process so that several gateways can share an installation (option "workingDirectory", default: the working directory).
+     *
+     * @return Returns the IBAutomater directory, empty for the working directory
+     */
+    public String getWorkingDirectory() {
+        String value = this.options.get("workingDirectory");
+        return value == null ? "" : value.trim();
+    }
+
+    /**
+     * Resolves the name of an IBAutomater file against the IBAutomater directory, see {@link #getWorkingDirectory()}.
+     *
+     * @param fileName The file name, absolute names are returned unchanged
+     *
+     * @return Returns the path of the file
+     */
+    public Path resolvePath(String fileName) {
+        return Paths.get(this.getWorkingDirectory()).resolve(fileName);
+    }
+
+    /**
+     * Gets the maximum number of log messages waiting to be written to the log file (option "logBufferCapacity", default 8192).
+     *
+     * @return Returns the log buffer capacity
+     */
+    public int getLogBufferCapacity() {
+        return this.getIntOption("logBufferCapacity", 8192);
+    }
+
+    /**
+     * Gets what happens to a log message when the log buffer is full (option "logOverflowPolicy", default "block").
+     *
+     * @return Returns the log overflow policy
+     */
+    public LogOverflowPolicy getLogOverflowPolicy() {
+        String value = this.options.get("logOverflowPolicy");
+        if (value != null) {
+            try {
+                return LogOverflowPolicy.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            }
+            catch (IllegalArgumentException exception) {
+                // invalid value, use the default
+            }
+        }
+        return LogOverflowPolicy.BLOCK;
+    }
+
+    /**
+     * Gets the loopback port of the control endpoint (option "controlPort", default 0: any free port, a negative value disables the endpoint).
+     *
+     * @return Returns the control endpoint port
+     */
+    public int getControlPort() {
+        return this.getIntOption("controlPort", 0);
+    }
+
+    /**
+     * Gets whether the control files are detected by polling the directory every second instead of using the file system watch service
+     * (option "controlFilePolling", default: true except on Linux and Windows, where the watch service uses native notifications;
+     * elsewhere the JDK watch service itself polls, every few seconds).
+     *
+     * @return Returns true if the control files are polled
+     */
+    public boolean getControlFilePolling() {
+        String value = this.options.get("controlFilePolling");
+        if (value != null && !value.trim().isEmpty()) {
+            return Boolean.parseBoolean(value.trim());
+        }
+        String os = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+        return !os.startsWith("linux") && !os.startsWith("windows");
+    }
+
+    /**
+     * Gets the name of the append-only file the IBAutomater events are written to
+     * (option "eventFile", default "IBAutomater.events", an empty value disables the file).
+     *
+     * @return Returns the event file name, empty if disabled
+     */
+    public String getEventFile() {
+        String value = this.options.get("eventFile");
+        return value == null ? "IBAutomater.events" : value.trim();
+    }
+
+    /**
+     * Gets the name of the window rules file, see {@link WindowRuleParser}
+     * (option "rulesFile", default "IBAutomater.rules", the rules are optional).
+     *
+     * @return Returns the window rules file name
+     */
+    public String getRulesFile() {
+        String value = this.options.get("rulesFile");
+        return value == null || value.trim().isEmpty() ? "IBAutomater.rules" : value.trim();
+    }
+
+    /**
+     * Gets the interval of the heartbeats posted to the AWT event dispatching thread by the {@link EdtWatchdog}
+     * (option "edtWatchdogIntervalMillis", default 100, 0 disables the watchdog).
+     *
+     * @return Returns the heartbeat interval in milliseconds
+     */
+    public int getEdtWatchdogIntervalMillis() {
+        return this.getIntOption("edtWatchdogIntervalMillis", 100);
+    }
+
+    /**
+     * Gets the lag after which the AWT event dispatching thread is considered stalled and its stack is logged
+     * (option "edtStallThresholdMillis", default 2000).
+     *
+     * @return Returns the stall threshold in milliseconds
+     */
+    public int getEdtStallThresholdMillis() {
+        return this.getIntOption("edtStallThresholdMillis", 2000);
+    }
+
+    /**
+     * Gets the period of the lag summary of the AWT event dispatching thread written to the log
+     * (option "edtLagSummaryMinutes", default 60).
+     *
+     * @return Returns the summary period in minutes
+     */
+    public int getEdtLagSummaryMinutes() {
+        return this.getIntOption("edtLagSummaryMinutes", 60);
+    }
+
+    /**
+     * Gets the interval of the JVM resource samples, see {@link ResourceSampler}
+     * (option "resourceSampleSeconds", default 10, 0 disables the sampling).
+     *
+     * @return Returns the sampling interval in seconds
+     */
+    public int getResourceSampleSeconds() {
+        return this.getIntOption("resourceSampleSeconds", 10);
+    }
+
+    /**
+     * Gets the number of JVM resource samples kept in memory
+     * (option "resourceSampleCapacity", default 8640, i.e. 24 hours of samples at the default interval).
+     *
+     * @return Returns the number of samples kept
+     */
+    public int getResourceSampleCapacity() {
+        return this.getIntOption("resourceSampleCapacity", 8640);
+    }
+
+    /**
+     * Gets the interval of the JVM resource samples written to the log
+     * (option "resourceLogMinutes", default 10).
+     *
+     * @return Returns the log interval in minutes
+     */
+    public int getResourceLogMinutes() {
+        return this.getIntOption("resourceLogMinutes", 10);
+    }
+
+    /**
+     * Gets the maximum time to wait for the API port to accept connections after the configuration is applied,
+     * see {@link ApiPortProbe} (option "apiReadyTimeoutSeconds", default 120, 0 disables the probe).
+     *
+     * @return Returns the API port probe timeout in seconds
+     */
+    public int getApiReadyTimeoutSeconds() {
+        return this.getIntOption("apiReadyTimeoutSeconds", 120);
+    }
+
+    /**
+     * Gets the interval between the connection attempts of the API port probe
+     * (option "apiProbeIntervalMillis", default 100).
+     *
+     * @return Returns the API port probe interval in milliseconds
+     */
+    public int getApiProbeIntervalMillis() {
+        return this.getIntOption("apiProbeIntervalMillis", 100);
+    }
+
+    /**
+     * Gets whether the Configuration window is skipped after an IBGateway daily restart when the configuration
+     * to be applied is the one applied before the restart, see {@link ConfigurationFingerprint}
+     * (option "configFastPath", default true).
+     *
+     * @return Returns true if the configuration fast path is enabled
+     */
+    public boolean getConfigFastPath() {
+        String value = this.options.get("configFastPath");
+        return value == null || !value.trim().equalsIgnoreCase("false");
+    }
+
+    /**
+     * Gets the name of the journal of the restart cycle phases, see {@link RestartJournal}
+     * (option "restartJournalFile", default "IBAutomater.restarts", an empty value disables the journal).
+     *
+     * @return Returns the restart journal file name, empty if disabled
+     */
+    public String getRestartJournalFile() {
+        String value = this.options.get("restartJournalFile");
+        return value == null ? "IBAutomater.restarts" : value.trim();
+    }
+
+    /**
+     * Gets the name of the binary trace of the dispatched window events, see {@link WindowTraceRecorder}
+     * (option "windowTraceFile", default empty, the recording is disabled).
+     *
+     * @return Returns the window trace file name, empty if disabled
+     */
+    public String getWindowTraceFile() {
+        String value = this.options.get("windowTraceFile");
+        return value == null ? "" : value.trim();
+    }
+
+    /**
+     * Gets the size of the window trace file after which the recording stops
+     * (option "windowTraceMaxMegabytes", default 64).
+     *
+     * @return Returns the maximum window trace size in megabytes
+     */
+    public int getWindowTraceMaxMegabytes() {
+        return this.getIntOption("windowTraceMaxMegabytes", 64);
+    }
+
+    /**
+     * Gets the maximum time in the lifecycle states, see {@link GatewayLifecycle#parseTimeouts(String)}
+     * (option "lifecycleTimeouts", comma separated "STATE=seconds" entries overriding the defaults).
+     *
+     * @return Returns the lifecycle state timeouts option, null if not set
+     */
+    public String getLifecycleTimeouts() {
+        return this.options.get("lifecycleTimeouts");
+    }
+
+    /**
+     * Gets the maximum number of 2FA prompts before the login is abandoned (option "twoFactorMaxAttempts", default 3).
+     *
+     * @return Returns the maximum number of 2FA attempts
+     */
+    public int getTwoFactorMaxAttempts() {
+        return this.getIntOption("twoFactorMaxAttempts", 3);
+    }
+
+    /**
+     * Gets the time after which a closed 2FA prompt is considered a timeout rather than an approval
+     * (option "twoFactorTimeoutSeconds", default 150).
+     *
+     * @return Returns the 2FA timeout in seconds
+     */
+    public int getTwoFactorTimeoutSeconds() {
+        return this.getIntOption("twoFactorTimeoutSeconds", 150);
+    }
+
+    /**
+     * Gets the delay before the first login retry after a 2FA timeout, doubled for each following attempt
+     * (option "twoFactorRetryDelaySeconds", default 10).
+     *
+     * @return Returns the base retry delay in seconds
+     */
+    public int getTwoFactorRetryDelaySeconds() {
+        return this.getIntOption("twoFactorRetryDelaySeconds", 10);
+    }
+
+    /**
+     * Gets the maximum delay before a login retry after a 2FA timeout (option "twoFactorRetryMaxDelaySeconds", default 300).
+     *
+     * @return Returns the maximum retry delay in seconds
+     */
+    public int getTwoFactorRetryMaxDelaySeconds() {
+        return this.getIntOption("twoFactorRetryMaxDelaySeconds", 300);
+    }
+
+    /**
+     * Gets the random variation of the login retry delays, so that gateways do not retry together
+     * (option "twoFactorRetryJitterPercent", default 30).
+     *
+     * @return Returns the jitter in percent of the delay
+     */
+    public int getTwoFactorRetryJitterPercent() {
+        return this.getIntOption("twoFactorRetryJitterPercent", 30);
+    }
+
+    /**
+     * Gets the value of an optional integer setting.
+     *
+     * @param name The option name
+     * @param defaultValue The value returned if the option is missing or invalid
+     *
+     * @return Returns the option value
+     */
+    private int getIntOption(String name, int defaultValue) {
+        String value = this.options.get(name);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            }
+            catch (NumberFormatException exception) {
+                // invalid value, use the default
+            }
+        }
+        return defaultValue;
+    }
+}
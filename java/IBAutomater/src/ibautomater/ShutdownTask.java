@@ -18,6 +18,7 @@ package ibautomater;
 import javax.swing.*;
 import java.awt.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Handles the task of finding the IBGateway main window and shutting it down
@@ -26,15 +27,18 @@ import java.util.concurrent.Callable;
  */
 public class ShutdownTask implements Callable<Window> {
     private final IBAutomater automater;
+    private final MainWindowLocator locator;
 
     /**
      * Creates a new instance of the {@link ShutdownTask} class.
      *
      * @param automater The {@link IBAutomater} instance
+     * @param locator The {@link MainWindowLocator} instance
      */
-    ShutdownTask(IBAutomater automater) {
+    ShutdownTask(IBAutomater automater, MainWindowLocator locator) {
 
         this.automater = automater;
+        this.locator = locator;
     }
 
     /**
@@ -43,24 +47,23 @@ public class ShutdownTask implements Callable<Window> {
      * @return Returns the IBGateway main window
      */
     @Override
-    @SuppressWarnings("SleepWhileInLoop")
     public Window call() throws Exception {
-        while (true) {
-            this.automater.logMessage("Finding main window...");
+        this.automater.logMessage("Finding main window...");
 
-            for (Window w : Window.getWindows()) {
-                JMenuItem menuItem = Common.getMenuItem(w, "File", "Close");
-                if (menuItem != null) {
-                    this.automater.logMessage("Found main window (Window title: [" + Common.getTitle(w) + "] - Window name: [" + w.getName() + "])");
-                    menuItem.doClick();
+        CompletableFuture<Window> future = this.locator.find("File", "Close");
+        try {
+            Window w = future.get();
+            JMenuItem menuItem = Common.getMenuItem(w, "File", "Close");
+            this.automater.logMessage("Found main window (Window title: [" + Common.getTitle(w) + "] - Window name: [" + w.getName() + "])");
 
-                    return w;
-                }
-            }
+            this.automater.flushLog();
+            menuItem.doClick();
 
-            this.automater.logMessage("Main window not found.");
-
-            Thread.sleep(1000);
+            return w;
+        }
+        finally {
+            // stops the lookup if the task was cancelled
+            future.cancel(false);
         }
     }
 }
@@ -0,0 +1,155 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeSet;
+
+/**
+ * Finds all occurrences of a fixed set of signatures in a text with a single pass (Aho-Corasick automaton).
+ * The matching cost depends on the text length only, not on the number of signatures.
+ *
+ * The automaton is compiled to a dense transition table over the characters used by the signatures,
+ * characters not used by any signature restart the matching.
+ * Instances are immutable and can be used from any thread.
+ *
+ * @author QuantConnect Corporation
+ */
+final class SignatureMatcher {
+    private final int signatureCount;
+    private final char[] alphabet;
+    private final int[] transitions;
+    private final int[][] outputs;
+
+    /**
+     * Creates a new instance of the {@link SignatureMatcher} class.
+     *
+     * @param signatures The signatures to be found, the index of a signature in the list is its id
+     */
+    SignatureMatcher(List<String> signatures) {
+        this.signatureCount = signatures.size();
+
+        TreeSet<Character> characters = new TreeSet<>();
+        for (String signature : signatures) {
+            if (signature.isEmpty()) {
+                throw new IllegalArgumentException("Empty signature");
+            }
+            for (int i = 0; i < signature.length(); i++) {
+                characters.add(signature.charAt(i));
+            }
+        }
+        this.alphabet = new char[characters.size()];
+        int symbol = 0;
+        for (char c : characters) {
+            this.alphabet[symbol++] = c;
+        }
+
+        // build the trie
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> matches = new ArrayList<>();
+        trie.add(new HashMap<>());
+        matches.add(new ArrayList<>());
+        for (int id = 0; id < signatures.size(); id++) {
+            String signature = signatures.get(id);
+            int state = 0;
+            for (int i = 0; i < signature.length(); i++) {
+                Integer next = trie.get(state).get(signature.charAt(i));
+                if (next == null) {
+                    next = trie.size();
+                    trie.get(state).put(signature.charAt(i), next);
+                    trie.add(new HashMap<>());
+                    matches.add(new ArrayList<>());
+                }
+                state = next;
+            }
+            matches.get(state).add(id);
+        }
+
+        // resolve the failure links breadth first into complete transitions
+        int width = this.alphabet.length;
+        this.transitions = new int[trie.size() * width];
+        int[] failure = new int[trie.size()];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int s = 0; s < width; s++) {
+            Integer next = trie.get(0).get(this.alphabet[s]);
+            if (next != null) {
+                this.transitions[s] = next;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            matches.get(state).addAll(matches.get(failure[state]));
+            for (int s = 0; s < width; s++) {
+                Integer next = trie.get(state).get(this.alphabet[s]);
+                if (next == null) {
+                    this.transitions[state * width + s] = this.transitions[failure[state] * width + s];
+                }
+                else {
+                    failure[next] = this.transitions[failure[state] * width + s];
+                    this.transitions[state * width + s] = next;
+                    queue.add(next);
+                }
+            }
+        }
+
+        this.outputs = new int[trie.size()][];
+        for (int state = 0; state < trie.size(); state++) {
+            List<Integer> ids = matches.get(state);
+            this.outputs[state] = ids.isEmpty() ? null : ids.stream().mapToInt(Integer::intValue).distinct().toArray();
+        }
+    }
+
+    /**
+     * Gets the number of signatures.
+     *
+     * @return Returns the number of signatures
+     */
+    int getSignatureCount() {
+        return this.signatureCount;
+    }
+
+    /**
+     * Finds the signatures contained in a text.
+     *
+     * @param text The text to be searched
+     *
+     * @return Returns the set of the ids of the signatures found in the text
+     */
+    BitSet match(CharSequence text) {
+        BitSet found = new BitSet(this.signatureCount);
+        int width = this.alphabet.length;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            int symbol = Arrays.binarySearch(this.alphabet, text.charAt(i));
+            state = symbol < 0 ? 0 : this.transitions[state * width + symbol];
+            int[] ids = this.outputs[state];
+            if (ids != null) {
+                for (int id : ids) {
+                    found.set(id);
+                }
+            }
+        }
+        return found;
+    }
+}
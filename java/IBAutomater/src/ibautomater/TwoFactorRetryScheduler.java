@@ -0,0 +1,196 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.SwingUtilities;
+
+/**
+ * Tracks the 2FA prompts and schedules the login retries after a 2FA timeout.
+ *
+ * IBGateway closes an unanswered 2FA prompt after about 3 minutes and IB counts the timeout as a failed login,
+ * so a prompt closed after the timeout threshold is a timeout, earlier it is an approval.
+ * Retries are delayed with an exponential backoff (base delay doubled per attempt, capped) and a random jitter,
+ * so that many gateways timing out together do not retry together and trigger "Too many failed login attempts".
+ * The pending retry runs on the shared scheduler and is cancelled when a prompt is approved or a new prompt opens.
+ *
+ * The time from each prompt to its approval or timeout is recorded per attempt,
+ * see {@link AutomaterMetricsMXBean#getTwoFactorMetrics()}.
+ *
+ * @author QuantConnect Corporation
+ */
+final class TwoFactorRetryScheduler {
+    private final IBAutomater automater;
+    private final int maxAttempts;
+    private final long timeoutMillis;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final double jitter;
+    private final AtomicInteger attempts = new AtomicInteger();
+    private final AtomicReference<ScheduledFuture<?>> pendingRetry = new AtomicReference<>();
+    private volatile long promptTime;
+
+    /**
+     * Creates a new instance of the {@link TwoFactorRetryScheduler} class.
+     *
+     * @param automater The {@link IBAutomater} instance
+     * @param maxAttempts The maximum number of 2FA prompts before giving up
+     * @param timeoutMillis The time after which a closed prompt is considered a timeout
+     * @param baseDelayMillis The delay before the first retry
+     * @param maxDelayMillis The maximum delay before a retry
+     * @param jitter The random variation of the delay, as a fraction of the delay (0 to 1)
+     */
+    TwoFactorRetryScheduler(IBAutomater automater, int maxAttempts, long timeoutMillis, long baseDelayMillis, long maxDelayMillis, double jitter) {
+        this.automater = automater;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.timeoutMillis = timeoutMillis;
+        this.baseDelayMillis = Math.max(0, baseDelayMillis);
+        this.maxDelayMillis = Math.max(this.baseDelayMillis, maxDelayMillis);
+        this.jitter = Math.min(1.0, Math.max(0.0, jitter));
+    }
+
+    /**
+     * Creates the retry scheduler configured by the IBAutomater settings.
+     *
+     * @param automater The {@link IBAutomater} instance
+     *
+     * @return Returns the retry scheduler
+     */
+    static TwoFactorRetryScheduler fromSettings(IBAutomater automater) {
+        Settings settings = automater.getSettings();
+        return new TwoFactorRetryScheduler(automater, settings.getTwoFactorMaxAttempts(),
+            TimeUnit.SECONDS.toMillis(settings.getTwoFactorTimeoutSeconds()),
+            TimeUnit.SECONDS.toMillis(settings.getTwoFactorRetryDelaySeconds()),
+            TimeUnit.SECONDS.toMillis(settings.getTwoFactorRetryMaxDelaySeconds()),
+            settings.getTwoFactorRetryJitterPercent() / 100.0);
+    }
+
+    /**
+     * Gets the maximum number of 2FA prompts.
+     *
+     * @return Returns the maximum number of attempts
+     */
+    int getMaxAttempts() {
+        return this.maxAttempts;
+    }
+
+    /**
+     * Gets the number of 2FA prompts since the last approval.
+     *
+     * @return Returns the current attempt number, 0 if no prompt is pending
+     */
+    int getAttempts() {
+        return this.attempts.get();
+    }
+
+    /**
+     * Records a new 2FA prompt, a retry still pending is cancelled (IBGateway prompted again by itself).
+     *
+     * @return Returns the attempt number of the prompt
+     */
+    int onPrompt() {
+        this.cancel();
+        this.promptTime = System.nanoTime();
+        return this.attempts.incrementAndGet();
+    }
+
+    /**
+     * Records the closing of the 2FA prompt: an approval resets the attempts, a timeout keeps them for the retry.
+     *
+     * @return Returns true if the prompt was approved, false if it timed out
+     */
+    boolean onClosed() {
+        long start = this.promptTime;
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        boolean approved = start != 0 && elapsedMillis < this.timeoutMillis;
+        int attempt = this.attempts.get();
+
+        if (start != 0) {
+            AutomaterMetrics.get().twoFactor("attempt " + attempt).record(start, approved);
+        }
+        this.automater.logMessage("2FA attempt " + attempt + "/" + this.maxAttempts + (approved ? " approved" : " timed out") + " after " + elapsedMillis + " ms");
+
+        this.promptTime = 0;
+        if (approved) {
+            this.attempts.set(0);
+            this.cancel();
+        }
+        return approved;
+    }
+
+    /**
+     * Checks whether another login can be attempted after a timeout.
+     *
+     * @return Returns true if the maximum number of attempts is not reached
+     */
+    boolean canRetry() {
+        return this.attempts.get() < this.maxAttempts;
+    }
+
+    /**
+     * Schedules a login retry after the backoff delay of the current attempt, replacing a pending retry.
+     *
+     * @param retry The retry, run on the AWT event dispatching thread
+     *
+     * @return Returns the delay before the retry in milliseconds
+     */
+    long scheduleRetry(Runnable retry) {
+        long delay = TwoFactorRetryScheduler.computeDelay(this.attempts.get(), this.baseDelayMillis, this.maxDelayMillis,
+            this.jitter, ThreadLocalRandom.current().nextDouble());
+
+        ScheduledFuture<?> future = this.automater.getScheduler().schedule(() -> SwingUtilities.invokeLater(retry), delay, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> previous = this.pendingRetry.getAndSet(future);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        return delay;
+    }
+
+    /**
+     * Cancels the pending retry, if any.
+     */
+    void cancel() {
+        ScheduledFuture<?> previous = this.pendingRetry.getAndSet(null);
+        if (previous != null && previous.cancel(false)) {
+            this.automater.logMessage("2FA login retry cancelled");
+        }
+    }
+
+    /**
+     * Computes the delay before a retry: the base delay doubled for each previous attempt, capped,
+     * then varied by up to the jitter fraction in both directions.
+     *
+     * @param attempt The number of the attempt which timed out (1 for the first one)
+     * @param baseDelayMillis The delay after the first attempt
+     * @param maxDelayMillis The maximum delay before jitter
+     * @param jitter The jitter fraction (0 to 1)
+     * @param random A uniform random value between 0 and 1
+     *
+     * @return Returns the delay in milliseconds
+     */
+    static long computeDelay(int attempt, long baseDelayMillis, long maxDelayMillis, double jitter, double random) {
+        int doublings = Math.min(Math.max(attempt, 1) - 1, 30);
+        long delay = Math.min(maxDelayMillis, baseDelayMillis << doublings);
+        if (delay < 0) {
+            delay = maxDelayMillis;
+        }
+        return Math.max(0, Math.round(delay * (1.0 + jitter * (2.0 * random - 1.0))));
+    }
+}
@@ -21,19 +21,16 @@ import java.awt.Toolkit;
 import java.awt.Window;
 import java.awt.event.AWTEventListener;
 import java.awt.event.WindowEvent;
-import java.io.File;
-import java.time.Duration;
-import java.time.Instant;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JFrame;
@@ -57,6 +54,9 @@ import javax.swing.tree.TreePath;
  * @author QuantConnect Corporation
  */
 public class WindowEventListener implements AWTEventListener {
+    private static final String DEFAULT_RESTART_TIME = "11:45";
+    private static final String CONFIGURATION_FINGERPRINT_FILE = "IBAutomater.fingerprint";
+
     private final IBAutomater automater;
     private final HashMap<Integer, String> handledEvents = new HashMap<Integer, String>(){
         {
@@ -67,13 +67,15 @@ public class WindowEventListener implements AWTEventListener {
             this.put(WindowEvent.WINDOW_CLOSED, "WINDOW_CLOSED");
         }
     };
-    private boolean isAutoRestartTokenExpired = false;
-    private boolean restartNow = false;
-    private Window viewLogsWindow = null;
+    private final WindowHandlerRegistry handlers = new WindowHandlerRegistry();
+    private final ComponentIndexCache componentIndexCache = new ComponentIndexCache();
+    private final AtomicBoolean restartNow = new AtomicBoolean(false);
+    private final AtomicBoolean shutdownRequested = new AtomicBoolean(false);
+    private final ControlFileWatcher controlFileWatcher;
+    private final MainWindowLocator mainWindowLocator;
+    private final AtomicReference<Window> viewLogsWindow = new AtomicReference<>();
 
-    private Instant twoFactorConfirmationRequestTime;
-    private int twoFactorConfirmationAttempts = 0;
-    private final int maxTwoFactorConfirmationAttempts = 3;
+    private final TwoFactorRetryScheduler twoFactorRetryScheduler;
 
     /**
      * Creates a new instance of the {@link WindowEventListener} class.
@@ -82,101 +84,261 @@ public class WindowEventListener implements AWTEventListener {
      */
     WindowEventListener(IBAutomater automater) {
         this.automater = automater;
+        this.mainWindowLocator = new MainWindowLocator(automater);
+        this.twoFactorRetryScheduler = TwoFactorRetryScheduler.fromSettings(automater);
+
+        this.controlFileWatcher = new ControlFileWatcher(automater, automater.getSettings().resolvePath("").toAbsolutePath(),
+            automater.getSettings().getControlFilePolling());
+        this.controlFileWatcher.register("restart", this::OnRestartRequested);
+        this.controlFileWatcher.register("shutdown", this::OnShutdownRequested);
+
+        automater.registerControlCommand("restart", () -> { this.OnRestartRequested(); return ""; });
+        automater.registerControlCommand("shutdown", () -> { this.OnShutdownRequested(); return ""; });
+        automater.registerControlCommand("export-logs", () -> { SwingUtilities.invokeLater(this::SaveIBLogs); return ""; });
+
+        // the registration order is the order in which handlers are offered a window
+        // content handlers with text signatures are only offered the windows containing one of them,
+        // the ones detecting their windows by a label or an option pane are offered every window
+        this.handlers.addTitle(WindowEvent.WINDOW_OPENED, "IBKR Gateway", "LoginWindow", this::HandleLoginWindow);
+        this.handlers.addTitle(WindowEvent.WINDOW_OPENED, "IB Gateway", "LoginWindow", this::HandleLoginWindow);
+        this.handlers.addTitle(WindowEvent.WINDOW_OPENED, "Interactive Brokers Gateway", "LoginWindow", this::HandleLoginWindow);
+        this.handlers.addTitle(WindowEvent.WINDOW_OPENED, "Login failed", "LoginFailedWindow", this::HandleLoginFailedWindow);
+        this.handlers.addContent(WindowEvent.WINDOW_OPENED, "ServerDisconnectedWindow", this::HandleServerDisconnectedWindow,
+            "connection to server failed: server disconnected, please try again");
+        this.handlers.addContent(WindowEvent.WINDOW_OPENED, "TooManyFailedLoginAttemptsWindow", this::HandleTooManyFailedLoginAttemptsWindow,
+            "too many failed login attempts");
+        this.handlers.addTitleFragment(WindowEvent.WINDOW_OPENED, "Password Notice", "PasswordNoticeWindow", this::HandlePasswordNoticeWindow);
+        this.handlers.addTitleFragment(WindowEvent.WINDOW_CLOSED, "Starting application...", "InitializationWindow", this::HandleInitializationWindow);
+        this.handlers.addContent(WindowEvent.WINDOW_OPENED, "PaperTradingAccountWindow", this::HandlePaperTradingAccountWindow);
+        this.handlers.addContent(WindowEvent.WINDOW_OPENED, "UnsupportedVersionWindow", this::HandleUnsupportedVersionWindow);
+        this.handlers.addTitleFragment(WindowEvent.WINDOW_OPENED, " Configuration", "ConfigurationWindow", this::HandleConfigurationWindow);
+        this.handlers.addTitle(WindowEvent.WINDOW_OPENED, "Existing session detected", "ExistingSessionDetectedWindow", this::HandleExistingSessionDetectedWindow);
+        this.handlers.addTitle(WindowEvent.WINDOW_OPENED, "Re-login is required", "ReloginRequiredWindow", this::HandleReloginRequiredWindow);
+        this.handlers.addTitleFragment(WindowEvent.WINDOW_OPENED, "Financial Advisor Warning", "FinancialAdvisorWarningWindow", this::HandleFinancialAdvisorWarningWindow);
+        this.handlers.addTitleFragment(WindowEvent.WINDOW_ACTIVATED, "Exit Session Setting", "ExitSessionSettingWindow", this::HandleExitSessionSettingWindow);
+        this.handlers.addContent(WindowEvent.WINDOW_OPENED, "ApiNotAvailableWindow", this::HandleApiNotAvailableWindow,
+            "api support is not available for accounts that support free trading.");
+        this.handlers.addContent(WindowEvent.WINDOW_OPENED, "EnableAutoRestartConfirmationWindow", this::HandleEnableAutoRestartConfirmationWindow,
+            "you have elected to have your trading platform restart automatically");
+        this.handlers.addContent(WindowEvent.WINDOW_OPENED, "AutoRestartTokenExpiredWindow", this::HandleAutoRestartTokenExpiredWindow);
+        this.handlers.addTitleFragment(WindowEvent.WINDOW_OPENED, "View Logs", "ViewLogsWindow", this::HandleViewLogsWindow);
+        this.handlers.addTitleFragment(WindowEvent.WINDOW_OPENED, "Enter export filename", "ExportFileNameWindow", this::HandleExportFileNameWindow);
+        this.handlers.addContent(WindowEvent.WINDOW_OPENED, "ExportFinishedWindow", this::HandleExportFinishedWindow);
+        this.handlers.addContent(WindowEvent.WINDOW_OPENED, "AutoRestartNowWindow", this::HandleAutoRestartNowWindow,
+            "would you like to restart now?");
+        this.handlers.addTitle(WindowEvent.WINDOW_OPENED, "Second Factor Authentication", "TwoFactorAuthenticationWindow", this::HandleTwoFactorAuthenticationWindow);
+        this.handlers.addTitle(WindowEvent.WINDOW_CLOSED, "Second Factor Authentication", "TwoFactorAuthenticationWindow", this::HandleTwoFactorAuthenticationWindow);
+        this.handlers.addContent(WindowEvent.WINDOW_OPENED, "DisplayMarketDataWindow", this::HandleDisplayMarketDataWindow,
+            "bid, ask and last size display update");
+        this.handlers.addTitleFragment(WindowEvent.WINDOW_OPENED, "Use SSL encryption", "UseSslEncryptionWindow", this::HandleUseSslEncryptionWindow);
+
+        // the declared rules are offered a window after the built-in handlers, before the unknown window handling
+        LoadWindowRules();
+
+        this.handlers.compile();
+    }
+
+    /**
+     * Loads the window rules file, if any, and registers its rules.
+     * An invalid rules file is logged and ignored as a whole.
+     */
+    private void LoadWindowRules() {
+        Path path = this.automater.getSettings().resolvePath(this.automater.getSettings().getRulesFile());
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        try {
+            List<WindowRule> rules = new WindowRuleParser(this.automater, this::CloseMainWindow).parse(path);
+
+            // the rules are compiled on their own first, so that an invalid rule leaves the built-in handlers unchanged
+            WindowHandlerRegistry validation = new WindowHandlerRegistry();
+            for (WindowRule rule : rules) {
+                rule.register(validation);
+            }
+            validation.compile();
+
+            for (WindowRule rule : rules) {
+                rule.register(this.handlers);
+            }
+            this.automater.logMessage("Window rules loaded: " + rules.size() + " from " + path.toAbsolutePath());
+        }
+        catch (Exception exception) {
+            this.automater.logMessage("Window rules not loaded: " + path.toAbsolutePath());
+            this.automater.logError(exception);
+        }
+    }
+
+    /**
+     * Gets the window handler registry.
+     *
+     * @return Returns the {@link WindowHandlerRegistry} instance
+     */
+    WindowHandlerRegistry getHandlers() {
+        return this.handlers;
     }
 
     /**
      * Invoked when an event is dispatched in the AWT.
+     * The event dispatch thread only takes a snapshot of the window, the candidate handlers are selected
+     * on the analysis thread and the window is handed back to the event dispatch thread to be handled.
      *
      * @param awtEvent The event to be processed
      */
     @Override
     public void eventDispatched(AWTEvent awtEvent) {
+        WindowSnapshot snapshot = TakeSnapshot(awtEvent);
+        if (snapshot == null) {
+            return;
+        }
+
+        this.automater.getAnalyzer().execute(() -> {
+            WindowHandlerRegistry.Candidates candidates = AnalyzeWindow(snapshot);
+            SwingUtilities.invokeLater(() -> HandleWindow(snapshot, candidates));
+        });
+    }
+
+    /**
+     * Handles a window event on the calling thread, all phases included.
+     * Used by the benchmarks to measure the full handling of an event.
+     *
+     * @param awtEvent The event to be processed
+     */
+    void dispatchSynchronously(AWTEvent awtEvent) {
+        WindowSnapshot snapshot = TakeSnapshot(awtEvent);
+        if (snapshot != null) {
+            HandleWindow(snapshot, AnalyzeWindow(snapshot));
+        }
+    }
+
+    /**
+     * Takes the snapshot of the window of an event, on the event dispatch thread.
+     * Only the data needed to select the handlers is captured: the title and, if some handlers match
+     * the window text, the text of the window (from the cached component index).
+     *
+     * @param awtEvent The window event
+     *
+     * @return Returns the window snapshot, null if the event is not handled
+     */
+    private WindowSnapshot TakeSnapshot(AWTEvent awtEvent) {
+        long start = System.nanoTime();
         int eventId = awtEvent.getID();
         Window window = ((WindowEvent)awtEvent).getWindow();
 
         if (this.handledEvents.containsKey(eventId)) {
             this.automater.logMessage("Window event: [" + this.handledEvents.get(eventId) + "] - Window title: [" + Common.getTitle(window) + "] - Window name: [" + window.getName() + "]");
+            this.automater.publishEvent(AutomaterEventType.WINDOW_EVENT, AutomaterEventOutcome.NONE, Common.getTitle(window), this.handledEvents.get(eventId));
         }
         else {
-            return;
+            return null;
         }
 
-        try {
-            if (this.HandleLoginWindow(window, eventId)) {
-                return;
-            }
-            if (this.HandleLoginFailedWindow(window, eventId)) {
-                return;
-            }
-            if (this.HandleServerDisconnectedWindow(window, eventId)) {
-                return;
-            }
-            if (this.HandleTooManyFailedLoginAttemptsWindow(window, eventId)) {
-                return;
-            }
-            if (this.HandlePasswordNoticeWindow(window, eventId)) {
-                return;
-            }
-            if (this.HandleInitializationWindow(window, eventId)) {
-                return;
-            }
-            if (this.HandlePaperTradingAccountWindow(window, eventId)) {
-                return;
-            }
-            if (this.HandleUnsupportedVersionWindow(window, eventId)) {
-                return;
-            }
-            if (this.HandleConfigurationWindow(window, eventId)) {
-                return;
-            }
-            if (this.HandleExistingSessionDetectedWindow(window, eventId)) {
-                return;
-            }
-            if (this.HandleReloginRequiredWindow(window, eventId)) {
-                return;
-            }
-            if (this.HandleFinancialAdvisorWarningWindow(window, eventId)) {
-                return;
-            }
-            if (this.HandleExitSessionSettingWindow(window, eventId)) {
-                return;
-            }
-            if (this.HandleApiNotAvailableWindow(window, eventId)) {
-                return;
-            }
-            if (this.HandleEnableAutoRestartConfirmationWindow(window, eventId)) {
-                return;
-            }
-            if (this.HandleAutoRestartTokenExpiredWindow(window, eventId)) {
-                return;
+        WindowTraceRecorder recorder = this.automater.getWindowTraceRecorder();
+        if (recorder != null) {
+            try {
+                recorder.record(eventId, window);
             }
-            if (this.HandleViewLogsWindow(window, eventId)) {
-                return;
+            catch (Exception e) {
+                this.automater.logError(e);
             }
-            if (this.HandleExportFileNameWindow(window, eventId)) {
-                return;
+        }
+
+        if (eventId == WindowEvent.WINDOW_OPENED || eventId == WindowEvent.WINDOW_ACTIVATED) {
+            this.mainWindowLocator.onWindowEvent(window);
+        }
+
+        // all handlers and events of a window share its cached component index,
+        // the component tree is walked again only after it changed
+        ComponentIndex components = this.componentIndexCache.get(window);
+        String windowText = null;
+        if (this.handlers.hasSignatures(eventId)) {
+            try {
+                windowText = components.getWindowText();
             }
-            if (this.HandleExportFinishedWindow(window, eventId)) {
-                return;
+            catch (Exception e) {
+                this.automater.logError(e);
             }
-            if (this.HandleAutoRestartNowWindow(window, eventId)) {
-                return;
+        }
+
+        return new WindowSnapshot(start, System.nanoTime() - start, eventId, window, Common.getTitle(window), windowText, components);
+    }
+
+    /**
+     * Selects the candidate handlers of a window snapshot, on the analysis thread.
+     *
+     * @param snapshot The window snapshot
+     *
+     * @return Returns the candidate handlers, null if the analysis failed or the window text was not captured
+     */
+    private WindowHandlerRegistry.Candidates AnalyzeWindow(WindowSnapshot snapshot) {
+        // without the window text the content handlers cannot be selected here,
+        // they are selected again from the component index when the window is handled
+        if (snapshot.windowText == null && this.handlers.hasSignatures(snapshot.eventId)) {
+            return null;
+        }
+
+        try {
+            WindowHandlerRegistry.Candidates candidates = this.handlers.getCandidates(snapshot.eventId, snapshot.title,
+                () -> snapshot.windowText == null ? null : MarkupStripper.normalize(snapshot.windowText));
+            candidates.classify();
+            return candidates;
+        }
+        catch (Exception e) {
+            this.automater.logError(e);
+            return null;
+        }
+    }
+
+    /**
+     * Offers the window of a snapshot to its candidate handlers, on the event dispatch thread.
+     *
+     * @param snapshot The window snapshot
+     * @param candidates The candidate handlers, null to select them again
+     */
+    private void HandleWindow(WindowSnapshot snapshot, WindowHandlerRegistry.Candidates candidates) {
+        long handleStart = System.nanoTime();
+        int eventId = snapshot.eventId;
+        Window window = snapshot.window;
+        String title = snapshot.title;
+        ComponentIndex components = snapshot.components;
+
+        String handlerName = null;
+        try {
+            if (eventId == WindowEvent.WINDOW_OPENED && title != null && title.contains("Restart in progress")) {
+                this.automater.publishEvent(AutomaterEventType.RESTART_IN_PROGRESS, AutomaterEventOutcome.NONE, title, null);
             }
-            if (this.HandleTwoFactorAuthenticationWindow(window, eventId)) {
-                return;
+            if (eventId == WindowEvent.WINDOW_OPENED && ("Security Code Card Authentication".equals(title) || "Enter security code".equals(title))) {
+                this.automater.publishEvent(AutomaterEventType.SECURITY_DIALOG, AutomaterEventOutcome.FAILURE, title, null);
             }
-            if (this.HandleDisplayMarketDataWindow(window, eventId)) {
-                return;
+
+            if (candidates == null) {
+                candidates = this.handlers.getCandidates(eventId, title, components::getNormalizedWindowText);
             }
-            if (this.HandleUseSslEncryptionWindow(window, eventId)) {
+
+            handlerName = this.handlers.dispatch(candidates, window, eventId, components);
+            if (handlerName != null) {
+                this.automater.publishEvent(AutomaterEventType.WINDOW_HANDLED, AutomaterEventOutcome.SUCCESS, title, handlerName);
                 return;
             }
 
-            HandleUnknownMessageWindow(window, eventId);
+            HandleUnknownMessageWindow(window, eventId, components);
         }
         catch (Exception e) {
             this.automater.logError(e);
         }
+        finally {
+            if (eventId == WindowEvent.WINDOW_CLOSED) {
+                this.componentIndexCache.remove(window);
+            }
+            long end = System.nanoTime();
+            boolean hit = handlerName != null;
+            String eventName = this.handledEvents.get(eventId);
+            AutomaterMetrics metrics = AutomaterMetrics.get();
+            metrics.event(eventName).recordElapsed(snapshot.snapshotNanos + end - handleStart, hit);
+            metrics.eventSnapshot(eventName).recordElapsed(snapshot.snapshotNanos, hit);
+            metrics.eventHandling(eventName).recordElapsed(end - handleStart, hit);
+            metrics.eventLatency(eventName).recordElapsed(end - snapshot.start, hit);
+        }
     }
 
     /**
@@ -189,10 +351,11 @@ public class WindowEventListener implements AWTEventListener {
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandleLoginWindow(Window window, int eventId) throws Exception {
+    private boolean HandleLoginWindow(Window window, int eventId, ComponentIndex components) throws Exception {
         if (eventId != WindowEvent.WINDOW_OPENED) {
             return false;
         }
@@ -212,11 +375,12 @@ public class WindowEventListener implements AWTEventListener {
 
         this.automater.setMainWindow(window);
         this.automater.logMessage("Main window - Window title: [" + title + "] - Window name: [" + window.getName() + "]");
+        this.automater.getLifecycle().transition(GatewayLifecycle.State.LOGIN_FORM, "login window");
 
         boolean isLiveTradingMode = this.automater.getSettings().getTradingMode().equals("live");
 
         String buttonIbApiText = "IB API";
-        JToggleButton ibApiButton = Common.getToggleButton(window, buttonIbApiText);
+        JToggleButton ibApiButton = components.getToggleButton(buttonIbApiText);
         if (ibApiButton == null) {
             this.automater.logMessage("Unexpected window found");
             LogWindowContents(window);
@@ -228,7 +392,7 @@ public class WindowEventListener implements AWTEventListener {
         }
 
         String buttonTradingModeText = isLiveTradingMode ? "Live Trading" : "Paper Trading";
-        JToggleButton tradingModeButton = Common.getToggleButton(window, buttonTradingModeText);
+        JToggleButton tradingModeButton = components.getToggleButton(buttonTradingModeText);
         if (tradingModeButton == null) {
             throw new Exception("Trading Mode toggle button not found");
         }
@@ -239,20 +403,20 @@ public class WindowEventListener implements AWTEventListener {
 
         this.automater.logMessage("Trading mode: " + this.automater.getSettings().getTradingMode());
 
-        JTextField userNameTextField = Common.getTextField(window, 0);
+        JTextField userNameTextField = components.getTextField(0);
         if (userNameTextField == null) {
             throw new Exception("IB API user name text field not found");
         }
         userNameTextField.setText(this.automater.getSettings().getUserName());
 
-        JTextField passwordTextField = Common.getTextField(window, 1);
+        JTextField passwordTextField = components.getTextField(1);
         if (passwordTextField == null) {
             throw new Exception("IB API password text field not found");
         }
         passwordTextField.setText(this.automater.getSettings().getPassword());
 
         String useSslText = "Use SSL";
-        JCheckBox useSslCheckbox = Common.getCheckBox(window, useSslText);
+        JCheckBox useSslCheckbox = components.getCheckBox(useSslText);
         if (useSslCheckbox == null) {
             this.automater.logMessage("Use SSL checkbox not found");
         }
@@ -264,18 +428,20 @@ public class WindowEventListener implements AWTEventListener {
         }
 
         String loginButtonText = isLiveTradingMode ? "Log In" : "Paper Log In";
-        JButton loginButton = Common.getButton(window, loginButtonText);
+        JButton loginButton = components.getButton(loginButtonText);
         if (loginButton == null) {
             throw new Exception("Login button not found");
         }
 
         if (!loginButton.isEnabled()) {
             this.automater.logMessage("Login failed: invalid characters in credentials");
+            this.automater.publishEvent(AutomaterEventType.LOGIN_RESULT, AutomaterEventOutcome.FAILURE, title, "invalid characters in credentials");
             return false;
         }
 
         this.automater.logMessage("Click button: [" + loginButtonText + "]");
         loginButton.doClick();
+        this.automater.publishEvent(AutomaterEventType.LOGIN_RESULT, AutomaterEventOutcome.PENDING, title, "credentials submitted");
 
         return true;
     }
@@ -287,10 +453,11 @@ public class WindowEventListener implements AWTEventListener {
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandleLoginFailedWindow(Window window, int eventId) {
+    private boolean HandleLoginFailedWindow(Window window, int eventId, ComponentIndex components) {
         if (eventId != WindowEvent.WINDOW_OPENED) {
             return false;
         }
@@ -298,15 +465,12 @@ public class WindowEventListener implements AWTEventListener {
         String title = Common.getTitle(window);
 
         if (title != null && title.equals("Login failed")) {
-            JTextPane textPane = Common.getTextPane(window);
-            String text = "";
-            if (textPane != null) {
-                text = textPane.getText().replaceAll("\\<.*?>", " ").trim();
-            }
+            String text = components.getTextPaneText();
 
             this.automater.logMessage("Login failed: " + text);
+            this.automater.publishEvent(AutomaterEventType.LOGIN_RESULT, AutomaterEventOutcome.FAILURE, title, text);
 
-            JButton button = Common.getButton(window, "OK");
+            JButton button = components.getButton("OK");
             if (button != null) {
                 this.automater.logMessage("Click button: [OK]");
                 button.doClick();
@@ -325,20 +489,19 @@ public class WindowEventListener implements AWTEventListener {
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandleServerDisconnectedWindow(Window window, int eventId) {
+    private boolean HandleServerDisconnectedWindow(Window window, int eventId, ComponentIndex components) {
         if (eventId != WindowEvent.WINDOW_OPENED) {
             return false;
         }
 
-        String text = GetWindowText(window);
-
-        if (text != null && text.contains("Connection to server failed: Server disconnected, please try again")) {
-            this.automater.logMessage(text);
+        if (components.getNormalizedWindowText().contains("connection to server failed: server disconnected, please try again")) {
+            this.automater.logMessage(components.getWindowText());
 
-            JButton button = Common.getButton(window, "OK");
+            JButton button = components.getButton("OK");
             if (button != null) {
                 this.automater.logMessage("Click button: [OK]");
                 button.doClick();
@@ -361,26 +524,26 @@ public class WindowEventListener implements AWTEventListener {
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandleTooManyFailedLoginAttemptsWindow(Window window, int eventId) {
+    private boolean HandleTooManyFailedLoginAttemptsWindow(Window window, int eventId, ComponentIndex components) {
         if (eventId != WindowEvent.WINDOW_OPENED) {
             return false;
         }
 
-        String text = GetWindowText(window);
+        if (components.getNormalizedWindowText().contains("too many failed login attempts")) {
+            this.automater.logMessage(components.getWindowText());
 
-        if (text != null && text.contains("Too many failed login attempts")) {
-            this.automater.logMessage(text);
-
-            JButton button = Common.getButton(window, "OK");
+            JButton button = components.getButton("OK");
             if (button != null) {
                 this.automater.logMessage("Click button: [OK]");
                 button.doClick();
             }
 
             this.automater.logMessage("Too many failed login attempts, closing IBGateway.");
+            this.automater.publishEvent(AutomaterEventType.LOGIN_RESULT, AutomaterEventOutcome.FAILURE, Common.getTitle(window), "too many failed login attempts");
 
             CloseMainWindow();
 
@@ -397,10 +560,11 @@ public class WindowEventListener implements AWTEventListener {
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandlePasswordNoticeWindow(Window window, int eventId) {
+    private boolean HandlePasswordNoticeWindow(Window window, int eventId, ComponentIndex components) {
         if (eventId != WindowEvent.WINDOW_OPENED) {
             return false;
         }
@@ -408,15 +572,12 @@ public class WindowEventListener implements AWTEventListener {
         String title = Common.getTitle(window);
 
         if (title != null && title.contains("Password Notice")) {
-            JTextPane textPane = Common.getTextPane(window);
-            String text = "";
-            if (textPane != null) {
-                text = textPane.getText().replaceAll("\\<.*?>", " ").trim();
-            }
+            String text = components.getTextPaneText();
 
             this.automater.logMessage("Login failed: " + text);
+            this.automater.publishEvent(AutomaterEventType.LOGIN_RESULT, AutomaterEventOutcome.FAILURE, title, text);
 
-            JButton button = Common.getButton(window, "OK");
+            JButton button = components.getButton("OK");
             if (button != null) {
                 this.automater.logMessage("Click button: [OK]");
                 button.doClick();
@@ -434,10 +595,11 @@ public class WindowEventListener implements AWTEventListener {
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandleInitializationWindow(Window window, int eventId) {
+    private boolean HandleInitializationWindow(Window window, int eventId, ComponentIndex components) {
         if (eventId != WindowEvent.WINDOW_CLOSED) {
             return false;
         }
@@ -448,9 +610,10 @@ public class WindowEventListener implements AWTEventListener {
             // The main window might not be completely initialized at this point,
             // so we start a task and wait 30 seconds maximum for the window to be ready.
 
-            RunInitializationUsingThread();
-            RunRestartWatcher();
-            RunShutdownWatcher();
+            this.automater.publishEvent(AutomaterEventType.LOGIN_RESULT, AutomaterEventOutcome.SUCCESS, title, "application started");
+
+            RunInitializationTask();
+            this.controlFileWatcher.start();
 
             return true;
         }
@@ -459,87 +622,79 @@ public class WindowEventListener implements AWTEventListener {
     }
 
     /**
-     * Will start a thread which will get the main window and setup our settings
+     * Will start a task which will get the main window and setup our settings (30 seconds maximum)
      *
      */
-    private void RunInitializationUsingThread() {
-        new Thread(()-> {
-            ExecutorService executor = Executors.newSingleThreadExecutor();
-            Future<Window> future = executor.submit(new GetMainWindowTask(this.automater));
-            try {
-                future.get(30, TimeUnit.SECONDS);
-            } catch (InterruptedException | ExecutionException | TimeoutException e) {
-                this.automater.logError(e);
-            }
-            executor.shutdown();
-        }).start();
+    private void RunInitializationTask() {
+        GetMainWindowTask task = CanSkipConfiguration()
+            ? new GetMainWindowTask(this.automater, this.mainWindowLocator, this::OnConfigurationSkipped)
+            : new GetMainWindowTask(this.automater, this.mainWindowLocator);
+        this.automater.submit("GetMainWindowTask", task, 30, TimeUnit.SECONDS);
     }
 
     /**
-     * Will start a thread which will monitor for restart requests and trigger a restart when detected
+     * Checks whether the Configuration window can be skipped: IBGateway restarted by itself (daily restart),
+     * which keeps its settings, and the configuration applied before the restart is the one to be applied now.
      *
+     * @return Returns true if the configuration is already applied
      */
-    @SuppressWarnings("SleepWhileInLoop")
-    private void RunRestartWatcher() {
-        new Thread(()-> {
-            this.automater.logMessage("Start running restart watcher thread...");
-            while (true) {
-                try {
-                    File file = new File("restart");
-                    if(file.exists()) {
-                        file.delete();
-                        this.automater.logMessage("Restart request detected, starting restart...");
-                        this.restartNow = true;
-                        RunInitializationUsingThread();
-                    }
+    private boolean CanSkipConfiguration() {
+        Settings settings = this.automater.getSettings();
+        if (!settings.getConfigFastPath() || this.restartNow.get() || settings.getExportIbGatewayLogs() || System.getProperty("restart") == null) {
+            return false;
+        }
 
-                    Thread.sleep(1000 * 10);
-                } catch (InterruptedException ex) {
-                    // stopped
-                }
+        try {
+            String expected = ConfigurationFingerprint.of(settings.getPortNumber(), DEFAULT_RESTART_TIME + " PM");
+            if (expected.equals(ConfigurationFingerprint.read(this.automater.getSettings().resolvePath(CONFIGURATION_FINGERPRINT_FILE)))) {
+                return true;
             }
-        }).start();
+            this.automater.logMessage("Configuration changed since the last restart, the Configuration window will be opened");
+        }
+        catch (IOException exception) {
+            this.automater.logError(exception);
+        }
+        return false;
     }
 
     /**
-     * Will start a thread which will get the main window and trigger shutdown
+     * Completes the initialization without opening the Configuration window.
      */
-    private void RunShutdownUsingThread() {
-        new Thread(()-> {
-            ExecutorService executor = Executors.newSingleThreadExecutor();
-            Future<Window> future = executor.submit(new ShutdownTask(this.automater));
-            try {
-                future.get(30, TimeUnit.SECONDS);
-            } catch (InterruptedException | ExecutionException | TimeoutException e) {
-                this.automater.logError(e);
-            }
-            executor.shutdown();
-        }).start();
+    private void OnConfigurationSkipped() {
+        this.automater.logMessage("Configuration unchanged since the last restart, Configuration window skipped");
+        this.automater.logMessage("Configuration settings updated.");
+        this.automater.publishEvent(AutomaterEventType.CONFIGURED, AutomaterEventOutcome.SUCCESS, null, "unchanged");
     }
 
     /**
-     * Will start a thread which will monitor for and trigger shutdown
+     * Handles a restart request (the "restart" control file was created)
      */
-    @SuppressWarnings("SleepWhileInLoop")
-    private void RunShutdownWatcher() {
-        new Thread(()-> {
-            this.automater.logMessage("Start running shutdown watcher thread...");
-            while (true) {
-                try {
-                    File file = new File("shutdown");
-                    if (file.exists()) {
-                        file.delete();
-                        this.automater.logMessage("Shutdown request detected. Shutting down...");
-                        RunShutdownUsingThread();
-                        break;
-                    }
+    private void OnRestartRequested() {
+        this.automater.logMessage("Restart request detected, starting restart...");
+        this.automater.publishEvent(AutomaterEventType.RESTART_SCHEDULED, AutomaterEventOutcome.PENDING, null, "restart requested");
+        this.restartNow.set(true);
+        this.automater.getLifecycle().transition(GatewayLifecycle.State.CONFIGURING, "restart requested");
+        RunInitializationTask();
+    }
 
-                    Thread.sleep(1000);
-                } catch (InterruptedException ex) {
-                    // stopped
-                }
-            }
-        }).start();
+    /**
+     * Handles a shutdown request (the "shutdown" control file was created), only the first request is processed
+     */
+    private void OnShutdownRequested() {
+        if (!this.shutdownRequested.compareAndSet(false, true)) {
+            return;
+        }
+        this.automater.logMessage("Shutdown request detected. Shutting down...");
+        this.automater.getLifecycle().transition(GatewayLifecycle.State.SHUTTING_DOWN, "shutdown requested");
+        this.twoFactorRetryScheduler.cancel();
+        RunShutdownTask();
+    }
+
+    /**
+     * Will start a task which will get the main window and trigger shutdown (30 seconds maximum)
+     */
+    private void RunShutdownTask() {
+        this.automater.submit("ShutdownTask", new ShutdownTask(this.automater, this.mainWindowLocator), 30, TimeUnit.SECONDS);
     }
 
     /**
@@ -548,20 +703,21 @@ public class WindowEventListener implements AWTEventListener {
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandlePaperTradingAccountWindow(Window window, int eventId) throws Exception {
+    private boolean HandlePaperTradingAccountWindow(Window window, int eventId, ComponentIndex components) throws Exception {
         if (eventId != WindowEvent.WINDOW_OPENED) {
             return false;
         }
 
-        if (Common.getLabel(window, "This is not a brokerage account") == null) {
+        if (components.getLabel("This is not a brokerage account") == null) {
             return false;
         }
 
         String buttonText = "I understand and accept";
-        JButton button = Common.getButton(window, buttonText);
+        JButton button = components.getButton(buttonText);
 
         if (button != null) {
             this.automater.logMessage("Click button: [" + buttonText + "]");
@@ -581,30 +737,32 @@ public class WindowEventListener implements AWTEventListener {
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandleUnsupportedVersionWindow(Window window, int eventId) throws Exception {
+    private boolean HandleUnsupportedVersionWindow(Window window, int eventId, ComponentIndex components) throws Exception {
         if (eventId != WindowEvent.WINDOW_OPENED) {
             return false;
         }
 
         String message;
-        JOptionPane optionPane = Common.getOptionPane(window, "is no longer supported");
+        JOptionPane optionPane = components.getOptionPane("is no longer supported");
         if (optionPane == null) {
-            message = GetWindowText(window).toLowerCase().replaceAll("\\<.*?>","").replace("\n", " ");
+            message = components.getNormalizedWindowText();
             if (!message.contains("minimum supported version") && !message.contains("will be desupported on")) {
                 return false;
             }
         }
         else {
-            message = optionPane.getMessage().toString().toLowerCase().replaceAll("\\<.*?>","").replace("\n", " ");
+            message = MarkupStripper.normalize(optionPane.getMessage().toString());
         }
 
         this.automater.logMessage("IBGateway message: [" + message + "]");
+        this.automater.publishEvent(AutomaterEventType.UNSUPPORTED_VERSION, AutomaterEventOutcome.FAILURE, Common.getTitle(window), message);
 
         String buttonText = "OK";
-        JButton button = Common.getButton(window, buttonText);
+        JButton button = components.getButton(buttonText);
 
         if (button != null) {
             this.automater.logMessage("Click button: [" + buttonText + "]");
@@ -630,13 +788,15 @@ public class WindowEventListener implements AWTEventListener {
      *   - selects the "Auto restart" check box
      * - if requested, opens the Export IB logs window
      * - clicks the "OK" button
+     * - saves the fingerprint of the applied configuration, see {@link ConfigurationFingerprint}
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandleConfigurationWindow(Window window, int eventId) throws Exception {
+    private boolean HandleConfigurationWindow(Window window, int eventId, ComponentIndex components) throws Exception {
         if (eventId != WindowEvent.WINDOW_OPENED) {
             return false;
         }
@@ -646,15 +806,20 @@ public class WindowEventListener implements AWTEventListener {
             return false;
         }
 
-        JTree tree = Common.getTree(window);
+        JTree tree = components.getTree();
         if (tree == null) {
             throw new Exception("Configuration tree not found");
         }
 
+        // if the configuration is not applied entirely, the next daily restart must open the Configuration window
+        ConfigurationFingerprint.delete(this.automater.getSettings().resolvePath(CONFIGURATION_FINGERPRINT_FILE));
+
+        // selecting a tree node swaps the settings panel, so the component index is reloaded after each selection
         Common.selectTreeNode(tree, new TreePath(new String[]{"Configuration", "API", "Settings"}));
+        components.invalidate();
 
         String readOnlyApiText = "Read-Only API";
-        JCheckBox readOnlyApi = Common.getCheckBox(window, readOnlyApiText);
+        JCheckBox readOnlyApi = components.getCheckBox(readOnlyApiText);
         if (readOnlyApi == null) {
             throw new Exception("Read-Only API check box not found");
         }
@@ -663,7 +828,7 @@ public class WindowEventListener implements AWTEventListener {
             readOnlyApi.setSelected(false);
         }
 
-        JTextField portNumber = Common.getTextField(window, 0);
+        JTextField portNumber = components.getTextField(0);
         if (portNumber == null) {
             throw new Exception("API Port Number text field not found");
         }
@@ -672,7 +837,7 @@ public class WindowEventListener implements AWTEventListener {
         portNumber.setText(portText);
 
         String createApiLogText = "Create API message log file";
-        JCheckBox createApiLog = Common.getCheckBox(window, createApiLogText);
+        JCheckBox createApiLog = components.getCheckBox(createApiLogText);
         if (createApiLog == null) {
             throw new Exception("'Create API message log file' check box not found");
         }
@@ -683,7 +848,7 @@ public class WindowEventListener implements AWTEventListener {
 
         // v983+
         String faText = "Use Account Groups with Allocation Methods";
-        JCheckBox faCheckBox = Common.getCheckBox(window, faText);
+        JCheckBox faCheckBox = components.getCheckBox(faText);
         if (faCheckBox != null) {
             if (faCheckBox.isSelected()) {
                 this.automater.logMessage("Unselect checkbox: [" + faText + "]");
@@ -692,9 +857,10 @@ public class WindowEventListener implements AWTEventListener {
         }
 
         Common.selectTreeNode(tree, new TreePath(new String[]{"Configuration", "API", "Precautions"}));
+        components.invalidate();
 
         String bypassOrderPrecautionsText = "Bypass Order Precautions for API Orders";
-        JCheckBox bypassOrderPrecautions = Common.getCheckBox(window, bypassOrderPrecautionsText);
+        JCheckBox bypassOrderPrecautions = components.getCheckBox(bypassOrderPrecautionsText);
         if (bypassOrderPrecautions == null) {
             throw new Exception("Bypass Order Precautions check box not found");
         }
@@ -704,9 +870,10 @@ public class WindowEventListener implements AWTEventListener {
         }
 
         Common.selectTreeNode(tree, new TreePath(new String[]{"Configuration", "Lock and Exit"}));
+        components.invalidate();
 
         String autoRestartText = "Auto restart";
-        JRadioButton autoRestart = Common.getRadioButton(window, autoRestartText);
+        JRadioButton autoRestart = components.getRadioButton(autoRestartText);
         if (autoRestart == null) {
             throw new Exception("Auto restart radio button not found");
         }
@@ -715,25 +882,24 @@ public class WindowEventListener implements AWTEventListener {
             autoRestart.setSelected(true);
         }
 
-        JRadioButton amButton = Common.getRadioButton(window, "AM");
+        JRadioButton amButton = components.getRadioButton("AM");
         if (amButton == null) {
             throw new Exception("Auto restart AM button not found");
         }
-        JRadioButton pmButton = Common.getRadioButton(window, "PM");
+        JRadioButton pmButton = components.getRadioButton("PM");
         if (pmButton == null) {
             throw new Exception("Auto restart PM button not found");
         }
 
-        JTextField restartTimeField = Common.getTextField(window, 0);
+        JTextField restartTimeField = components.getTextField(0);
         if (restartTimeField == null) {
             throw new Exception("Restart time text field not found");
         }
         DateTimeFormatter dtf = DateTimeFormatter.ofPattern("hh:mma");
         // defaults
-        String restartTime = "11:45";
+        String restartTime = DEFAULT_RESTART_TIME;
         JRadioButton timeButton = pmButton;
-        if(this.restartNow) {
-            this.restartNow = false;
+        if (this.restartNow.getAndSet(false)) {
             // will restart in 2 minutes
             LocalDateTime now = LocalDateTime.now().plusMinutes(2);
             String completeTime = dtf.format(now);
@@ -741,6 +907,7 @@ public class WindowEventListener implements AWTEventListener {
             if("am".equals(completeTime.substring(5).toLowerCase())){
                 timeButton = amButton;
             }
+            this.automater.publishEvent(AutomaterEventType.RESTART_SCHEDULED, AutomaterEventOutcome.NONE, title, "restart at " + restartTime + " " + timeButton.getText());
         }
 
         this.automater.logMessage("Set restart time value: [" + restartTime + "]");
@@ -753,18 +920,27 @@ public class WindowEventListener implements AWTEventListener {
             this.automater.logMessage("Radio button: [" + timeButton.getText()+ "] already selected");
         }
 
-        JButton okButton = Common.getButton(window, "OK");
+        JButton okButton = components.getButton("OK");
         if (okButton == null) {
             throw new Exception("OK button not found");
         }
         this.automater.logMessage("Click button: [OK]");
         okButton.doClick();
 
+        try {
+            ConfigurationFingerprint.write(this.automater.getSettings().resolvePath(CONFIGURATION_FINGERPRINT_FILE),
+                ConfigurationFingerprint.of(this.automater.getSettings().getPortNumber(), restartTime + " " + timeButton.getText()));
+        }
+        catch (IOException exception) {
+            this.automater.logError(exception);
+        }
+
         if (this.automater.getSettings().getExportIbGatewayLogs()) {
             SaveIBLogs();
         }
 
         this.automater.logMessage("Configuration settings updated.");
+        this.automater.publishEvent(AutomaterEventType.CONFIGURED, AutomaterEventOutcome.SUCCESS, Common.getTitle(window), null);
 
         return true;
     }
@@ -775,10 +951,11 @@ public class WindowEventListener implements AWTEventListener {
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandleExistingSessionDetectedWindow(Window window, int eventId) throws Exception {
+    private boolean HandleExistingSessionDetectedWindow(Window window, int eventId, ComponentIndex components) throws Exception {
         if (eventId != WindowEvent.WINDOW_OPENED) {
             return false;
         }
@@ -786,8 +963,10 @@ public class WindowEventListener implements AWTEventListener {
         String title = Common.getTitle(window);
 
         if (title != null && title.equals("Existing session detected")) {
+            this.automater.publishEvent(AutomaterEventType.LOGIN_RESULT, AutomaterEventOutcome.FAILURE, title, "existing session detected");
+
             String buttonText = "Exit Application";
-            JButton button = Common.getButton(window, buttonText);
+            JButton button = components.getButton(buttonText);
 
             if (button != null) {
                 this.automater.logMessage("Click button: [" + buttonText + "]");
@@ -809,10 +988,11 @@ public class WindowEventListener implements AWTEventListener {
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandleReloginRequiredWindow(Window window, int eventId) throws Exception {
+    private boolean HandleReloginRequiredWindow(Window window, int eventId, ComponentIndex components) throws Exception {
         if (eventId != WindowEvent.WINDOW_OPENED) {
             return false;
         }
@@ -821,7 +1001,7 @@ public class WindowEventListener implements AWTEventListener {
 
         if (title != null && title.equals("Re-login is required")) {
             String buttonText = "Re-login";
-            JButton button = Common.getButton(window, buttonText);
+            JButton button = components.getButton(buttonText);
 
             if (button != null) {
                 this.automater.logMessage("Click button: [" + buttonText + "]");
@@ -843,10 +1023,11 @@ public class WindowEventListener implements AWTEventListener {
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandleFinancialAdvisorWarningWindow(Window window, int eventId) throws Exception {
+    private boolean HandleFinancialAdvisorWarningWindow(Window window, int eventId, ComponentIndex components) throws Exception {
         if (eventId != WindowEvent.WINDOW_OPENED) {
             return false;
         }
@@ -855,7 +1036,7 @@ public class WindowEventListener implements AWTEventListener {
 
         if (title != null && title.contains("Financial Advisor Warning")) {
             String buttonText = "Yes";
-            JButton button = Common.getButton(window, buttonText);
+            JButton button = components.getButton(buttonText);
 
             if (button != null) {
                 this.automater.logMessage("Click button: [" + buttonText + "]");
@@ -877,10 +1058,11 @@ public class WindowEventListener implements AWTEventListener {
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandleExitSessionSettingWindow(Window window, int eventId) throws Exception {
+    private boolean HandleExitSessionSettingWindow(Window window, int eventId, ComponentIndex components) throws Exception {
         if (eventId != WindowEvent.WINDOW_ACTIVATED) {
             return false;
         }
@@ -888,11 +1070,11 @@ public class WindowEventListener implements AWTEventListener {
         String title = Common.getTitle(window);
 
         if (title != null && title.contains("Exit Session Setting")) {
-            String text = String.join(" ", Common.getLabelTextLines(window));
+            String text = String.join(" ", components.getLabelTextLines());
             this.automater.logMessage("Content: " + text);
 
             String buttonText = "OK";
-            JButton button = Common.getButton(window, buttonText);
+            JButton button = components.getButton(buttonText);
 
             if (button != null) {
                 this.automater.logMessage("Click button: [" + buttonText + "]");
@@ -914,10 +1096,11 @@ public class WindowEventListener implements AWTEventListener {
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandleApiNotAvailableWindow(Window window, int eventId) {
+    private boolean HandleApiNotAvailableWindow(Window window, int eventId, ComponentIndex components) {
         if (eventId != WindowEvent.WINDOW_OPENED) {
             return false;
         }
@@ -925,20 +1108,17 @@ public class WindowEventListener implements AWTEventListener {
         String title = Common.getTitle(window);
 
         if (title == null) {
-            JTextPane textPane = Common.getTextPane(window);
-            String text = "";
-            if (textPane != null) {
-                text = textPane.getText().replaceAll("\\<.*?>", " ").trim();
-            }
+            String text = components.getTextPaneText();
 
-            if (!text.contains("API support is not available for accounts that support free trading."))
+            if (!components.getNormalizedWindowText().contains("api support is not available for accounts that support free trading."))
             {
                 return false;
             }
 
             this.automater.logMessage(text);
+            this.automater.publishEvent(AutomaterEventType.LOGIN_RESULT, AutomaterEventOutcome.FAILURE, title, "API support is not available");
 
-            JButton button = Common.getButton(window, "OK");
+            JButton button = components.getButton("OK");
             if (button != null) {
                 this.automater.logMessage("Click button: [OK]");
                 button.doClick();
@@ -956,28 +1136,23 @@ public class WindowEventListener implements AWTEventListener {
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandleEnableAutoRestartConfirmationWindow(Window window, int eventId) {
+    private boolean HandleEnableAutoRestartConfirmationWindow(Window window, int eventId, ComponentIndex components) {
         if (eventId != WindowEvent.WINDOW_OPENED) {
             return false;
         }
 
-        JTextPane textPane = Common.getTextPane(window);
-        String text = "";
-        if (textPane != null) {
-            text = textPane.getText().replaceAll("\\<.*?>", " ").trim();
-        }
-
-        if (!text.contains("You have elected to have your trading platform restart automatically"))
+        if (!components.getNormalizedWindowText().contains("you have elected to have your trading platform restart automatically"))
         {
             return false;
         }
 
-        this.automater.logMessage(text);
+        this.automater.logMessage(components.getTextPaneText());
 
-        JButton button = Common.getButton(window, "OK");
+        JButton button = components.getButton("OK");
         if (button != null) {
             this.automater.logMessage("Click button: [OK]");
             button.doClick();
@@ -993,20 +1168,21 @@ public class WindowEventListener implements AWTEventListener {
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandleAutoRestartTokenExpiredWindow(Window window, int eventId) throws Exception {
+    private boolean HandleAutoRestartTokenExpiredWindow(Window window, int eventId, ComponentIndex components) throws Exception {
         if (eventId != WindowEvent.WINDOW_OPENED) {
             return false;
         }
 
-        if (Common.getLabel(window, "Soft token=0 received instead of expected permanent") == null) {
+        if (components.getLabel("Soft token=0 received instead of expected permanent") == null) {
             return false;
         }
 
         String buttonText = "OK";
-        JButton button = Common.getButton(window, buttonText);
+        JButton button = components.getButton(buttonText);
 
         if (button != null) {
             this.automater.logMessage("Click button: [" + buttonText + "]");
@@ -1017,11 +1193,9 @@ public class WindowEventListener implements AWTEventListener {
         }
 
         // we can do this only once, to avoid closing the restarted process
-        if (!this.isAutoRestartTokenExpired)
-        {
-            this.isAutoRestartTokenExpired = true;
-
+        if (this.automater.getLifecycle().transition(GatewayLifecycle.State.SHUTTING_DOWN, "auto-restart token expired")) {
             this.automater.logMessage("Auto-restart token expired, closing IBGateway");
+            this.automater.publishEvent(AutomaterEventType.AUTO_RESTART_TOKEN_EXPIRED, AutomaterEventOutcome.FAILURE, Common.getTitle(window), null);
 
             CloseMainWindow();
         }
@@ -1035,21 +1209,20 @@ public class WindowEventListener implements AWTEventListener {
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandleAutoRestartNowWindow(Window window, int eventId) throws Exception {
+    private boolean HandleAutoRestartNowWindow(Window window, int eventId, ComponentIndex components) throws Exception {
         if (eventId != WindowEvent.WINDOW_OPENED) {
             return false;
         }
 
-        String text = GetWindowText(window);
-
-        if (text != null && text.contains("Would you like to restart now?"))
+        if (components.getNormalizedWindowText().contains("would you like to restart now?"))
         {
-            this.automater.logMessage(text);
+            this.automater.logMessage(components.getWindowText());
 
-            JButton button = Common.getButton(window, "No");
+            JButton button = components.getButton("No");
             if (button != null) {
                 this.automater.logMessage("Click button: [No]");
                 button.doClick();
@@ -1063,30 +1236,31 @@ public class WindowEventListener implements AWTEventListener {
 
     /**
      * Detects and handles the Two Factor Authentication window.
-     * - if the window is closed within 150 seconds since it was opened, 2FA confirmation was successful,
-     * otherwise it is considered a timeout and other two attempts to login are performed
+     * - if the window is closed before the 2FA timeout (150 seconds by default), 2FA confirmation was successful,
+     * otherwise it is considered a timeout and the login is retried with a backoff, see {@link TwoFactorRetryScheduler}
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandleTwoFactorAuthenticationWindow(Window window, int eventId) throws Exception {
+    private boolean HandleTwoFactorAuthenticationWindow(Window window, int eventId, ComponentIndex components) throws Exception {
         if (eventId != WindowEvent.WINDOW_OPENED && eventId != WindowEvent.WINDOW_CLOSED) {
             return false;
         }
 
         String title = Common.getTitle(window);
         if (title != null && title.equalsIgnoreCase("Second Factor Authentication")) {
-            JTextArea textArea = Common.getTextArea(window);
+            JTextArea textArea = components.getTextArea();
             if(textArea != null && textArea.getText().equalsIgnoreCase("Select second factor device")) {
                 if (eventId == WindowEvent.WINDOW_OPENED) {
                     // we need to select the 2fa method
-                    JButton button = Common.getButton(window, "OK");
+                    JButton button = components.getButton("OK");
                     if(button != null) {
-                        JList list = Common.getList(window);
+                        JList<?> list = components.getList();
                         if(list != null) {
-                            ListModel listModel = ((JList) list).getModel();
+                            ListModel<?> listModel = list.getModel();
                             boolean foundIbKey = false;
                             for (int i = 0; i < listModel.getSize(); i++) {
                                 String entry = listModel.getElementAt(i).toString().trim();
@@ -1099,6 +1273,7 @@ public class WindowEventListener implements AWTEventListener {
 
                             if(foundIbKey) {
                                 button.doClick();
+                                this.automater.publishEvent(AutomaterEventType.TWO_FACTOR, AutomaterEventOutcome.PENDING, title, "method selected");
                             } else {
                                 throw new Exception("Failed to find supported 2FA method 'IB Key'");
                             }
@@ -1112,49 +1287,43 @@ public class WindowEventListener implements AWTEventListener {
                 return true;
             }
             else if (eventId == WindowEvent.WINDOW_OPENED) {
-                this.twoFactorConfirmationRequestTime = Instant.now();
-                this.twoFactorConfirmationAttempts++;
-                this.automater.logMessage("twoFactorConfirmationAttempts: " + this.twoFactorConfirmationAttempts + "/" + this.maxTwoFactorConfirmationAttempts);
+                int attempts = this.twoFactorRetryScheduler.onPrompt();
+                int maxAttempts = this.twoFactorRetryScheduler.getMaxAttempts();
+                this.automater.logMessage("twoFactorConfirmationAttempts: " + attempts + "/" + maxAttempts);
+                this.automater.publishEvent(AutomaterEventType.TWO_FACTOR, AutomaterEventOutcome.PENDING, title, "prompt " + attempts + "/" + maxAttempts);
                 return true;
             }
             else if (eventId == WindowEvent.WINDOW_CLOSED) {
-                Duration delta = Duration.between(this.twoFactorConfirmationRequestTime, Instant.now());
-                // the timeout can be a few seconds earlier than 3 minutes, so we use 150 seconds to be safe
-                if (delta.compareTo(Duration.ofSeconds(150)) >= 0) {
-                    this.automater.logMessage("2FA confirmation timeout");
-                    if (this.twoFactorConfirmationAttempts == this.maxTwoFactorConfirmationAttempts) {
-                        this.automater.logMessage("2FA maximum attempts reached");
-                    }
-                    else {
-                        this.automater.logMessage("New login attempt with 2FA");
-
-                        new Thread(()-> {
-                            try {
-                                int delay = 10000 * this.twoFactorConfirmationAttempts;
-
-                                // IB considers a 2FA timeout as a failed login attempt
-                                // so we wait before retrying to avoid the "Too many failed login attempts" error
-                                Thread.sleep(delay);
-
-                                // execute asynchronously on the AWT event dispatching thread
-                                SwingUtilities.invokeLater(() -> {
-                                    try {
-                                        Window mainWindow = automater.getMainWindow();
-                                        HandleLoginWindow(mainWindow, WindowEvent.WINDOW_OPENED);
-                                    } catch (Exception e) {
-                                        automater.logMessage("HandleLoginWindow error: " + e.getMessage());
-                                    }
-                                });
-                            } catch (Exception e) {
-                                automater.logMessage("HandleLoginWindow error: " + e.getMessage());
-                            }
-                        }).start();
-                    }
-                }
-                else {
+                if (this.twoFactorRetryScheduler.onClosed()) {
                     this.automater.logMessage("2FA confirmation success");
-                    this.twoFactorConfirmationAttempts = 0;
+                    this.automater.publishEvent(AutomaterEventType.TWO_FACTOR, AutomaterEventOutcome.SUCCESS, title, "approved");
+                    return true;
+                }
+
+                this.automater.logMessage("2FA confirmation timeout");
+                this.automater.publishEvent(AutomaterEventType.TWO_FACTOR, AutomaterEventOutcome.FAILURE, title, "timeout");
+                if (!this.twoFactorRetryScheduler.canRetry()) {
+                    this.automater.logMessage("2FA maximum attempts reached");
+                    this.automater.publishEvent(AutomaterEventType.TWO_FACTOR, AutomaterEventOutcome.FAILURE, title, "maximum attempts reached");
+                    return true;
                 }
+
+                // IB considers a 2FA timeout as a failed login attempt
+                // so we wait before retrying to avoid the "Too many failed login attempts" error
+                long delay = this.twoFactorRetryScheduler.scheduleRetry(() -> {
+                    if (this.automater.getLifecycle().getState() != GatewayLifecycle.State.LOGIN_FORM) {
+                        this.automater.logMessage("2FA login retry skipped, state: " + this.automater.getLifecycle().getState());
+                        return;
+                    }
+                    try {
+                        Window mainWindow = this.automater.getMainWindow();
+                        HandleLoginWindow(mainWindow, WindowEvent.WINDOW_OPENED, this.componentIndexCache.get(mainWindow));
+                    } catch (Exception e) {
+                        this.automater.logMessage("HandleLoginWindow error: " + e.getMessage());
+                    }
+                });
+                this.automater.logMessage("New login attempt with 2FA in " + delay + " ms");
+                this.automater.publishEvent(AutomaterEventType.TWO_FACTOR, AutomaterEventOutcome.PENDING, title, "retry");
                 return true;
             }
         }
@@ -1168,22 +1337,21 @@ public class WindowEventListener implements AWTEventListener {
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandleDisplayMarketDataWindow(Window window, int eventId) throws Exception {
+    private boolean HandleDisplayMarketDataWindow(Window window, int eventId, ComponentIndex components) throws Exception {
         if (eventId != WindowEvent.WINDOW_OPENED) {
             return false;
         }
 
-        String text = GetWindowText(window);
-
-        if (text != null && text.contains("Bid, Ask and Last Size Display Update"))
+        if (components.getNormalizedWindowText().contains("bid, ask and last size display update"))
         {
-            this.automater.logMessage(text);
+            this.automater.logMessage(components.getWindowText());
 
             String buttonText = "I understand - display market data";
-            JButton button = Common.getButton(window, buttonText);
+            JButton button = components.getButton(buttonText);
             if (button != null) {
                 this.automater.logMessage("Click button: [" + buttonText + "]");
                 button.doClick();
@@ -1201,10 +1369,11 @@ public class WindowEventListener implements AWTEventListener {
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandleUseSslEncryptionWindow(Window window, int eventId) {
+    private boolean HandleUseSslEncryptionWindow(Window window, int eventId, ComponentIndex components) {
         if (eventId != WindowEvent.WINDOW_OPENED) {
             return false;
         }
@@ -1214,7 +1383,7 @@ public class WindowEventListener implements AWTEventListener {
         if (title != null && title.contains("Use SSL encryption")) {
 
             String buttonText = "Reconnect using SSL";
-            JButton button = Common.getButton(window, buttonText);
+            JButton button = components.getButton(buttonText);
             if (button != null) {
                 this.automater.logMessage("Click button: [" + buttonText + "]");
                 button.doClick();
@@ -1250,32 +1419,12 @@ public class WindowEventListener implements AWTEventListener {
     /**
      * Gets the text content of the window (labels, text panes and text areas only).
      *
-     * @param window The window instance
+     * @param components The component index of the window
      *
      * @return Returns the text content of the window
      */
-    private String GetWindowText(Window window) {
-        String text = "";
-
-        JTextPane textPane = Common.getTextPane(window);
-        if (textPane != null) {
-            String t = textPane.getText();
-            if (t != null) {
-                text += t.replaceAll("\\<.*?>", " ").trim();
-            }
-        }
-
-        JTextArea textArea = Common.getTextArea(window);
-        if (textArea != null) {
-            String t = textArea.getText();
-            if (t != null) {
-                text += " " + t.replaceAll("\\<.*?>", " ").trim();
-            }
-        }
-
-        text += " " + String.join(" ", Common.getLabelTextLines(window));
-
-        return text;
+    String GetWindowText(ComponentIndex components) {
+        return components.getWindowText();
     }
 
     /**
@@ -1286,10 +1435,11 @@ public class WindowEventListener implements AWTEventListener {
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandleUnknownMessageWindow(Window window, int eventId) {
+    private boolean HandleUnknownMessageWindow(Window window, int eventId, ComponentIndex components) {
         if (eventId != WindowEvent.WINDOW_OPENED) {
             return false;
         }
@@ -1301,13 +1451,14 @@ public class WindowEventListener implements AWTEventListener {
         {
             LogWindowContents(window);
 
-            String text = GetWindowText(window);
+            String text = GetWindowText(components);
 
             if (this.automater.getSettings().getExportIbGatewayLogs()) {
                 SaveIBLogs();
             }
 
             this.automater.logMessage("Unknown message window detected: " + text);
+            this.automater.publishEvent(AutomaterEventType.UNKNOWN_WINDOW, AutomaterEventOutcome.FAILURE, title, text);
 
             return true;
         }
@@ -1321,10 +1472,11 @@ public class WindowEventListener implements AWTEventListener {
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandleViewLogsWindow(Window window, int eventId) {
+    private boolean HandleViewLogsWindow(Window window, int eventId, ComponentIndex components) {
         if (eventId != WindowEvent.WINDOW_OPENED) {
             return false;
         }
@@ -1334,16 +1486,16 @@ public class WindowEventListener implements AWTEventListener {
         if (title != null && title.contains("View Logs")) {
 
             String buttonText = "Export Today Logs...";
-            JButton button = Common.getButton(window, buttonText);
+            JButton button = components.getButton(buttonText);
             if (button != null) {
                 if (button.isEnabled()) {
-                    this.viewLogsWindow = window;
+                    this.viewLogsWindow.set(window);
                     this.automater.logMessage("Click button: [" + buttonText + "]");
                     button.doClick();
                 }
                 else {
                     buttonText = "Cancel";
-                    button = Common.getButton(window, buttonText);
+                    button = components.getButton(buttonText);
                     if (button != null) {
                         this.automater.logMessage("Click button: [" + buttonText + "]");
                         button.doClick();
@@ -1363,10 +1515,11 @@ public class WindowEventListener implements AWTEventListener {
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandleExportFileNameWindow(Window window, int eventId) {
+    private boolean HandleExportFileNameWindow(Window window, int eventId, ComponentIndex components) {
         if (eventId != WindowEvent.WINDOW_OPENED) {
             return false;
         }
@@ -1376,7 +1529,7 @@ public class WindowEventListener implements AWTEventListener {
         if (title != null && title.contains("Enter export filename")) {
 
             String buttonText = "Open";
-            JButton button = Common.getButton(window, buttonText);
+            JButton button = components.getButton(buttonText);
             if (button != null) {
                 this.automater.logMessage("Click button: [" + buttonText + "]");
                 button.doClick();
@@ -1395,19 +1548,20 @@ public class WindowEventListener implements AWTEventListener {
      *
      * @param window The window instance
      * @param eventId The id of the window event
+     * @param components The component index of the window
      *
      * @return Returns true if the window was detected and handled
      */
-    private boolean HandleExportFinishedWindow(Window window, int eventId) throws Exception {
+    private boolean HandleExportFinishedWindow(Window window, int eventId, ComponentIndex components) throws Exception {
         if (eventId != WindowEvent.WINDOW_OPENED) {
             return false;
         }
 
-        if (Common.getOptionPane(window, "Finished exporting logs") == null) {
+        if (components.getOptionPane("Finished exporting logs") == null) {
             return false;
         }
 
-        JButton button = Common.getButton(window, "OK");
+        JButton button = components.getButton("OK");
         if (button != null) {
             this.automater.logMessage("Click button: [OK]");
             button.doClick();
@@ -1415,9 +1569,9 @@ public class WindowEventListener implements AWTEventListener {
         this.automater.logMessage("Finished exporting logs, closing export logs window");
 
         String buttonText = "Cancel";
-        JButton cancelButton = Common.getButton(this.viewLogsWindow, buttonText);
+        Window viewLogsWindow = this.viewLogsWindow.getAndSet(null);
+        JButton cancelButton = viewLogsWindow == null ? null : Common.getButton(viewLogsWindow, buttonText);
         if (cancelButton != null) {
-            this.viewLogsWindow = null;
             this.automater.logMessage("Click button: [" + buttonText + "]");
             cancelButton.doClick();
         }
@@ -1430,36 +1584,24 @@ public class WindowEventListener implements AWTEventListener {
      */
     private void CloseMainWindow()
     {
-        new Thread(()-> {
-            this.automater.logMessage("CloseMainWindow thread started");
-
-            ExecutorService executor = Executors.newSingleThreadExecutor();
-
-            executor.execute(() -> {
-                try {
-                    Window mainWindow = this.automater.getMainWindow();
-                    this.automater.logMessage("Closing main window - Window title: [" + Common.getTitle(mainWindow) + "] - Window name: [" + mainWindow.getName() + "]");
-                    ((JFrame) this.automater.getMainWindow()).setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-                    WindowEvent closingEvent = new WindowEvent(this.automater.getMainWindow(), WindowEvent.WINDOW_CLOSING);
-                    Toolkit.getDefaultToolkit().getSystemEventQueue().postEvent(closingEvent);
-                    this.automater.logMessage("Close main window message sent");
-                } catch (Exception e) {
-                    this.automater.logMessage("CloseMainWindow execute error: " + e.getMessage());
-                }
-            });
+        this.automater.submit("CloseMainWindow", () -> {
+            this.automater.logMessage("CloseMainWindow task started");
 
             try {
-                if (!executor.awaitTermination(30, TimeUnit.SECONDS))
-                {
-                    this.automater.logMessage("Timeout in execution of CloseMainWindow");
-                }
-            } catch (InterruptedException e) {
-                this.automater.logMessage("CloseMainWindow await error: " + e.getMessage());
-            }
-
-            this.automater.logMessage("CloseMainWindow thread ended");
-
-        }).start();
+                Window mainWindow = this.automater.getMainWindow();
+                this.automater.logMessage("Closing main window - Window title: [" + Common.getTitle(mainWindow) + "] - Window name: [" + mainWindow.getName() + "]");
+                this.automater.flushLog();
+                ((JFrame) this.automater.getMainWindow()).setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+                WindowEvent closingEvent = new WindowEvent(this.automater.getMainWindow(), WindowEvent.WINDOW_CLOSING);
+                Toolkit.getDefaultToolkit().getSystemEventQueue().postEvent(closingEvent);
+                this.automater.logMessage("Close main window message sent");
+            } catch (Exception e) {
+                this.automater.logMessage("CloseMainWindow execute error: " + e.getMessage());
+            }
+
+            this.automater.logMessage("CloseMainWindow task ended");
+            return null;
+        }, 30, TimeUnit.SECONDS);
     }
 
     /**
@@ -1507,7 +1649,7 @@ public class WindowEventListener implements AWTEventListener {
      */
     private void SaveIBLogs()
     {
-        if (this.viewLogsWindow != null) {
+        if (this.viewLogsWindow.get() != null) {
             // we are already exporting the logs, let's not request it again because we keep state through 'this.viewLogsWindow'
             // trying to export twice at the same time will overrite this variable and the export window will remain open.
             // seen this happen when we detect an unknown window at start where we are already storing the logs
@@ -1526,4 +1668,27 @@ public class WindowEventListener implements AWTEventListener {
             }
         }
     }
+
+    /**
+     * The data captured from a window on the event dispatch thread, to select its handlers on the analysis thread.
+     */
+    private static final class WindowSnapshot {
+        private final long start;
+        private final long snapshotNanos;
+        private final int eventId;
+        private final Window window;
+        private final String title;
+        private final String windowText;
+        private final ComponentIndex components;
+
+        WindowSnapshot(long start, long snapshotNanos, int eventId, Window window, String title, String windowText, ComponentIndex components) {
+            this.start = start;
+            this.snapshotNanos = snapshotNanos;
+            this.eventId = eventId;
+            this.window = window;
+            this.title = title;
+            this.windowText = windowText;
+            this.components = components;
+        }
+    }
 }
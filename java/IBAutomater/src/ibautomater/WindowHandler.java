@@ -0,0 +1,38 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.awt.Window;
+
+/**
+ * Detects and handles one kind of IBGateway window.
+ *
+ * @author QuantConnect Corporation
+ */
+@FunctionalInterface
+interface WindowHandler {
+
+    /**
+     * Detects and handles the window.
+     *
+     * @param window The window instance
+     * @param eventId The id of the window event
+     * @param components The component index of the window, shared by all handlers for the same event
+     *
+     * @return Returns true if the window was detected and handled
+     */
+    boolean handle(Window window, int eventId, ComponentIndex components) throws Exception;
+}
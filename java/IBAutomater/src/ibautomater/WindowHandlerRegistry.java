@@ -0,0 +1,376 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.awt.Window;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Indexes the window handlers by window event id and by window title, so that a dispatched window event
+ * is only offered to the handlers which can possibly accept it.
+ *
+ * Handlers are offered a window in this order:
+ * - handlers registered for the exact window title or for a fragment of the window title, in registration order
+ * - handlers which need to inspect the window contents, in registration order
+ *
+ * Title lookups never walk the component tree, so only windows not claimed by a title handler
+ * pay for the content inspection.
+ *
+ * Content handlers can declare the (lower case) text signatures of their windows: the normalized window text
+ * is classified once by a {@link SignatureMatcher} built from all signatures, and a handler with signatures
+ * is only offered the windows containing one of them. Handlers without signatures are offered every window.
+ *
+ * @author QuantConnect Corporation
+ */
+final class WindowHandlerRegistry {
+    private final Map<Integer, Map<String, List<Registration>>> titleHandlers = new HashMap<>();
+    private final Map<Integer, List<Registration>> titleFragmentHandlers = new HashMap<>();
+    private final Map<Integer, List<Registration>> contentHandlers = new HashMap<>();
+    private final Map<String, Registration> handlersInOrder = new LinkedHashMap<>();
+    private final List<String> signatures = new ArrayList<>();
+    private final List<Registration> signatureOwners = new ArrayList<>();
+    private final Set<Integer> signatureEventIds = new HashSet<>();
+    private SignatureMatcher signatureMatcher;
+    private int sequence = 0;
+
+    /**
+     * Registers a handler for windows with the specified title (case insensitive).
+     *
+     * @param eventId The id of the window event
+     * @param title The window title
+     * @param name The handler name
+     * @param handler The handler
+     */
+    void addTitle(int eventId, String title, String name, WindowHandler handler) {
+        this.titleHandlers
+            .computeIfAbsent(eventId, k -> new HashMap<>())
+            .computeIfAbsent(title.toLowerCase(Locale.ROOT), k -> new ArrayList<>())
+            .add(this.register(name, handler, null));
+    }
+
+    /**
+     * Registers a handler for windows with a title containing the specified text.
+     *
+     * @param eventId The id of the window event
+     * @param fragment The text the window title must contain
+     * @param name The handler name
+     * @param handler The handler
+     */
+    void addTitleFragment(int eventId, String fragment, String name, WindowHandler handler) {
+        this.titleFragmentHandlers
+            .computeIfAbsent(eventId, k -> new ArrayList<>())
+            .add(this.register(name, handler, fragment));
+    }
+
+    /**
+     * Registers a handler which detects its windows by inspecting the window contents.
+     *
+     * @param eventId The id of the window event
+     * @param name The handler name
+     * @param handler The handler
+     * @param signatures The text fragments of the windows detected by the handler, see {@link MarkupStripper#normalize};
+     *                   if none, the handler is offered every window
+     */
+    void addContent(int eventId, String name, WindowHandler handler, String... signatures) {
+        Registration registration = this.register(name, handler, null);
+        this.contentHandlers
+            .computeIfAbsent(eventId, k -> new ArrayList<>())
+            .add(registration);
+
+        for (String signature : signatures) {
+            registration.hasSignatures = true;
+            this.signatureEventIds.add(eventId);
+            this.signatures.add(MarkupStripper.normalize(signature));
+            this.signatureOwners.add(registration);
+        }
+        this.signatureMatcher = null;
+    }
+
+    /**
+     * Builds the signature matcher from the signatures of all registered content handlers.
+     * Called once all handlers are registered, otherwise on the first dispatch.
+     */
+    void compile() {
+        this.signatureMatcher = new SignatureMatcher(this.signatures);
+    }
+
+    /**
+     * Classifies a window text with a single pass over the text.
+     *
+     * @param normalizedText The normalized window text, see {@link ComponentIndex#getNormalizedWindowText()}
+     *
+     * @return Returns the set of the registration sequences of the content handlers with a signature in the text
+     */
+    BitSet classify(String normalizedText) {
+        if (this.signatureMatcher == null) {
+            this.compile();
+        }
+
+        BitSet handlers = new BitSet(this.sequence);
+        BitSet found = this.signatureMatcher.match(normalizedText);
+        for (int id = found.nextSetBit(0); id >= 0; id = found.nextSetBit(id + 1)) {
+            handlers.set(this.signatureOwners.get(id).sequence);
+        }
+        return handlers;
+    }
+
+    /**
+     * Gets the names of the content handlers with a signature in a window text.
+     *
+     * @param normalizedText The normalized window text, see {@link ComponentIndex#getNormalizedWindowText()}
+     *
+     * @return Returns the handler names, in registration order
+     */
+    List<String> getMatchingHandlers(String normalizedText) {
+        BitSet handlers = this.classify(normalizedText);
+        List<String> names = new ArrayList<>();
+        for (List<Registration> registrations : this.contentHandlers.values()) {
+            for (Registration registration : registrations) {
+                if (handlers.get(registration.sequence) && !names.contains(registration.name)) {
+                    names.add(registration.name);
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Checks whether a window event may be offered to handlers with text signatures,
+     * i.e. whether the window text is needed to select the handlers.
+     *
+     * @param eventId The id of the window event
+     *
+     * @return Returns true if a content handler with signatures is registered for the event id
+     */
+    boolean hasSignatures(int eventId) {
+        return this.signatureEventIds.contains(eventId);
+    }
+
+    /**
+     * Selects the handlers which can possibly accept a window, without accessing the window components.
+     * This method can be called from any thread once all handlers are registered.
+     *
+     * @param eventId The id of the window event
+     * @param title The window title
+     * @param normalizedText Supplies the normalized window text, called at most once and only if needed
+     *
+     * @return Returns the candidate handlers, in the order they are offered the window
+     */
+    Candidates getCandidates(int eventId, String title, Supplier<String> normalizedText) {
+        List<Registration> exact = Collections.emptyList();
+        Map<String, List<Registration>> byTitle = this.titleHandlers.get(eventId);
+        if (byTitle != null && title != null) {
+            List<Registration> registrations = byTitle.get(title.toLowerCase(Locale.ROOT));
+            if (registrations != null) {
+                exact = registrations;
+            }
+        }
+
+        // merge the exact title and title fragment candidates, both are sorted by registration sequence
+        List<Registration> titleCandidates = new ArrayList<>();
+        int next = 0;
+        List<Registration> fragments = this.titleFragmentHandlers.get(eventId);
+        if (fragments != null && title != null) {
+            for (Registration registration : fragments) {
+                while (next < exact.size() && exact.get(next).sequence < registration.sequence) {
+                    titleCandidates.add(exact.get(next++));
+                }
+                if (title.contains(registration.titleFragment)) {
+                    titleCandidates.add(registration);
+                }
+            }
+        }
+        while (next < exact.size()) {
+            titleCandidates.add(exact.get(next++));
+        }
+
+        List<Registration> content = this.contentHandlers.get(eventId);
+        return new Candidates(titleCandidates, content == null ? Collections.emptyList() : content, normalizedText);
+    }
+
+    /**
+     * Offers the window to the handlers registered for the event id and the window title.
+     *
+     * @param window The window instance
+     * @param eventId The id of the window event
+     * @param title The window title
+     * @param components The component index of the window
+     *
+     * @return Returns the name of the handler which detected and handled the window, null if no handler did
+     */
+    String dispatch(Window window, int eventId, String title, ComponentIndex components) throws Exception {
+        return this.dispatch(this.getCandidates(eventId, title, components::getNormalizedWindowText), window, eventId, components);
+    }
+
+    /**
+     * Offers the window to the candidate handlers, in order.
+     *
+     * @param candidates The candidate handlers, see {@link #getCandidates}
+     * @param window The window instance
+     * @param eventId The id of the window event
+     * @param components The component index of the window
+     *
+     * @return Returns the name of the handler which detected and handled the window, null if no handler did
+     */
+    String dispatch(Candidates candidates, Window window, int eventId, ComponentIndex components) throws Exception {
+        for (Registration registration : candidates.titleCandidates) {
+            if (registration.handle(window, eventId, components)) {
+                return registration.name;
+            }
+        }
+
+        for (Registration registration : candidates.contentCandidates) {
+            if (candidates.accepts(registration) && registration.handle(window, eventId, components)) {
+                return registration.name;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Offers the window to every registered handler in registration order, without using the index.
+     * This is the behavior of the original handler chain, kept for comparison in benchmarks.
+     *
+     * @param window The window instance
+     * @param eventId The id of the window event
+     * @param components The component index of the window
+     *
+     * @return Returns the name of the handler which detected and handled the window, null if no handler did
+     */
+    String dispatchInOrder(Window window, int eventId, ComponentIndex components) throws Exception {
+        for (Registration registration : this.handlersInOrder.values()) {
+            if (registration.handle(window, eventId, components)) {
+                return registration.name;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates a new registration and appends the handler to the ordered handler list.
+     *
+     * @param name The handler name
+     * @param handler The handler
+     * @param titleFragment The text the window title must contain, null if not applicable
+     *
+     * @return Returns the new registration
+     */
+    private Registration register(String name, WindowHandler handler, String titleFragment) {
+        Registration registration = new Registration(this.sequence++, name, handler, titleFragment);
+        this.handlersInOrder.putIfAbsent(name, registration);
+        return registration;
+    }
+
+    /**
+     * The handlers selected for a window, see {@link #getCandidates}.
+     * The content handlers with signatures are filtered by the signature classification of the window text,
+     * which runs on the first content handler with signatures or when {@link #classify()} is called.
+     */
+    final class Candidates {
+        private final List<Registration> titleCandidates;
+        private final List<Registration> contentCandidates;
+        private final Supplier<String> normalizedText;
+        private BitSet classified;
+
+        Candidates(List<Registration> titleCandidates, List<Registration> contentCandidates, Supplier<String> normalizedText) {
+            this.titleCandidates = titleCandidates;
+            this.contentCandidates = contentCandidates;
+            this.normalizedText = normalizedText;
+        }
+
+        /**
+         * Classifies the window text now, so that the handlers are offered the window without further text matching.
+         */
+        void classify() {
+            for (Registration registration : this.contentCandidates) {
+                if (registration.hasSignatures) {
+                    this.accepts(registration);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Checks whether a content handler can accept the window.
+         *
+         * @param registration The content handler
+         *
+         * @return Returns true if the handler has no signatures or one of them is in the window text
+         */
+        private boolean accepts(Registration registration) {
+            if (!registration.hasSignatures) {
+                return true;
+            }
+            if (this.classified == null) {
+                String text = this.normalizedText.get();
+                this.classified = text == null ? new BitSet() : WindowHandlerRegistry.this.classify(text);
+            }
+            return this.classified.get(registration.sequence);
+        }
+    }
+
+    /**
+     * A handler registered in the index.
+     */
+    private static final class Registration {
+        private final int sequence;
+        private final String name;
+        private final WindowHandler handler;
+        private final String titleFragment;
+        private final LatencyMetric metric;
+        private boolean hasSignatures;
+
+        Registration(int sequence, String name, WindowHandler handler, String titleFragment) {
+            this.sequence = sequence;
+            this.name = name;
+            this.handler = handler;
+            this.titleFragment = titleFragment;
+            this.metric = AutomaterMetrics.get().handler(name);
+        }
+
+        /**
+         * Offers the window to the handler and records the handler latency.
+         *
+         * @param window The window instance
+         * @param eventId The id of the window event
+         * @param components The component index of the window
+         *
+         * @return Returns true if the handler detected and handled the window
+         */
+        boolean handle(Window window, int eventId, ComponentIndex components) throws Exception {
+            long start = System.nanoTime();
+            boolean handled = false;
+            try {
+                handled = this.handler.handle(window, eventId, components);
+                return handled;
+            }
+            finally {
+                this.metric.record(start, handled);
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.awt.Window;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A window handler declared in the rules file, see {@link WindowRuleParser}.
+ * A rule detects a window when all its conditions hold, then executes its actions in order.
+ *
+ * @author QuantConnect Corporation
+ */
+final class WindowRule implements WindowHandler {
+    /**
+     * An action executed on a detected window.
+     */
+    interface Action {
+        /**
+         * Executes the action.
+         *
+         * @param window The window instance
+         * @param components The component index of the window
+         */
+        void execute(Window window, ComponentIndex components) throws Exception;
+    }
+
+    private final String name;
+    private final int eventId;
+    private final String title;
+    private final String titleFragment;
+    private final List<String> labels;
+    private final List<String> optionPaneTexts;
+    private final List<String> signatures;
+    private final List<Action> actions;
+
+    /**
+     * Creates a new instance of the {@link WindowRule} class.
+     *
+     * @param name The rule name
+     * @param eventId The id of the window event
+     * @param title The exact window title (case insensitive), null if any
+     * @param titleFragment The text the window title must contain, null if any
+     * @param labels The texts of the labels the window must contain
+     * @param optionPaneTexts The texts the option pane messages of the window must contain
+     * @param signatures The texts the normalized window text must contain, see {@link MarkupStripper#normalize}
+     * @param actions The actions executed when the window is detected
+     */
+    WindowRule(String name, int eventId, String title, String titleFragment, List<String> labels,
+               List<String> optionPaneTexts, List<String> signatures, List<Action> actions) {
+        this.name = name;
+        this.eventId = eventId;
+        this.title = title;
+        this.titleFragment = titleFragment;
+        this.labels = Collections.unmodifiableList(new ArrayList<>(labels));
+        this.optionPaneTexts = Collections.unmodifiableList(new ArrayList<>(optionPaneTexts));
+        this.signatures = Collections.unmodifiableList(new ArrayList<>(signatures));
+        this.actions = Collections.unmodifiableList(new ArrayList<>(actions));
+    }
+
+    /**
+     * Gets the rule name.
+     *
+     * @return Returns the rule name
+     */
+    String getName() {
+        return this.name;
+    }
+
+    /**
+     * Registers the rule in the window handler registry, indexed by its most selective condition.
+     *
+     * @param handlers The window handler registry
+     */
+    void register(WindowHandlerRegistry handlers) {
+        String handlerName = "Rule:" + this.name;
+        if (this.title != null) {
+            handlers.addTitle(this.eventId, this.title, handlerName, this);
+        }
+        else if (this.titleFragment != null) {
+            handlers.addTitleFragment(this.eventId, this.titleFragment, handlerName, this);
+        }
+        else if (!this.signatures.isEmpty()) {
+            // the rule requires all its signatures, the automaton only needs to find one of them
+            handlers.addContent(this.eventId, handlerName, this, this.signatures.get(0));
+        }
+        else {
+            handlers.addContent(this.eventId, handlerName, this);
+        }
+    }
+
+    /**
+     * Detects the window and executes the rule actions.
+     *
+     * @param window The window instance
+     * @param eventId The id of the window event
+     * @param components The component index of the window
+     *
+     * @return Returns true if the window was detected and handled
+     */
+    @Override
+    public boolean handle(Window window, int eventId, ComponentIndex components) throws Exception {
+        if (!this.matches(window, eventId, components)) {
+            return false;
+        }
+
+        for (Action action : this.actions) {
+            action.execute(window, components);
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks the rule conditions.
+     *
+     * @param window The window instance
+     * @param eventId The id of the window event
+     * @param components The component index of the window
+     *
+     * @return Returns true if all conditions hold
+     */
+    private boolean matches(Window window, int eventId, ComponentIndex components) {
+        if (eventId != this.eventId) {
+            return false;
+        }
+
+        String windowTitle = Common.getTitle(window);
+        if (this.title != null && !this.title.equalsIgnoreCase(windowTitle)) {
+            return false;
+        }
+        if (this.titleFragment != null && (windowTitle == null || !windowTitle.contains(this.titleFragment))) {
+            return false;
+        }
+        for (String signature : this.signatures) {
+            if (!components.getNormalizedWindowText().contains(signature)) {
+                return false;
+            }
+        }
+        for (String label : this.labels) {
+            if (components.getLabel(label) == null) {
+                return false;
+            }
+        }
+        for (String text : this.optionPaneTexts) {
+            if (components.getOptionPane(text) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JTextField;
+import javax.swing.JTree;
+import javax.swing.tree.TreePath;
+
+/**
+ * Parses the window rules file, which declares window handlers without rebuilding IBAutomater.
+ *
+ * The file is a list of rules, each one starting with its name in square brackets, followed by "key = value" lines.
+ * Empty lines and lines starting with '#' are ignored.
+ *
+ * Conditions (all must hold, at least one of them is required):
+ * - event = opened | closed | activated (default: opened)
+ * - title = exact window title (case insensitive)
+ * - title-contains = text the window title contains
+ * - label = text of a label of the window (may be repeated)
+ * - option-pane = text the option pane message contains (may be repeated)
+ * - text = text the window text contains, case and markup insensitive (may be repeated)
+ *
+ * Actions (executed in order):
+ * - click = button text
+ * - check = check box text: true | false
+ * - select-tree = tree node path, separated by '/'
+ * - set-text = text field index: value
+ * - close-main-window
+ * - log = message
+ *
+ * Example:
+ * <pre>
+ * [NewsDisclaimerWindow]
+ * text = please read the following news disclaimer
+ * click = I Accept
+ * </pre>
+ *
+ * @author QuantConnect Corporation
+ */
+final class WindowRuleParser {
+    private final IBAutomater automater;
+    private final Runnable closeMainWindow;
+
+    /**
+     * Creates a new instance of the {@link WindowRuleParser} class.
+     *
+     * @param automater The {@link IBAutomater} instance, used by the logging actions
+     * @param closeMainWindow The action closing the IBGateway main window
+     */
+    WindowRuleParser(IBAutomater automater, Runnable closeMainWindow) {
+        this.automater = automater;
+        this.closeMainWindow = closeMainWindow;
+    }
+
+    /**
+     * Parses a rules file.
+     *
+     * @param path The path of the rules file
+     *
+     * @return Returns the rules, in file order
+     */
+    List<WindowRule> parse(Path path) throws IOException {
+        return this.parse(Files.readAllLines(path, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses the lines of a rules file.
+     *
+     * @param lines The lines of the rules file
+     *
+     * @return Returns the rules, in file order
+     */
+    List<WindowRule> parse(List<String> lines) {
+        List<WindowRule> rules = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        RuleBuilder builder = null;
+
+        for (int i = 0; i < lines.size(); i++) {
+            int lineNumber = i + 1;
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            if (line.startsWith("[")) {
+                if (!line.endsWith("]") || line.length() < 3) {
+                    throw new IllegalArgumentException("Invalid rule name at line " + lineNumber + ": " + line);
+                }
+                if (builder != null) {
+                    rules.add(builder.build());
+                }
+                String name = line.substring(1, line.length() - 1).trim();
+                if (!names.add(name)) {
+                    throw new IllegalArgumentException("Duplicate rule name at line " + lineNumber + ": " + name);
+                }
+                builder = new RuleBuilder(name, lineNumber);
+                continue;
+            }
+
+            if (builder == null) {
+                throw new IllegalArgumentException("Rule name expected at line " + lineNumber + ": " + line);
+            }
+
+            int separator = line.indexOf('=');
+            String key = (separator < 0 ? line : line.substring(0, separator)).trim().toLowerCase(Locale.ROOT);
+            String value = separator < 0 ? "" : line.substring(separator + 1).trim();
+            if (separator >= 0 && value.isEmpty()) {
+                throw new IllegalArgumentException("Missing value at line " + lineNumber + ": " + line);
+            }
+            this.parseEntry(builder, key, value, lineNumber);
+        }
+
+        if (builder != null) {
+            rules.add(builder.build());
+        }
+        return rules;
+    }
+
+    /**
+     * Parses a "key = value" line of a rule.
+     *
+     * @param builder The rule being parsed
+     * @param key The entry key
+     * @param value The entry value
+     * @param lineNumber The line number, for error messages
+     */
+    private void parseEntry(RuleBuilder builder, String key, String value, int lineNumber) {
+        switch (key) {
+            case "event":
+                builder.eventId = WindowRuleParser.parseEventId(value, lineNumber);
+                break;
+            case "title":
+                builder.title = value;
+                break;
+            case "title-contains":
+                builder.titleFragment = value;
+                break;
+            case "label":
+                builder.labels.add(value);
+                break;
+            case "option-pane":
+                builder.optionPaneTexts.add(value);
+                break;
+            case "text":
+                String signature = MarkupStripper.normalize(value);
+                if (signature.isEmpty()) {
+                    throw new IllegalArgumentException("Empty text after markup removal at line " + lineNumber + ": " + value);
+                }
+                builder.signatures.add(signature);
+                break;
+            case "click":
+                builder.actions.add(this.click(value));
+                break;
+            case "check":
+                builder.actions.add(this.check(value, lineNumber));
+                break;
+            case "select-tree":
+                builder.actions.add(this.selectTree(value));
+                break;
+            case "set-text":
+                builder.actions.add(this.setText(value, lineNumber));
+                break;
+            case "close-main-window":
+                builder.actions.add((window, components) -> {
+                    this.automater.logMessage("Rule [" + builder.name + "]: closing main window");
+                    this.closeMainWindow.run();
+                });
+                break;
+            case "log":
+                builder.actions.add((window, components) -> this.automater.logMessage(value));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown key at line " + lineNumber + ": " + key);
+        }
+    }
+
+    /**
+     * Creates a "click" action.
+     *
+     * @param buttonText The button text
+     *
+     * @return Returns the action
+     */
+    private WindowRule.Action click(String buttonText) {
+        return (window, components) -> {
+            JButton button = components.getButton(buttonText);
+            if (button == null) {
+                throw new Exception("Button not found: [" + buttonText + "]");
+            }
+            this.automater.logMessage("Click button: [" + buttonText + "]");
+            button.doClick();
+        };
+    }
+
+    /**
+     * Creates a "check" action.
+     *
+     * @param value The "check box text: true | false" entry value
+     * @param lineNumber The line number, for error messages
+     *
+     * @return Returns the action
+     */
+    private WindowRule.Action check(String value, int lineNumber) {
+        String[] parts = WindowRuleParser.splitValue(value, lineNumber);
+        String checkBoxText = parts[0];
+        boolean selected = WindowRuleParser.parseBoolean(parts[1], lineNumber);
+        return (window, components) -> {
+            JCheckBox checkBox = components.getCheckBox(checkBoxText);
+            if (checkBox == null) {
+                throw new Exception("Checkbox not found: [" + checkBoxText + "]");
+            }
+            if (checkBox.isSelected() != selected) {
+                this.automater.logMessage((selected ? "Select" : "Unselect") + " checkbox: [" + checkBoxText + "]");
+                checkBox.setSelected(selected);
+            }
+        };
+    }
+
+    /**
+     * Creates a "select-tree" action.
+     *
+     * @param value The tree node path, separated by '/'
+     *
+     * @return Returns the action
+     */
+    private WindowRule.Action selectTree(String value) {
+        String[] path = value.split("/");
+        for (int i = 0; i < path.length; i++) {
+            path[i] = path[i].trim();
+        }
+        return (window, components) -> {
+            JTree tree = components.getTree();
+            if (tree == null) {
+                throw new Exception("Tree not found");
+            }
+            this.automater.logMessage("Select tree node: [" + value + "]");
+            if (!Common.selectTreeNode(tree, new TreePath(path))) {
+                throw new Exception("Tree node not found: [" + value + "]");
+            }
+            // the selected node may swap the displayed panel
+            components.invalidate();
+        };
+    }
+
+    /**
+     * Creates a "set-text" action.
+     *
+     * @param value The "text field index: value" entry value
+     * @param lineNumber The line number, for error messages
+     *
+     * @return Returns the action
+     */
+    private WindowRule.Action setText(String value, int lineNumber) {
+        String[] parts = WindowRuleParser.splitValue(value, lineNumber);
+        int index;
+        try {
+            index = Integer.parseInt(parts[0]);
+        }
+        catch (NumberFormatException exception) {
+            throw new IllegalArgumentException("Invalid text field index at line " + lineNumber + ": " + parts[0]);
+        }
+        String text = parts[1];
+        return (window, components) -> {
+            JTextField textField = components.getTextField(index);
+            if (textField == null) {
+                throw new Exception("Text field not found: [" + index + "]");
+            }
+            // the value is not logged, a rule can fill a password field
+            this.automater.logMessage("Set text field " + index + " value");
+            textField.setText(text);
+        };
+    }
+
+    /**
+     * Splits a "name: value" entry value at the last colon.
+     *
+     * @param value The entry value
+     * @param lineNumber The line number, for error messages
+     *
+     * @return Returns the name and the value
+     */
+    private static String[] splitValue(String value, int lineNumber) {
+        int separator = value.lastIndexOf(':');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Expected \"name: value\" at line " + lineNumber + ": " + value);
+        }
+        return new String[] { value.substring(0, separator).trim(), value.substring(separator + 1).trim() };
+    }
+
+    /**
+     * Parses a boolean entry value.
+     *
+     * @param value The entry value
+     * @param lineNumber The line number, for error messages
+     *
+     * @return Returns the boolean value
+     */
+    private static boolean parseBoolean(String value, int lineNumber) {
+        if (value.equalsIgnoreCase("true")) {
+            return true;
+        }
+        if (value.equalsIgnoreCase("false")) {
+            return false;
+        }
+        throw new IllegalArgumentException("Expected true or false at line " + lineNumber + ": " + value);
+    }
+
+    /**
+     * Parses a window event name.
+     *
+     * @param value The window event name
+     * @param lineNumber The line number, for error messages
+     *
+     * @return Returns the id of the window event
+     */
+    private static int parseEventId(String value, int lineNumber) {
+        switch (value.toLowerCase(Locale.ROOT)) {
+            case "opened":
+                return WindowEvent.WINDOW_OPENED;
+            case "closed":
+                return WindowEvent.WINDOW_CLOSED;
+            case "activated":
+                return WindowEvent.WINDOW_ACTIVATED;
+            default:
+                throw new IllegalArgumentException("Unknown window event at line " + lineNumber + ": " + value);
+        }
+    }
+
+    /**
+     * The entries of a rule being parsed.
+     */
+    private static final class RuleBuilder {
+        private final String name;
+        private final int lineNumber;
+        private int eventId = WindowEvent.WINDOW_OPENED;
+        private String title;
+        private String titleFragment;
+        private final List<String> labels = new ArrayList<>();
+        private final List<String> optionPaneTexts = new ArrayList<>();
+        private final List<String> signatures = new ArrayList<>();
+        private final List<WindowRule.Action> actions = new ArrayList<>();
+
+        RuleBuilder(String name, int lineNumber) {
+            this.name = name;
+            this.lineNumber = lineNumber;
+        }
+
+        WindowRule build() {
+            if (this.title == null && this.titleFragment == null && this.labels.isEmpty()
+                && this.optionPaneTexts.isEmpty() && this.signatures.isEmpty()) {
+                throw new IllegalArgumentException("Rule [" + this.name + "] at line " + this.lineNumber + " has no condition");
+            }
+            if (this.actions.isEmpty()) {
+                throw new IllegalArgumentException("Rule [" + this.name + "] at line " + this.lineNumber + " has no action");
+            }
+            return new WindowRule(this.name, this.eventId, this.title, this.titleFragment,
+                this.labels, this.optionPaneTexts, this.signatures, this.actions);
+        }
+    }
+}
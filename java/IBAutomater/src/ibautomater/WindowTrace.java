@@ -0,0 +1,600 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dialog;
+import java.awt.Frame;
+import java.awt.Window;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import javax.swing.AbstractButton;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JEditorPane;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JMenu;
+import javax.swing.JMenuBar;
+import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JPasswordField;
+import javax.swing.JRadioButton;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import javax.swing.JTextPane;
+import javax.swing.JToggleButton;
+import javax.swing.JTree;
+import javax.swing.ListModel;
+import javax.swing.RootPaneContainer;
+import javax.swing.text.JTextComponent;
+import javax.swing.tree.TreeModel;
+
+/**
+ * The binary format of the window event traces written by {@link WindowTraceRecorder}.
+ *
+ * A trace is a sequence of sections, each starting with a type byte:
+ * - 'H' (session header): the format version (short) and the epoch time of the session start in milliseconds (long),
+ *   written once per process, the trace file is appended to across the IBGateway restarts
+ * - 'E' (window event): the length of the record (int) followed by the record
+ *
+ * An event record holds the nanoseconds elapsed since the session start, the window event id, a window id
+ * (unique within the session), the window type, name and title, then the menu bar and the content pane trees.
+ * A component node holds its {@link Kind}, class name, name, text, flags, model items (list entries, tree nodes)
+ * and children. Integers are unsigned variable length (7 bits per byte), strings are indexes into a table local
+ * to the record, so that each record can be decoded (or skipped) on its own.
+ * Password fields are recorded without their text.
+ *
+ * @author QuantConnect Corporation
+ */
+final class WindowTrace {
+    static final short VERSION = 1;
+    static final byte SECTION_HEADER = 'H';
+    static final byte SECTION_EVENT = 'E';
+
+    static final byte WINDOW_FRAME = 0;
+    static final byte WINDOW_DIALOG = 1;
+    static final byte WINDOW_OTHER = 2;
+
+    static final int FLAG_ENABLED = 1;
+    static final int FLAG_VISIBLE = 2;
+    static final int FLAG_SELECTED = 4;
+    static final int FLAG_EDITABLE = 8;
+
+    private static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+
+    /**
+     * The component kinds replayed as the matching Swing classes, the ordinal is the recorded code (append only).
+     */
+    enum Kind {
+        OTHER(Component.class),
+        CONTAINER(Container.class),
+        PANEL(JPanel.class),
+        LABEL(JLabel.class),
+        BUTTON(JButton.class),
+        TOGGLE_BUTTON(JToggleButton.class),
+        CHECK_BOX(JCheckBox.class),
+        RADIO_BUTTON(JRadioButton.class),
+        MENU_BAR(JMenuBar.class),
+        MENU(JMenu.class),
+        MENU_ITEM(JMenuItem.class),
+        TEXT_FIELD(JTextField.class),
+        PASSWORD_FIELD(JPasswordField.class),
+        TEXT_AREA(JTextArea.class),
+        TEXT_PANE(JTextPane.class),
+        EDITOR_PANE(JEditorPane.class),
+        TREE(JTree.class),
+        LIST(JList.class),
+        OPTION_PANE(JOptionPane.class),
+        SCROLL_PANE(JScrollPane.class),
+        ITEM(Object.class);
+
+        // subclasses before their base classes
+        private static final Kind[] RESOLUTION_ORDER = {
+            PASSWORD_FIELD, TEXT_FIELD, TEXT_PANE, EDITOR_PANE, TEXT_AREA, CHECK_BOX, RADIO_BUTTON, TOGGLE_BUTTON, BUTTON,
+            MENU, MENU_ITEM, MENU_BAR, LABEL, TREE, LIST, OPTION_PANE, SCROLL_PANE, PANEL, CONTAINER
+        };
+        private static final Kind[] VALUES = values();
+
+        private final Class<?> type;
+
+        Kind(Class<?> type) {
+            this.type = type;
+        }
+
+        /**
+         * Gets the kind of a component.
+         *
+         * @param component The component
+         *
+         * @return Returns the most specific kind the component is an instance of
+         */
+        static Kind of(Component component) {
+            for (Kind kind : RESOLUTION_ORDER) {
+                if (kind.type.isInstance(component)) {
+                    return kind;
+                }
+            }
+            return OTHER;
+        }
+
+        /**
+         * Gets the kind of a recorded code.
+         *
+         * @param code The recorded code
+         *
+         * @return Returns the kind, {@link #OTHER} for the codes of a newer format
+         */
+        static Kind of(int code) {
+            return code < VALUES.length ? VALUES[code] : OTHER;
+        }
+    }
+
+    /**
+     * A recorded component, or a model item (a list entry or a tree node) of a recorded component.
+     */
+    static final class Node {
+        final Kind kind;
+        final String className;
+        final String name;
+        final String text;
+        final int flags;
+        final List<Node> items;
+        final List<Node> children;
+
+        Node(Kind kind, String className, String name, String text, int flags, List<Node> items, List<Node> children) {
+            this.kind = kind;
+            this.className = className;
+            this.name = name;
+            this.text = text;
+            this.flags = flags;
+            this.items = items;
+            this.children = children;
+        }
+
+        /**
+         * Checks whether a flag is set.
+         *
+         * @param flag The flag, one of the FLAG_ constants
+         *
+         * @return Returns true if the flag is set
+         */
+        boolean is(int flag) {
+            return (this.flags & flag) != 0;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Node)) {
+                return false;
+            }
+            Node node = (Node)other;
+            return this.kind == node.kind && this.flags == node.flags && Objects.equals(this.className, node.className)
+                && Objects.equals(this.name, node.name) && Objects.equals(this.text, node.text)
+                && this.items.equals(node.items) && this.children.equals(node.children);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.kind, this.className, this.name, this.text, this.flags, this.items, this.children);
+        }
+    }
+
+    /**
+     * A recorded window event.
+     */
+    static final class Event {
+        final long sessionStartMillis;
+        final long elapsedNanos;
+        final int eventId;
+        final int windowId;
+        final byte windowType;
+        final String windowName;
+        final String title;
+        final Node menuBar;
+        final Node content;
+
+        Event(long sessionStartMillis, long elapsedNanos, int eventId, int windowId, byte windowType, String windowName, String title, Node menuBar, Node content) {
+            this.sessionStartMillis = sessionStartMillis;
+            this.elapsedNanos = elapsedNanos;
+            this.eventId = eventId;
+            this.windowId = windowId;
+            this.windowType = windowType;
+            this.windowName = windowName;
+            this.title = title;
+            this.menuBar = menuBar;
+            this.content = content;
+        }
+
+        /**
+         * Gets the time of the event.
+         *
+         * @return Returns the event time in nanoseconds since the epoch
+         */
+        long getTimeNanos() {
+            return this.sessionStartMillis * 1000000L + this.elapsedNanos;
+        }
+    }
+
+    private WindowTrace() {
+    }
+
+    /**
+     * Encodes the session header.
+     *
+     * @param sessionStartMillis The epoch time of the session start in milliseconds
+     *
+     * @return Returns the encoded header section
+     */
+    static byte[] encodeHeader(long sessionStartMillis) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeByte(SECTION_HEADER);
+            output.writeShort(VERSION);
+            output.writeLong(sessionStartMillis);
+        }
+        catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Encodes a window event with the current component tree of the window, must be called on the event dispatch thread.
+     *
+     * @param elapsedNanos The nanoseconds elapsed since the session start
+     * @param eventId The window event id
+     * @param windowId The window id
+     * @param window The window
+     *
+     * @return Returns the encoded event section
+     */
+    static byte[] encodeEvent(long elapsedNanos, int eventId, int windowId, Window window) {
+        Encoder encoder = new Encoder();
+        encoder.writeLong(elapsedNanos);
+        encoder.writeInt(eventId);
+        encoder.writeInt(windowId);
+        encoder.writeInt(window instanceof Frame ? WINDOW_FRAME : window instanceof Dialog ? WINDOW_DIALOG : WINDOW_OTHER);
+        encoder.writeString(window.getName());
+        encoder.writeString(Common.getTitle(window));
+
+        if (window instanceof RootPaneContainer) {
+            RootPaneContainer container = (RootPaneContainer)window;
+            JMenuBar menuBar = container.getRootPane() == null ? null : container.getRootPane().getJMenuBar();
+            encoder.writeInt(menuBar == null ? 0 : 1);
+            if (menuBar != null) {
+                encoder.writeComponent(menuBar);
+            }
+            encoder.writeComponent(container.getContentPane());
+        }
+        else {
+            encoder.writeInt(0);
+            encoder.writeComponent(window);
+        }
+
+        return encoder.toSection();
+    }
+
+    /**
+     * Encodes the records: variable length integers and strings indexed in a record-local table.
+     */
+    private static final class Encoder {
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final List<String> table = new ArrayList<>();
+
+        void writeLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                this.body.write((int)((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            this.body.write((int)value);
+        }
+
+        void writeInt(int value) {
+            this.writeLong(value & 0xFFFFFFFFL);
+        }
+
+        /**
+         * Writes a string as its table index plus one, 0 for null.
+         */
+        void writeString(String value) {
+            if (value == null) {
+                this.writeInt(0);
+                return;
+            }
+            Integer index = this.strings.get(value);
+            if (index == null) {
+                index = this.table.size();
+                this.strings.put(value, index);
+                this.table.add(value);
+            }
+            this.writeInt(index + 1);
+        }
+
+        void writeComponent(Component component) {
+            Kind kind = Kind.of(component);
+            this.writeInt(kind.ordinal());
+            this.writeString(component.getClass().getName());
+            this.writeString(component.getName());
+
+            int flags = (component.isEnabled() ? FLAG_ENABLED : 0) | (component.isVisible() ? FLAG_VISIBLE : 0);
+            String text = null;
+            List<Component> children = Collections.emptyList();
+
+            if (component instanceof AbstractButton) {
+                AbstractButton button = (AbstractButton)component;
+                text = button.getText();
+                flags |= button.isSelected() ? FLAG_SELECTED : 0;
+                if (component instanceof JMenu) {
+                    children = Arrays.asList(((JMenu)component).getMenuComponents());
+                }
+            }
+            else if (component instanceof JLabel) {
+                text = ((JLabel)component).getText();
+            }
+            else if (component instanceof JTextComponent) {
+                JTextComponent textComponent = (JTextComponent)component;
+                text = component instanceof JPasswordField ? null : textComponent.getText();
+                flags |= textComponent.isEditable() ? FLAG_EDITABLE : 0;
+            }
+            else if (component instanceof JScrollPane) {
+                Component view = ((JScrollPane)component).getViewport().getView();
+                children = view == null ? Collections.emptyList() : Collections.singletonList(view);
+            }
+            else if (component instanceof Container && !(component instanceof JTree) && !(component instanceof JList)) {
+                if (component instanceof JOptionPane) {
+                    Object message = ((JOptionPane)component).getMessage();
+                    text = message instanceof String ? (String)message : null;
+                }
+                children = Arrays.asList(((Container)component).getComponents());
+            }
+            this.writeInt(flags);
+            this.writeString(text);
+
+            if (component instanceof JTree) {
+                TreeModel model = ((JTree)component).getModel();
+                Object root = model == null ? null : model.getRoot();
+                this.writeInt(root == null ? 0 : 1);
+                if (root != null) {
+                    this.writeTreeItem(model, root);
+                }
+            }
+            else if (component instanceof JList) {
+                ListModel<?> model = ((JList<?>)component).getModel();
+                this.writeInt(model.getSize());
+                for (int i = 0; i < model.getSize(); i++) {
+                    this.writeItem(String.valueOf(model.getElementAt(i)), 0);
+                }
+            }
+            else {
+                this.writeInt(0);
+            }
+
+            this.writeInt(children.size());
+            for (Component child : children) {
+                this.writeComponent(child);
+            }
+        }
+
+        private void writeItem(String text, int childCount) {
+            this.writeInt(Kind.ITEM.ordinal());
+            this.writeString(null);
+            this.writeString(null);
+            this.writeInt(0);
+            this.writeString(text);
+            this.writeInt(0);
+            this.writeInt(childCount);
+        }
+
+        private void writeTreeItem(TreeModel model, Object node) {
+            int childCount = model.getChildCount(node);
+            this.writeItem(String.valueOf(node), childCount);
+            for (int i = 0; i < childCount; i++) {
+                this.writeTreeItem(model, model.getChild(node, i));
+            }
+        }
+
+        /**
+         * Builds the event section: type, length, string table and body.
+         */
+        byte[] toSection() {
+            ByteArrayOutputStream record = new ByteArrayOutputStream(this.body.size() + 256);
+            try (DataOutputStream output = new DataOutputStream(record)) {
+                Encoder table = new Encoder();
+                table.writeInt(this.table.size());
+                for (String value : this.table) {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    table.writeInt(bytes.length);
+                    table.body.write(bytes, 0, bytes.length);
+                }
+                output.writeByte(SECTION_EVENT);
+                output.writeInt(table.body.size() + this.body.size());
+                table.body.writeTo(output);
+                this.body.writeTo(output);
+            }
+            catch (IOException exception) {
+                throw new IllegalStateException(exception);
+            }
+            return record.toByteArray();
+        }
+    }
+
+    /**
+     * Reads the events of a trace, a truncated last record (e.g. the process was killed) ends the trace.
+     */
+    static final class Reader {
+        private final DataInputStream input;
+        private long sessionStartMillis = -1;
+        private int sessionCount;
+        private byte[] record;
+        private int position;
+        private String[] table;
+
+        /**
+         * Creates a new instance of the {@link Reader} class.
+         *
+         * @param input The trace stream, buffered by the caller
+         */
+        Reader(InputStream input) {
+            this.input = new DataInputStream(input);
+        }
+
+        /**
+         * Gets the number of sessions (IBGateway processes) read so far.
+         *
+         * @return Returns the number of session headers read
+         */
+        int getSessionCount() {
+            return this.sessionCount;
+        }
+
+        /**
+         * Reads the next event.
+         *
+         * @return Returns the next event, null at the end of the trace
+         */
+        Event next() throws IOException {
+            while (true) {
+                int section = this.input.read();
+                if (section < 0) {
+                    return null;
+                }
+
+                try {
+                    if (section == SECTION_HEADER) {
+                        short version = this.input.readShort();
+                        if (version > VERSION) {
+                            throw new IOException("Unsupported trace version: " + version);
+                        }
+                        this.sessionStartMillis = this.input.readLong();
+                        this.sessionCount++;
+                        continue;
+                    }
+                    if (section != SECTION_EVENT) {
+                        throw new IOException("Invalid trace section: " + section);
+                    }
+                    if (this.sessionStartMillis < 0) {
+                        throw new IOException("Missing trace header");
+                    }
+
+                    int length = this.input.readInt();
+                    if (length < 0 || length > MAX_RECORD_LENGTH) {
+                        throw new IOException("Invalid trace record length: " + length);
+                    }
+                    this.record = new byte[length];
+                    this.input.readFully(this.record);
+                }
+                catch (EOFException exception) {
+                    return null;
+                }
+
+                return this.decodeEvent();
+            }
+        }
+
+        private Event decodeEvent() throws IOException {
+            this.position = 0;
+            this.table = new String[this.readInt()];
+            for (int i = 0; i < this.table.length; i++) {
+                int length = this.readInt();
+                if (length > this.record.length - this.position) {
+                    throw new IOException("Invalid trace string length: " + length);
+                }
+                this.table[i] = new String(this.record, this.position, length, StandardCharsets.UTF_8);
+                this.position += length;
+            }
+
+            long elapsedNanos = this.readLong();
+            int eventId = this.readInt();
+            int windowId = this.readInt();
+            byte windowType = (byte)this.readInt();
+            String windowName = this.readString();
+            String title = this.readString();
+            Node menuBar = this.readInt() == 0 ? null : this.readNode();
+            Node content = this.readNode();
+
+            return new Event(this.sessionStartMillis, elapsedNanos, eventId, windowId, windowType, windowName, title, menuBar, content);
+        }
+
+        private long readLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (this.position >= this.record.length) {
+                    throw new IOException("Truncated trace record");
+                }
+                int b = this.record[this.position++];
+                value |= (long)(b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Invalid trace integer");
+        }
+
+        private int readInt() throws IOException {
+            return (int)this.readLong();
+        }
+
+        private String readString() throws IOException {
+            int index = this.readInt();
+            if (index == 0) {
+                return null;
+            }
+            if (index < 0 || index > this.table.length) {
+                throw new IOException("Invalid trace string index: " + index);
+            }
+            return this.table[index - 1];
+        }
+
+        private Node readNode() throws IOException {
+            Kind kind = Kind.of(this.readInt());
+            String className = this.readString();
+            String name = this.readString();
+            int flags = this.readInt();
+            String text = this.readString();
+
+            int itemCount = this.readInt();
+            List<Node> items = itemCount == 0 ? Collections.emptyList() : new ArrayList<>(itemCount);
+            for (int i = 0; i < itemCount; i++) {
+                items.add(this.readNode());
+            }
+
+            int childCount = this.readInt();
+            List<Node> children = childCount == 0 ? Collections.emptyList() : new ArrayList<>(childCount);
+            for (int i = 0; i < childCount; i++) {
+                children.add(this.readNode());
+            }
+
+            return new Node(kind, className, name, text, flags, items, children);
+        }
+    }
+}
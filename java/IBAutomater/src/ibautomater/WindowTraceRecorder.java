@@ -0,0 +1,182 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.awt.Window;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records the dispatched window events with the component trees of their windows into a binary trace,
+ * see {@link WindowTrace} for the format and the WindowTraceReplay tool to replay a trace.
+ *
+ * The window is encoded on the event dispatch thread (the component tree can only be read there),
+ * the records are written by a background thread. When the writer falls behind, records are dropped
+ * (each record is self-contained) and the number of dropped records is logged.
+ * The trace file is appended to, each process starts a new session; recording stops at the size limit.
+ *
+ * @author QuantConnect Corporation
+ */
+final class WindowTraceRecorder {
+    private static final int CAPACITY = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final IBAutomater automater;
+    private final long maxBytes;
+    private final FileChannel channel;
+    private final RingBuffer<byte[]> records = new RingBuffer<>(CAPACITY);
+    private final Thread writerThread;
+    private final AtomicLong droppedRecords = new AtomicLong();
+    private final long sessionStart = System.nanoTime();
+    private volatile boolean closed = false;
+    private volatile boolean full = false;
+
+    // used by the event dispatch thread only
+    private final Map<Window, Integer> windowIds = new WeakHashMap<>();
+    private int nextWindowId = 1;
+
+    /**
+     * Creates a new instance of the {@link WindowTraceRecorder} class, starts a session in the trace file
+     * and starts the writer thread.
+     *
+     * @param automater The {@link IBAutomater} instance
+     * @param file The trace file
+     * @param maxBytes The trace file size after which the recording stops
+     */
+    WindowTraceRecorder(IBAutomater automater, Path file, long maxBytes) throws IOException {
+        this.automater = automater;
+        this.maxBytes = maxBytes;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.full = this.channel.size() >= maxBytes;
+        if (this.full) {
+            automater.logMessage("Window trace not recorded, " + file + " exceeds " + maxBytes + " bytes");
+        }
+        this.records.offer(WindowTrace.encodeHeader(System.currentTimeMillis()));
+
+        this.writerThread = new Thread(this::run, "IBAutomater-trace-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> this.close(5, TimeUnit.SECONDS), "IBAutomater-trace-flush"));
+    }
+
+    /**
+     * Records a window event, must be called on the event dispatch thread.
+     *
+     * @param eventId The window event id
+     * @param window The window
+     */
+    void record(int eventId, Window window) {
+        if (this.full || this.closed) {
+            return;
+        }
+
+        Integer windowId = this.windowIds.get(window);
+        if (windowId == null) {
+            windowId = this.nextWindowId++;
+            this.windowIds.put(window, windowId);
+        }
+
+        byte[] record = WindowTrace.encodeEvent(System.nanoTime() - this.sessionStart, eventId, windowId, window);
+        if (!this.records.offer(record)) {
+            this.droppedRecords.incrementAndGet();
+        }
+        LockSupport.unpark(this.writerThread);
+    }
+
+    /**
+     * Writes the queued records, stops the writer thread and closes the file.
+     *
+     * @param timeout The maximum time to wait for the queued records to be written
+     * @param unit The time unit of the timeout
+     */
+    void close(long timeout, TimeUnit unit) {
+        this.closed = true;
+        LockSupport.unpark(this.writerThread);
+        try {
+            this.writerThread.join(unit.toMillis(timeout));
+        }
+        catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The writer thread loop.
+     */
+    private void run() {
+        try {
+            while (true) {
+                byte[] record = this.records.poll();
+                if (record != null) {
+                    this.write(record);
+                    continue;
+                }
+
+                long dropped = this.droppedRecords.getAndSet(0);
+                if (dropped > 0) {
+                    this.automater.logMessage("Window trace buffer full, " + dropped + " window events not recorded");
+                }
+
+                if (this.closed) {
+                    break;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        catch (IOException exception) {
+            this.full = true;
+            this.automater.logError(exception);
+        }
+        finally {
+            try {
+                this.channel.close();
+            }
+            catch (IOException exception) {
+                // already closed
+            }
+        }
+    }
+
+    /**
+     * Writes a record, unless the size limit is reached.
+     *
+     * @param record The encoded record
+     */
+    private void write(byte[] record) throws IOException {
+        if (this.full) {
+            return;
+        }
+        if (this.channel.size() + record.length > this.maxBytes) {
+            this.full = true;
+            this.automater.logMessage("Window trace stopped, the size limit of " + this.maxBytes + " bytes is reached");
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.awt.BorderLayout;
+import java.awt.GraphicsEnvironment;
+import java.awt.event.WindowEvent;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.JTextPane;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeFalse;
+
+/**
+ * Tests the handling of window events by the {@link WindowEventListener}.
+ * Windows require a display, the tests are skipped on headless hosts (run them under Xvfb).
+ *
+ * @author QuantConnect Corporation
+ */
+public class WindowEventListenerTest {
+
+    @Test
+    public void contentHandlersAreSelectedWhenTheTextCaptureFails() {
+        assumeFalse(GraphicsEnvironment.isHeadless());
+
+        // the text of the window cannot be read when the snapshot is taken, it can when the window is handled
+        AtomicInteger textReads = new AtomicInteger();
+        JTextPane textPane = new JTextPane() {
+            @Override
+            public String getText() {
+                if (textReads.incrementAndGet() == 1) {
+                    throw new IllegalStateException("Text not available");
+                }
+                return super.getText();
+            }
+        };
+        textPane.setText("Would you like to restart now?");
+
+        AtomicInteger noClicks = new AtomicInteger();
+        JButton noButton = new JButton("No");
+        noButton.addActionListener(e -> noClicks.incrementAndGet());
+
+        JDialog dialog = new JDialog((JFrame)null, "");
+        dialog.getContentPane().add(textPane, BorderLayout.CENTER);
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.add(new JButton("Yes"));
+        buttonPanel.add(noButton);
+        dialog.getContentPane().add(buttonPanel, BorderLayout.SOUTH);
+
+        try {
+            WindowEventListener listener = new WindowEventListener(new IBAutomater("user", "password", "paper", 4002, false));
+            listener.dispatchSynchronously(new WindowEvent(dialog, WindowEvent.WINDOW_OPENED));
+
+            assertEquals(1, noClicks.get());
+        }
+        finally {
+            dialog.dispose();
+        }
+    }
+}
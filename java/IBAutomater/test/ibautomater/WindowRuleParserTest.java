@@ -0,0 +1,78 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link WindowRuleParser} and the {@link SignatureMatcher} used by the content rules.
+ *
+ * @author QuantConnect Corporation
+ */
+public class WindowRuleParserTest {
+    private final WindowRuleParser parser = new WindowRuleParser(null, () -> { });
+
+    @Test
+    public void contentRuleMatchesNormalizedWindowText() {
+        List<WindowRule> rules = this.parser.parse(Arrays.asList(
+            "# news disclaimer",
+            "[NewsDisclaimerWindow]",
+            "text = Please read the <b>following</b>   news disclaimer",
+            "click = I Accept"));
+        assertEquals(1, rules.size());
+
+        WindowHandlerRegistry handlers = new WindowHandlerRegistry();
+        rules.get(0).register(handlers);
+        handlers.compile();
+
+        String windowText = MarkupStripper.normalize("<html>Please READ the following news disclaimer.</html>");
+        assertEquals(Collections.singletonList("Rule:NewsDisclaimerWindow"), handlers.getMatchingHandlers(windowText));
+        assertTrue(handlers.getMatchingHandlers("another window").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void markupOnlyTextIsRejected() {
+        this.parser.parse(Arrays.asList("[Empty]", "text = <b>"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownKeyIsRejected() {
+        this.parser.parse(Arrays.asList("[Unknown]", "title = Some Window", "press = OK"));
+    }
+
+    @Test
+    public void matcherFindsAllSignatures() {
+        SignatureMatcher matcher = new SignatureMatcher(Arrays.asList("restart now", "now", "too many failed login attempts"));
+
+        BitSet found = matcher.match("would you like to restart now?");
+        assertTrue(found.get(0));
+        assertTrue(found.get(1));
+        assertFalse(found.get(2));
+        assertTrue(matcher.match("nothing to see").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void matcherRejectsEmptySignature() {
+        new SignatureMatcher(Arrays.asList("ok", ""));
+    }
+}
@@ -0,0 +1,673 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.awt.BorderLayout;
+import java.awt.GridLayout;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import javax.swing.ButtonGroup;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComponent;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JMenu;
+import javax.swing.JMenuBar;
+import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JPasswordField;
+import javax.swing.JRadioButton;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import javax.swing.JTextPane;
+import javax.swing.JToggleButton;
+import javax.swing.JTree;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.WindowConstants;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreePath;
+
+/**
+ * A stand-in for IBGateway used to run IBAutomater end to end without an IB account.
+ * It shows the windows IBAutomater automates, shaped like the recorded IBGateway windows:
+ * - the login frame, which becomes the main frame (Configure > Settings, File > Close) after the login
+ * - the optional "Second Factor Authentication" dialog and the "Login failed" dialog
+ * - the "Starting application..." window
+ * - the Configuration dialog (tree and swapped settings panels), the settings are kept in a properties file
+ * - message dialogs
+ * - the daily restart ("Restart in progress" window, relaunch with -Drestart, login without second factor)
+ *
+ * The API port is opened on loopback after the configuration (and at startup when a port is already configured),
+ * the accepted connections are closed immediately.
+ * Each step is printed to standard output with the milliseconds elapsed since the JVM start,
+ * e.g. "FakeGateway:     1234 ms main window ready".
+ *
+ * Requires a display (run under Xvfb on headless hosts):
+ * xvfb-run ant -Dfake.gateway.settings=/path/to/settings fake-gateway
+ *
+ * Options:
+ * --title TEXT                 the login frame title (default "IB Gateway")
+ * --settings-file PATH         the file keeping the configuration (default "FakeGateway.properties")
+ * --login-failed               the login fails with the "Login failed" dialog
+ * --two-factor-seconds N       shows the 2FA dialog for N seconds after the login (default 0, no 2FA)
+ * --two-factor-timeouts N      the first N 2FA dialogs time out and return to the login frame
+ * --two-factor-device-list     shows the 2FA device selection before the 2FA prompt
+ * --startup-millis N           how long the "Starting application..." window is shown (default 2000)
+ * --api-delay-millis N         delay between the configuration and the opening of the API port (default 500)
+ * --message TEXT               shows a message dialog once the main window is ready (repeatable)
+ * --restart-after-seconds N    restarts N seconds after the main window is ready (default 0, no restart)
+ * --restarts N                 the number of restarts to perform (default 1)
+ *
+ * @author QuantConnect Corporation
+ */
+public final class FakeGateway {
+    private static final long JVM_START_TIME = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    private String title = "IB Gateway";
+    private Path settingsFile = Paths.get("FakeGateway.properties");
+    private boolean loginFailed;
+    private int twoFactorSeconds;
+    private int twoFactorTimeouts;
+    private boolean twoFactorDeviceList;
+    private int startupMillis = 2000;
+    private int apiDelayMillis = 500;
+    private final List<String> messages = new ArrayList<>();
+    private int restartAfterSeconds;
+    private int restarts = 1;
+    private final String[] args;
+    private final boolean restarted = System.getProperty("restart") != null;
+
+    private final Properties settings = new Properties();
+    private JFrame frame;
+    private ServerSocket apiSocket;
+    private boolean loginInProgress;
+
+    private FakeGateway(String[] args) {
+        this.args = args.clone();
+    }
+
+    /**
+     * Starts the fake gateway.
+     *
+     * @param args The options, see the class documentation
+     */
+    public static void main(String[] args) throws Exception {
+        FakeGateway gateway = new FakeGateway(args);
+        gateway.parse(args);
+        gateway.loadSettings();
+        SwingUtilities.invokeLater(gateway::start);
+    }
+
+    /**
+     * Parses the command line options.
+     *
+     * @param args The options
+     */
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            switch (name) {
+                case "--login-failed":
+                    this.loginFailed = true;
+                    continue;
+                case "--two-factor-device-list":
+                    this.twoFactorDeviceList = true;
+                    continue;
+                default:
+                    break;
+            }
+
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for option: " + name);
+            }
+            String value = args[++i];
+            switch (name) {
+                case "--title":
+                    this.title = value;
+                    break;
+                case "--settings-file":
+                    this.settingsFile = Paths.get(value);
+                    break;
+                case "--two-factor-seconds":
+                    this.twoFactorSeconds = Integer.parseInt(value);
+                    break;
+                case "--two-factor-timeouts":
+                    this.twoFactorTimeouts = Integer.parseInt(value);
+                    break;
+                case "--startup-millis":
+                    this.startupMillis = Integer.parseInt(value);
+                    break;
+                case "--api-delay-millis":
+                    this.apiDelayMillis = Integer.parseInt(value);
+                    break;
+                case "--message":
+                    this.messages.add(value);
+                    break;
+                case "--restart-after-seconds":
+                    this.restartAfterSeconds = Integer.parseInt(value);
+                    break;
+                case "--restarts":
+                    this.restarts = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + name);
+            }
+        }
+    }
+
+    /**
+     * Prints a step with the time elapsed since the JVM start.
+     *
+     * @param step The step description
+     */
+    private static void mark(String step) {
+        System.out.println(String.format("FakeGateway: %8d ms %s", System.currentTimeMillis() - JVM_START_TIME, step));
+    }
+
+    /**
+     * Shows the login frame.
+     */
+    private void start() {
+        if (this.restarted) {
+            mark("restarted");
+        }
+
+        this.frame = new JFrame(this.title);
+        this.frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+        this.frame.setContentPane(this.createLoginContent());
+        this.frame.pack();
+        this.frame.setVisible(true);
+        mark("login frame shown");
+    }
+
+    /**
+     * Creates the contents of the login frame.
+     *
+     * @return Returns the login panel
+     */
+    private JPanel createLoginContent() {
+        JPanel content = new JPanel(new BorderLayout());
+
+        ButtonGroup apiGroup = new ButtonGroup();
+        JPanel apiPanel = new JPanel();
+        for (JToggleButton button : new JToggleButton[] { new JToggleButton("FIX CTCI", true), new JToggleButton("IB API") }) {
+            apiGroup.add(button);
+            apiPanel.add(button);
+        }
+        content.add(apiPanel, BorderLayout.NORTH);
+
+        ButtonGroup modeGroup = new ButtonGroup();
+        JPanel modePanel = new JPanel();
+        JToggleButton liveButton = new JToggleButton("Live Trading", true);
+        JToggleButton paperButton = new JToggleButton("Paper Trading");
+        modeGroup.add(liveButton);
+        modeGroup.add(paperButton);
+        modePanel.add(liveButton);
+        modePanel.add(paperButton);
+
+        JTextField userName = new JTextField(16);
+        JPasswordField password = new JPasswordField(16);
+        JPanel credentialsPanel = new JPanel(new GridLayout(0, 2));
+        credentialsPanel.add(new JLabel("Username"));
+        credentialsPanel.add(userName);
+        credentialsPanel.add(new JLabel("Password"));
+        credentialsPanel.add(password);
+        credentialsPanel.add(new JCheckBox("Use SSL"));
+        credentialsPanel.add(modePanel);
+        content.add(credentialsPanel, BorderLayout.CENTER);
+
+        JButton loginButton = new JButton("Log In");
+        liveButton.addActionListener(event -> loginButton.setText("Log In"));
+        paperButton.addActionListener(event -> loginButton.setText("Paper Log In"));
+        loginButton.addActionListener(event -> {
+            if (userName.getText().isEmpty() || password.getPassword().length == 0) {
+                mark("login ignored: empty credentials");
+                return;
+            }
+            if (this.loginInProgress) {
+                return;
+            }
+            this.loginInProgress = true;
+            mark("login submitted: " + loginButton.getText());
+            this.onLoginSubmitted();
+        });
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.add(loginButton);
+        content.add(buttonPanel, BorderLayout.SOUTH);
+
+        return content;
+    }
+
+    /**
+     * Continues the login after the credentials are submitted.
+     * After a restart the auto-restart token replaces the second factor, the login always succeeds.
+     */
+    private void onLoginSubmitted() {
+        if (this.restarted) {
+            this.showStartingWindow();
+        }
+        else if (this.loginFailed) {
+            this.showLoginFailedDialog();
+        }
+        else if (this.twoFactorSeconds > 0) {
+            if (this.twoFactorDeviceList) {
+                this.showTwoFactorDeviceDialog();
+            }
+            else {
+                this.showTwoFactorDialog();
+            }
+        }
+        else {
+            this.showStartingWindow();
+        }
+    }
+
+    /**
+     * Shows the "Login failed" dialog, the login frame remains open.
+     */
+    private void showLoginFailedDialog() {
+        JDialog dialog = new JDialog(this.frame, "Login failed");
+        JTextPane text = new JTextPane();
+        text.setText("Invalid username or password.");
+        text.setEditable(false);
+        JButton okButton = new JButton("OK");
+        okButton.addActionListener(event -> dialog.dispose());
+        this.loginInProgress = false;
+        dialog.getContentPane().add(text, BorderLayout.CENTER);
+        dialog.getContentPane().add(okButton, BorderLayout.SOUTH);
+        this.show(dialog);
+        mark("login failed");
+    }
+
+    /**
+     * Shows the 2FA device selection dialog, the 2FA prompt follows the selection of "IB Key".
+     */
+    private void showTwoFactorDeviceDialog() {
+        JDialog dialog = new JDialog(this.frame, "Second Factor Authentication");
+        JTextArea text = new JTextArea("Select second factor device");
+        text.setEditable(false);
+        JList<String> devices = new JList<>(new String[] { "Mobile Authenticator", "IB Key" });
+        JButton okButton = new JButton("OK");
+        okButton.addActionListener(event -> {
+            if (!"IB Key".equals(devices.getSelectedValue())) {
+                mark("2FA device not selected");
+                return;
+            }
+            dialog.dispose();
+            mark("2FA device selected");
+            this.showTwoFactorDialog();
+        });
+        dialog.getContentPane().add(text, BorderLayout.NORTH);
+        dialog.getContentPane().add(new JScrollPane(devices), BorderLayout.CENTER);
+        dialog.getContentPane().add(okButton, BorderLayout.SOUTH);
+        this.show(dialog);
+    }
+
+    /**
+     * Shows the 2FA prompt for the configured time, then either continues the login
+     * or, for the configured number of timeouts, returns to the login frame.
+     */
+    private void showTwoFactorDialog() {
+        JDialog dialog = new JDialog(this.frame, "Second Factor Authentication");
+        JTextArea text = new JTextArea("Please check the IB Key notification on your mobile device.");
+        text.setEditable(false);
+        dialog.getContentPane().add(text, BorderLayout.CENTER);
+        this.show(dialog);
+        mark("2FA prompt shown");
+
+        this.after(this.twoFactorSeconds * 1000, () -> {
+            dialog.dispose();
+            if (this.twoFactorTimeouts > 0) {
+                this.twoFactorTimeouts--;
+                this.loginInProgress = false;
+                mark("2FA timed out");
+                return;
+            }
+            mark("2FA approved");
+            this.showStartingWindow();
+        });
+    }
+
+    /**
+     * Shows the "Starting application..." window, the main window is ready when it closes.
+     */
+    private void showStartingWindow() {
+        JDialog dialog = new JDialog(this.frame, "Starting application...");
+        // named like the IBGateway progress window, unnamed dialogs are unknown message windows for IBAutomater
+        dialog.setName("progress");
+        dialog.getContentPane().add(new JLabel("Initializing managers..."));
+        this.show(dialog);
+        mark("starting application");
+
+        this.after(this.startupMillis, () -> {
+            this.showMainWindow();
+            dialog.dispose();
+        });
+    }
+
+    /**
+     * Turns the login frame into the main frame, then opens the configured API port,
+     * shows the requested messages and schedules the restart.
+     */
+    private void showMainWindow() {
+        JMenuBar menuBar = new JMenuBar();
+        JMenu fileMenu = new JMenu("File");
+        JMenuItem closeItem = new JMenuItem("Close");
+        closeItem.addActionListener(event -> {
+            mark("closed");
+            System.exit(0);
+        });
+        fileMenu.add(closeItem);
+        menuBar.add(fileMenu);
+        JMenu configureMenu = new JMenu("Configure");
+        JMenuItem settingsItem = new JMenuItem("Settings");
+        settingsItem.addActionListener(event -> this.showConfigurationDialog());
+        configureMenu.add(settingsItem);
+        menuBar.add(configureMenu);
+
+        JTextPane log = new JTextPane();
+        log.setText("API server not listening");
+        log.setEditable(false);
+        JPanel content = new JPanel(new BorderLayout());
+        content.add(new JLabel("<html><font color=green>connected</font></html>"), BorderLayout.NORTH);
+        content.add(new JScrollPane(log), BorderLayout.CENTER);
+
+        this.frame.setJMenuBar(menuBar);
+        this.frame.setContentPane(content);
+        this.frame.pack();
+        this.frame.setVisible(true);
+        mark("main window ready");
+
+        String port = this.settings.getProperty("apiPort");
+        if (port != null) {
+            this.openApiPort(Integer.parseInt(port));
+        }
+
+        for (String message : this.messages) {
+            JOptionPane pane = new JOptionPane(message, JOptionPane.INFORMATION_MESSAGE);
+            this.show(pane.createDialog(this.frame, ""));
+            mark("message shown: " + message);
+        }
+
+        if (this.restartAfterSeconds > 0 && this.restarts > 0) {
+            this.after(this.restartAfterSeconds * 1000, this::restart);
+        }
+    }
+
+    /**
+     * Shows the Configuration dialog: a tree which swaps the Settings, Precautions and Lock and Exit panels.
+     */
+    private void showConfigurationDialog() {
+        JDialog dialog = new JDialog(this.frame, this.title + " Configuration");
+
+        JCheckBox readOnlyApi = new JCheckBox("Read-Only API", this.getBoolean("readOnlyApi", true));
+        JTextField port = new JTextField(this.settings.getProperty("apiPort", "4001"), 6);
+        JCheckBox createApiLog = new JCheckBox("Create API message log file", this.getBoolean("createApiLog", false));
+        JCheckBox accountGroups = new JCheckBox("Use Account Groups with Allocation Methods", this.getBoolean("accountGroups", true));
+        JPanel settingsPanel = new JPanel(new GridLayout(0, 1));
+        settingsPanel.add(readOnlyApi);
+        settingsPanel.add(new JLabel("Socket port"));
+        settingsPanel.add(port);
+        settingsPanel.add(createApiLog);
+        settingsPanel.add(accountGroups);
+
+        JCheckBox bypassOrderPrecautions = new JCheckBox("Bypass Order Precautions for API Orders", this.getBoolean("bypassOrderPrecautions", false));
+        JPanel precautionsPanel = new JPanel(new GridLayout(0, 1));
+        precautionsPanel.add(bypassOrderPrecautions);
+
+        JRadioButton autoLogoff = new JRadioButton("Auto logoff", true);
+        JRadioButton autoRestart = new JRadioButton("Auto restart", this.getBoolean("autoRestart", false));
+        JTextField restartTime = new JTextField(this.settings.getProperty("restartTime", "11:45"), 6);
+        JRadioButton am = new JRadioButton("AM");
+        JRadioButton pm = new JRadioButton("PM", !"AM".equals(this.settings.getProperty("restartPeriod")));
+        am.setSelected(!pm.isSelected());
+        ButtonGroup exitGroup = new ButtonGroup();
+        exitGroup.add(autoLogoff);
+        exitGroup.add(autoRestart);
+        ButtonGroup periodGroup = new ButtonGroup();
+        periodGroup.add(am);
+        periodGroup.add(pm);
+        JPanel lockAndExitPanel = new JPanel(new GridLayout(0, 1));
+        lockAndExitPanel.add(autoLogoff);
+        lockAndExitPanel.add(autoRestart);
+        lockAndExitPanel.add(restartTime);
+        lockAndExitPanel.add(am);
+        lockAndExitPanel.add(pm);
+
+        DefaultMutableTreeNode root = new DefaultMutableTreeNode("Configuration");
+        DefaultMutableTreeNode api = new DefaultMutableTreeNode("API");
+        api.add(new DefaultMutableTreeNode("Settings"));
+        api.add(new DefaultMutableTreeNode("Precautions"));
+        root.add(api);
+        root.add(new DefaultMutableTreeNode("Lock and Exit"));
+        JTree tree = new JTree(root);
+
+        // like IBGateway, only the selected panel is part of the window
+        JPanel panelHolder = new JPanel(new BorderLayout());
+        tree.addTreeSelectionListener(event -> {
+            TreePath path = event.getNewLeadSelectionPath();
+            String node = path == null ? "" : path.getLastPathComponent().toString();
+            JComponent panel = node.equals("Settings") ? settingsPanel
+                : node.equals("Precautions") ? precautionsPanel
+                : node.equals("Lock and Exit") ? lockAndExitPanel
+                : new JPanel();
+            panelHolder.removeAll();
+            panelHolder.add(panel, BorderLayout.CENTER);
+            panelHolder.revalidate();
+            panelHolder.repaint();
+        });
+
+        JButton okButton = new JButton("OK");
+        JButton cancelButton = new JButton("Cancel");
+        okButton.addActionListener(event -> {
+            this.settings.setProperty("readOnlyApi", Boolean.toString(readOnlyApi.isSelected()));
+            this.settings.setProperty("apiPort", port.getText().trim());
+            this.settings.setProperty("createApiLog", Boolean.toString(createApiLog.isSelected()));
+            this.settings.setProperty("accountGroups", Boolean.toString(accountGroups.isSelected()));
+            this.settings.setProperty("bypassOrderPrecautions", Boolean.toString(bypassOrderPrecautions.isSelected()));
+            this.settings.setProperty("autoRestart", Boolean.toString(autoRestart.isSelected()));
+            this.settings.setProperty("restartTime", restartTime.getText().trim());
+            this.settings.setProperty("restartPeriod", am.isSelected() ? "AM" : "PM");
+            this.saveSettings();
+            dialog.dispose();
+            mark("configured: " + this.settings);
+            this.openApiPort(Integer.parseInt(port.getText().trim()));
+        });
+        cancelButton.addActionListener(event -> dialog.dispose());
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.add(okButton);
+        buttonPanel.add(cancelButton);
+
+        dialog.getContentPane().add(new JScrollPane(tree), BorderLayout.WEST);
+        dialog.getContentPane().add(panelHolder, BorderLayout.CENTER);
+        dialog.getContentPane().add(buttonPanel, BorderLayout.SOUTH);
+        this.show(dialog);
+        mark("configuration shown");
+    }
+
+    /**
+     * Opens the API port after the configured delay, replacing the port opened before.
+     *
+     * @param port The API port
+     */
+    private void openApiPort(int port) {
+        this.after(this.apiDelayMillis, () -> {
+            try {
+                if (this.apiSocket != null) {
+                    if (this.apiSocket.getLocalPort() == port) {
+                        return;
+                    }
+                    this.apiSocket.close();
+                }
+                ServerSocket socket = new ServerSocket();
+                socket.setReuseAddress(true);
+                socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+                this.apiSocket = socket;
+                mark("API port " + port + " listening");
+
+                Thread thread = new Thread(() -> FakeGateway.accept(socket), "FakeGateway-api");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            catch (IOException exception) {
+                mark("API port " + port + " failed: " + exception.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Accepts and immediately closes the API connections until the socket is closed.
+     *
+     * @param socket The API server socket
+     */
+    private static void accept(ServerSocket socket) {
+        while (!socket.isClosed()) {
+            try {
+                // only the reachability of the port is simulated
+                socket.accept().close();
+            }
+            catch (IOException exception) {
+                // the socket was closed
+            }
+        }
+    }
+
+    /**
+     * Simulates the daily restart: shows the "Restart in progress" window, relaunches the JVM
+     * with the same arguments (including the IBAutomater agent) and the -Drestart property, then exits.
+     */
+    private void restart() {
+        JDialog dialog = new JDialog(this.frame, "Restart in progress");
+        dialog.setName("restart");
+        dialog.getContentPane().add(new JLabel("Restart in progress, please wait..."));
+        this.show(dialog);
+        mark("restart in progress");
+
+        this.after(1000, () -> {
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+                if (!argument.startsWith("-Drestart=")) {
+                    command.add(argument);
+                }
+            }
+            command.add("-Drestart=" + Long.toHexString(System.currentTimeMillis()));
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(FakeGateway.class.getName());
+            for (int i = 0; i < this.args.length; i++) {
+                command.add(this.args[i]);
+                if (this.args[i].equals("--restarts") && i + 1 < this.args.length) {
+                    command.add(Integer.toString(this.restarts - 1));
+                    i++;
+                }
+            }
+            if (!command.contains("--restarts")) {
+                command.add("--restarts");
+                command.add(Integer.toString(this.restarts - 1));
+            }
+
+            try {
+                // the new process inherits the console and outlives this one, like the IBGateway launcher
+                new ProcessBuilder(command).directory(new File(System.getProperty("user.dir"))).inheritIO().start();
+                mark("relaunched");
+            }
+            catch (IOException exception) {
+                mark("relaunch failed: " + exception.getMessage());
+            }
+            System.exit(0);
+        });
+    }
+
+    /**
+     * Runs an action on the event dispatch thread after a delay.
+     *
+     * @param delayMillis The delay in milliseconds
+     * @param action The action
+     */
+    private void after(int delayMillis, Runnable action) {
+        Timer timer = new Timer(Math.max(delayMillis, 0), event -> action.run());
+        timer.setRepeats(false);
+        timer.start();
+    }
+
+    /**
+     * Shows a non-modal window next to the frame.
+     *
+     * @param dialog The dialog
+     */
+    private void show(JDialog dialog) {
+        dialog.setModal(false);
+        dialog.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+        dialog.pack();
+        dialog.setLocationRelativeTo(this.frame);
+        dialog.setVisible(true);
+    }
+
+    /**
+     * Gets a boolean setting.
+     *
+     * @param name The setting name
+     * @param defaultValue The value used when the setting is not stored yet (the IBGateway default)
+     *
+     * @return Returns the setting value
+     */
+    private boolean getBoolean(String name, boolean defaultValue) {
+        String value = this.settings.getProperty(name);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    /**
+     * Loads the settings kept from the previous runs.
+     */
+    private void loadSettings() throws IOException {
+        if (Files.exists(this.settingsFile)) {
+            try (InputStream input = Files.newInputStream(this.settingsFile)) {
+                this.settings.load(input);
+            }
+        }
+    }
+
+    /**
+     * Saves the settings for the next runs.
+     */
+    private void saveSettings() {
+        try (OutputStream output = Files.newOutputStream(this.settingsFile)) {
+            this.settings.store(output, "FakeGateway settings");
+        }
+        catch (IOException exception) {
+            mark("settings not saved: " + exception.getMessage());
+        }
+    }
+}
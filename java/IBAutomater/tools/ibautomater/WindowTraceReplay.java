@@ -0,0 +1,408 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * IBAutomater v1.0. Copyright 2019 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package ibautomater;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Window;
+import java.awt.event.WindowEvent;
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.swing.AbstractButton;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComponent;
+import javax.swing.JDialog;
+import javax.swing.JEditorPane;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JMenu;
+import javax.swing.JMenuBar;
+import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JPasswordField;
+import javax.swing.JRadioButton;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import javax.swing.JTextPane;
+import javax.swing.JToggleButton;
+import javax.swing.JTree;
+import javax.swing.JWindow;
+import javax.swing.SwingUtilities;
+import javax.swing.text.JTextComponent;
+import javax.swing.tree.DefaultMutableTreeNode;
+
+/**
+ * Replays a window event trace recorded by IBAutomater (option "windowTraceFile", see {@link WindowTrace}):
+ * the windows are rebuilt with the recorded component trees (the Swing classes matching the recorded kinds)
+ * and each event is fed through a new {@link WindowEventListener}, at the recorded pace or as fast as possible.
+ * The windows are never shown, the handlers act on the rebuilt components and log to IBAutomater.log
+ * in the working directory, as in production.
+ *
+ * Requires a display (run under Xvfb on headless hosts):
+ * xvfb-run ant -Dtrace.file=/path/to/IBAutomater.trace -Dtrace.args="--speed max --synchronous" trace-replay
+ *
+ * Options:
+ * --speed recorded|max     replays at the recorded pace (default) or without delays
+ * --synchronous            handles each event entirely before the next one (analysis included), for benchmarks
+ * --repeat N               replays the trace N times (default 1), the timings of the last pass are reported
+ * --trading-mode MODE      the trading mode of the replaying IBAutomater, "paper" (default) or "live"
+ * --port N                 the API port of the replaying IBAutomater (default 4002)
+ *
+ * @author QuantConnect Corporation
+ */
+public final class WindowTraceReplay {
+    private final Map<String, Window> windows = new HashMap<>();
+    private final Map<Window, WindowTrace.Event> lastEvents = new HashMap<>();
+
+    private WindowTraceReplay() {
+    }
+
+    /**
+     * Replays a trace.
+     *
+     * @param args The trace file followed by the options, see the class documentation
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: WindowTraceReplay <trace file> [--speed recorded|max] [--synchronous] [--repeat N] [--trading-mode paper|live] [--port N]");
+            System.exit(2);
+        }
+
+        boolean recordedSpeed = true;
+        boolean synchronous = false;
+        int repeat = 1;
+        String tradingMode = "paper";
+        int port = 4002;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--speed":
+                    recordedSpeed = !"max".equals(args[++i]);
+                    break;
+                case "--synchronous":
+                    synchronous = true;
+                    break;
+                case "--repeat":
+                    repeat = Math.max(1, Integer.parseInt(args[++i]));
+                    break;
+                case "--trading-mode":
+                    tradingMode = args[++i];
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        List<WindowTrace.Event> events = new ArrayList<>();
+        int sessions;
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(Paths.get(args[0])))) {
+            WindowTrace.Reader reader = new WindowTrace.Reader(input);
+            WindowTrace.Event event;
+            while ((event = reader.next()) != null) {
+                events.add(event);
+            }
+            sessions = reader.getSessionCount();
+        }
+        System.out.println("Trace: " + events.size() + " window events, " + sessions + " sessions");
+
+        IBAutomater automater = new IBAutomater("user", "password", tradingMode, port, false);
+        WindowEventListener listener = Common.invokeAndWait(() -> new WindowEventListener(automater), 30, TimeUnit.SECONDS);
+
+        long[] latencies = new long[events.size()];
+        for (int pass = 0; pass < repeat; pass++) {
+            WindowTraceReplay replay = new WindowTraceReplay();
+            long previousTime = 0;
+            long previousStart = 0;
+            for (int i = 0; i < events.size(); i++) {
+                WindowTrace.Event event = events.get(i);
+
+                if (recordedSpeed && i > 0) {
+                    // the gaps between sessions (IBGateway restarts) are not replayed
+                    long gap = event.sessionStartMillis == events.get(i - 1).sessionStartMillis
+                        ? event.getTimeNanos() - previousTime : 0;
+                    long wait = gap - (System.nanoTime() - previousStart);
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                }
+                previousTime = event.getTimeNanos();
+                previousStart = System.nanoTime();
+
+                boolean sync = synchronous;
+                latencies[i] = Common.invokeAndWait(() -> {
+                    WindowEvent windowEvent = new WindowEvent(replay.getWindow(event), event.eventId);
+                    long start = System.nanoTime();
+                    if (sync) {
+                        listener.dispatchSynchronously(windowEvent);
+                    }
+                    else {
+                        listener.eventDispatched(windowEvent);
+                    }
+                    long latency = System.nanoTime() - start;
+                    if (event.eventId == WindowEvent.WINDOW_CLOSED) {
+                        replay.closeWindow(event);
+                    }
+                    return latency;
+                }, 30, TimeUnit.SECONDS);
+            }
+
+            // let the asynchronous analysis and handling of the last events complete
+            automater.getAnalyzer().submit(() -> { }).get(30, TimeUnit.SECONDS);
+            Common.invokeAndWait(() -> null, 30, TimeUnit.SECONDS);
+        }
+
+        long total = 0;
+        for (int i = 0; i < events.size(); i++) {
+            WindowTrace.Event event = events.get(i);
+            total += latencies[i];
+            System.out.println(String.format(Locale.ROOT, "%5d %-20s %10.3f ms  [%s]", i, eventName(event.eventId),
+                latencies[i] / 1e6, event.title == null ? "" : event.title));
+        }
+        System.out.println(String.format(Locale.ROOT, "Total: %.3f ms, mean %.3f ms per event (%s, EDT time per event)",
+            total / 1e6, events.isEmpty() ? 0.0 : total / 1e6 / events.size(), synchronous ? "synchronous" : "asynchronous"));
+
+        System.exit(0);
+    }
+
+    /**
+     * Gets the window of an event, built on its first event and rebuilt when its component tree changed.
+     *
+     * @param event The recorded event
+     *
+     * @return Returns the replayed window
+     */
+    private Window getWindow(WindowTrace.Event event) {
+        String key = event.sessionStartMillis + "/" + event.windowId;
+        Window window = this.windows.get(key);
+        if (window == null) {
+            window = event.windowType == WindowTrace.WINDOW_FRAME ? new JFrame()
+                : event.windowType == WindowTrace.WINDOW_DIALOG ? new JDialog()
+                : new JWindow();
+            this.windows.put(key, window);
+        }
+
+        WindowTrace.Event last = this.lastEvents.put(window, event);
+        if (last != null && equals(last.title, event.title) && equals(last.windowName, event.windowName)
+            && equals(last.menuBar, event.menuBar) && last.content.equals(event.content)) {
+            return window;
+        }
+
+        window.setName(event.windowName);
+        if (window instanceof JFrame) {
+            JFrame frame = (JFrame)window;
+            frame.setTitle(event.title);
+            frame.setJMenuBar(event.menuBar == null ? null : (JMenuBar)build(event.menuBar));
+            frame.setContentPane(asContentPane(build(event.content)));
+        }
+        else if (window instanceof JDialog) {
+            JDialog dialog = (JDialog)window;
+            dialog.setTitle(event.title);
+            dialog.setJMenuBar(event.menuBar == null ? null : (JMenuBar)build(event.menuBar));
+            dialog.setContentPane(asContentPane(build(event.content)));
+        }
+        else {
+            ((JWindow)window).setContentPane(asContentPane(build(event.content)));
+        }
+        return window;
+    }
+
+    /**
+     * Forgets a closed window.
+     *
+     * @param event The window closed event
+     */
+    private void closeWindow(WindowTrace.Event event) {
+        Window window = this.windows.remove(event.sessionStartMillis + "/" + event.windowId);
+        if (window != null) {
+            this.lastEvents.remove(window);
+            window.dispose();
+        }
+    }
+
+    /**
+     * Builds a component from a recorded node.
+     *
+     * @param node The recorded node
+     *
+     * @return Returns the component
+     */
+    private static Component build(WindowTrace.Node node) {
+        Component component;
+        switch (node.kind) {
+            case LABEL:
+                component = new JLabel(node.text);
+                break;
+            case BUTTON:
+                component = new JButton(node.text);
+                break;
+            case TOGGLE_BUTTON:
+                component = new JToggleButton(node.text);
+                break;
+            case CHECK_BOX:
+                component = new JCheckBox(node.text);
+                break;
+            case RADIO_BUTTON:
+                component = new JRadioButton(node.text);
+                break;
+            case MENU_BAR:
+                component = new JMenuBar();
+                break;
+            case MENU:
+                component = new JMenu(node.text);
+                break;
+            case MENU_ITEM:
+                component = new JMenuItem(node.text);
+                break;
+            case TEXT_FIELD:
+                component = new JTextField(node.text);
+                break;
+            case PASSWORD_FIELD:
+                component = new JPasswordField();
+                break;
+            case TEXT_AREA:
+                component = new JTextArea(node.text);
+                break;
+            case TEXT_PANE:
+                JTextPane textPane = new JTextPane();
+                textPane.setText(node.text);
+                component = textPane;
+                break;
+            case EDITOR_PANE:
+                JEditorPane editorPane = new JEditorPane();
+                editorPane.setText(node.text);
+                component = editorPane;
+                break;
+            case TREE:
+                component = new JTree(node.items.isEmpty() ? new DefaultMutableTreeNode() : buildTreeNode(node.items.get(0)));
+                break;
+            case LIST:
+                String[] items = new String[node.items.size()];
+                for (int i = 0; i < items.length; i++) {
+                    items[i] = node.items.get(i).text;
+                }
+                component = new JList<>(items);
+                break;
+            case OPTION_PANE:
+                JOptionPane optionPane = new JOptionPane(node.text);
+                // the recorded children replace the ones built by the look and feel
+                optionPane.removeAll();
+                component = optionPane;
+                break;
+            case SCROLL_PANE:
+                component = new JScrollPane(node.children.isEmpty() ? null : build(node.children.get(0)));
+                break;
+            default:
+                component = new JPanel();
+                break;
+        }
+
+        component.setName(node.name);
+        component.setEnabled(node.is(WindowTrace.FLAG_ENABLED));
+        component.setVisible(node.is(WindowTrace.FLAG_VISIBLE));
+        if (component instanceof AbstractButton) {
+            ((AbstractButton)component).setSelected(node.is(WindowTrace.FLAG_SELECTED));
+        }
+        if (component instanceof JTextComponent) {
+            ((JTextComponent)component).setEditable(node.is(WindowTrace.FLAG_EDITABLE));
+        }
+
+        if (component instanceof JMenu) {
+            for (WindowTrace.Node child : node.children) {
+                ((JMenu)component).add(build(child));
+            }
+        }
+        else if (!(component instanceof JScrollPane) && component instanceof Container) {
+            for (WindowTrace.Node child : node.children) {
+                ((Container)component).add(build(child));
+            }
+        }
+        return component;
+    }
+
+    /**
+     * Builds a tree node and its children from a recorded tree item.
+     *
+     * @param item The recorded item
+     *
+     * @return Returns the tree node
+     */
+    private static DefaultMutableTreeNode buildTreeNode(WindowTrace.Node item) {
+        DefaultMutableTreeNode treeNode = new DefaultMutableTreeNode(item.text);
+        for (WindowTrace.Node child : item.children) {
+            treeNode.add(buildTreeNode(child));
+        }
+        return treeNode;
+    }
+
+    /**
+     * Wraps a rebuilt component in a panel if it cannot be a content pane.
+     *
+     * @param component The rebuilt content
+     *
+     * @return Returns the content pane
+     */
+    private static Container asContentPane(Component component) {
+        if (component instanceof JComponent) {
+            return (Container)component;
+        }
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(component);
+        return panel;
+    }
+
+    private static boolean equals(Object first, Object second) {
+        return first == null ? second == null : first.equals(second);
+    }
+
+    /**
+     * Gets the name of a window event id.
+     *
+     * @param eventId The window event id
+     *
+     * @return Returns the event name
+     */
+    private static String eventName(int eventId) {
+        switch (eventId) {
+            case WindowEvent.WINDOW_OPENED:
+                return "WINDOW_OPENED";
+            case WindowEvent.WINDOW_CLOSING:
+                return "WINDOW_CLOSING";
+            case WindowEvent.WINDOW_CLOSED:
+                return "WINDOW_CLOSED";
+            case WindowEvent.WINDOW_ACTIVATED:
+                return "WINDOW_ACTIVATED";
+            case WindowEvent.WINDOW_DEACTIVATED:
+                return "WINDOW_DEACTIVATED";
+            default:
+                return Integer.toString(eventId);
+        }
+    }
+}